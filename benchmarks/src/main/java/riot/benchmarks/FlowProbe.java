@@ -0,0 +1,79 @@
+package riot.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import akka.Done;
+import akka.NotUsed;
+import akka.japi.Pair;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SinkQueueWithCancel;
+import akka.stream.javadsl.SourceQueueWithComplete;
+
+/**
+ * A flow materialized between a source queue and a sink queue, so that single elements can be sent through it and
+ * their result awaited, without materializing a new stream for every element.
+ *
+ * @param <I> the type of elements entering the flow
+ * @param <O> the type of elements leaving the flow
+ */
+final class FlowProbe<I, O> {
+    private final Flow<I, O, NotUsed> flow;
+    private final Materializer mat;
+    private final SourceQueueWithComplete<I> in;
+    private final SinkQueueWithCancel<O> out;
+
+    FlowProbe(Flow<I, O, NotUsed> flow, Materializer mat) {
+        this.flow = flow;
+        this.mat = mat;
+        final Pair<SourceQueueWithComplete<I>, SinkQueueWithCancel<O>> queues = Source
+                .<I>queue(1, OverflowStrategy.backpressure()).via(flow).toMat(Sink.queue(), Keep.both()).run(mat);
+        this.in = queues.first();
+        this.out = queues.second();
+    }
+
+    /**
+     * Sends an element through the flow, and waits for the resulting element.
+     *
+     * @param element the element to send
+     * @return the element emitted by the flow in response
+     */
+    O roundTrip(I element) {
+        in.offer(element).toCompletableFuture().join();
+        return out.pull().toCompletableFuture().join().get();
+    }
+
+    /**
+     * Pulls the next element emitted by the flow, and waits for it.
+     *
+     * @return the next element emitted by the flow
+     */
+    O next() {
+        final Optional<O> element = out.pull().toCompletableFuture().join();
+        return element.get();
+    }
+
+    /**
+     * Completes the stream between the queues.
+     */
+    void close() {
+        in.complete();
+        in.watchCompletion().toCompletableFuture().join();
+    }
+
+    /**
+     * Sends a number of identical elements through the flow, in a new stream, and waits for all results.
+     *
+     * @param element the element to send
+     * @param count   the number of times it will be sent
+     */
+    void batch(I element, int count) {
+        final CompletionStage<Done> done = Source.repeat(element).take(count).via(flow).runWith(Sink.ignore(), mat);
+        done.toCompletableFuture().join();
+    }
+}
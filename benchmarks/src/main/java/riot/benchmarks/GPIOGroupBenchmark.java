@@ -0,0 +1,54 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import riot.GPIO;
+
+/**
+ * Benchmarks writing a byte to eight output pins, through <code>GPIO.Group.asFlow</code>, and through one
+ * <code>GPIO.Out.asFlow</code> per pin. Every iteration writes the complement of the previous byte, so that all the
+ * pins change.
+ */
+public class GPIOGroupBenchmark extends StreamBenchmark {
+    private static final int[] GROUP_PINS = {0, 1, 2, 3, 4, 5, 6, 7};
+    private static final int[] SINGLE_PINS = {21, 22, 23, 24, 25, 26, 27, 28};
+
+    private FlowProbe<Integer, Integer> group;
+    private final FlowProbe<GPIO.State, GPIO.State>[] singles = new FlowProbe[SINGLE_PINS.length];
+    private int value = 0x55;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withGpioLatency(latency);
+        group = probe(GPIO.group(GROUP_PINS).withBackend(sim).asFlow(system));
+        for (int i = 0; i < SINGLE_PINS.length; i++) {
+            singles[i] = probe(GPIO.out(SINGLE_PINS[i]).withBackend(sim).asFlow(system));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Integer groupLatency() {
+        value = ~value & 0xFF;
+        return group.roundTrip(value);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GPIO.State singlePinsLatency() {
+        value = ~value & 0xFF;
+        GPIO.State last = null;
+        for (int i = 0; i < singles.length; i++) {
+            last = singles[i].roundTrip((value & (1 << i)) != 0 ? GPIO.State.HIGH : GPIO.State.LOW);
+        }
+        return last;
+    }
+}
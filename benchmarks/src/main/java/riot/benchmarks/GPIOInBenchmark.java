@@ -0,0 +1,134 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.SinkQueueWithCancel;
+import riot.GPIO;
+
+/**
+ * Benchmarks <code>GPIO.In.asSource</code> and <code>GPIO.In.asEdgeSource</code>, measuring the time from a change of
+ * a simulated input pin's state to the emission of the corresponding <code>GPIO.State</code> or edge by the source.
+ * The sources are given buffers large enough for a whole batch, so that no state change is dropped: an actor-backed
+ * buffer, and a lossless {@link GPIO.Buffering}, which hands the changes over without going through a mailbox.
+ */
+public class GPIOInBenchmark extends StreamBenchmark {
+    private static final int PIN = 3;
+    private static final int EDGE_PIN = 4;
+    private static final int BUFFERED_PIN = 5;
+
+    private Pin pin;
+    private PinState state = PinState.LOW;
+    private SinkQueueWithCancel<GPIO.State> source;
+    private Pin bufferedPin;
+    private PinState bufferedState = PinState.LOW;
+    private SinkQueueWithCancel<GPIO.State> bufferedSource;
+    private Pin edgePin;
+    private PinState edgeState = PinState.LOW;
+    private SinkQueueWithCancel<GPIO.Edges> edgeSource;
+
+    @Override
+    protected void setUp(Duration latency) throws Exception {
+        sim.withGpioLatency(latency);
+        pin = sim.asPin(PIN);
+        source = GPIO.in(PIN).withBackend(sim).asSource(system, mat, BATCH, OverflowStrategy.dropHead())
+                .runWith(Sink.queue(), mat);
+        bufferedPin = sim.asPin(BUFFERED_PIN);
+        bufferedSource = GPIO.in(BUFFERED_PIN).withBackend(sim).asSource(GPIO.Buffering.lossless(BATCH))
+                .runWith(Sink.queue(), mat);
+        edgePin = sim.asPin(EDGE_PIN);
+        edgeSource = GPIO.in(EDGE_PIN).withBackend(sim).asEdgeSource(BATCH, BATCH).runWith(Sink.queue(), mat);
+        // Give the actor time to start and register its listener
+        Thread.sleep(500);
+    }
+
+    private void toggle() {
+        state = state.isHigh() ? PinState.LOW : PinState.HIGH;
+        gpio().drive(pin, state);
+    }
+
+    private void toggleBuffered() {
+        bufferedState = bufferedState.isHigh() ? PinState.LOW : PinState.HIGH;
+        gpio().drive(bufferedPin, bufferedState);
+    }
+
+    private void toggleEdge() {
+        edgeState = edgeState.isHigh() ? PinState.LOW : PinState.HIGH;
+        gpio().drive(edgePin, edgeState);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GPIO.State asSourceLatency() {
+        toggle();
+        return source.pull().toCompletableFuture().join().get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asSourceThroughput() {
+        for (int i = 0; i < BATCH; i++) {
+            toggle();
+        }
+        for (int i = 0; i < BATCH; i++) {
+            source.pull().toCompletableFuture().join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GPIO.State bufferedSourceLatency() {
+        toggleBuffered();
+        return bufferedSource.pull().toCompletableFuture().join().get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void bufferedSourceThroughput() {
+        for (int i = 0; i < BATCH; i++) {
+            toggleBuffered();
+        }
+        for (int i = 0; i < BATCH; i++) {
+            bufferedSource.pull().toCompletableFuture().join();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GPIO.Edges asEdgeSourceLatency() {
+        toggleEdge();
+        return edgeSource.pull().toCompletableFuture().join().get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asEdgeSourceThroughput() {
+        for (int i = 0; i < BATCH; i++) {
+            toggleEdge();
+        }
+        int received = 0;
+        while (received < BATCH) {
+            received += edgeSource.pull().toCompletableFuture().join().get().size();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import riot.GPIO;
+
+/**
+ * Benchmarks <code>GPIO.Out.asFlow</code> and <code>GPIO.Out.asSink</code>, toggling a digital output pin. As a sink
+ * does not emit anything, its throughput is measured by counting the state changes of the simulated pin.
+ */
+public class GPIOOutBenchmark extends StreamBenchmark {
+    private static final int FLOW_PIN = 7;
+    private static final int SINK_PIN = 0;
+
+    private final AtomicLong sinkChanges = new AtomicLong();
+
+    private FlowProbe<GPIO.State, GPIO.State> probe;
+    private Sink<GPIO.State, NotUsed> sink;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withGpioLatency(latency);
+        probe = probe(GPIO.out(FLOW_PIN).withBackend(sim).asFlow(system));
+        sink = GPIO.out(SINK_PIN).withBackend(sim).asSink(system);
+        gpio().addListener(sim.asPin(SINK_PIN), event -> sinkChanges.incrementAndGet());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GPIO.State asFlowLatency() {
+        return probe.roundTrip(GPIO.State.TOGGLE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asFlowThroughput() {
+        probe.batch(GPIO.State.TOGGLE, BATCH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asSinkThroughput() {
+        final long target = sinkChanges.get() + BATCH;
+        Source.repeat(GPIO.State.TOGGLE).take(BATCH).runWith(sink, mat);
+        while (sinkChanges.get() < target) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import riot.I2C;
+import riot.protocols.RawI2CProtocol;
+
+/**
+ * Benchmarks <code>I2C.asFlow</code> and <code>I2C.asDirectFlow</code>, reading two bytes from a register of a raw
+ * device.
+ */
+public class I2CFlowBenchmark extends StreamBenchmark {
+    private static final RawI2CProtocol.Command READ = RawI2CProtocol.Command.read(0x10, 2);
+
+    private FlowProbe<RawI2CProtocol.Command, RawI2CProtocol.Result> probe;
+    private FlowProbe<RawI2CProtocol.Command, RawI2CProtocol.Result> directProbe;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withI2CLatency(latency, Duration.ZERO);
+        probe = probe(I2C.rawDevice().withBackend(sim).onBus(1).at(0x23).asFlow(system));
+        directProbe = probe(I2C.rawDevice().withBackend(sim).onBus(1).at(0x23).asDirectFlow());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RawI2CProtocol.Result asFlowLatency() {
+        return probe.roundTrip(READ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asFlowThroughput() {
+        probe.batch(READ, BATCH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RawI2CProtocol.Result asDirectFlowLatency() {
+        return directProbe.roundTrip(READ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asDirectFlowThroughput() {
+        directProbe.batch(READ, BATCH);
+    }
+}
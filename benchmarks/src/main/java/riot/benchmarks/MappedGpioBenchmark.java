@@ -0,0 +1,91 @@
+package riot.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+import riot.backends.DigitalPort;
+import riot.backends.GpioRegisters;
+import riot.backends.MappedGpioBackend;
+import riot.backends.SimulatedBackend;
+
+/**
+ * Benchmarks the memory-mapped GPIO backend against a file-backed stand-in for the register block: toggling a pin
+ * through Pi4J's pin objects, writing the set and clear registers directly, and writing eight pins as a port. Toggling
+ * a pin of the simulated backend, whose provider only updates Pi4J's pin cache, is measured for reference.
+ */
+@State(Scope.Benchmark)
+public class MappedGpioBenchmark {
+    private static final int PIN = 3;
+
+    private Path file;
+    private GpioRegisters registers;
+    private GpioPinDigitalOutput mappedPin;
+    private GpioPinDigitalOutput simulatedPin;
+    private DigitalPort port;
+    private int value = 0x55;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("gpiomem", ".bin");
+        registers = GpioRegisters.standIn(file);
+        final MappedGpioBackend mapped = new MappedGpioBackend(registers);
+        mappedPin = mapped.getGpioController().provisionDigitalOutputPin(mapped.asPin(PIN));
+        final List<GpioPinDigitalOutput> pins = new ArrayList<>();
+        for (int i = 21; i < 29; i++) {
+            pins.add(mapped.getGpioController().provisionDigitalOutputPin(mapped.asPin(i)));
+        }
+        port = mapped.openDigitalPort(pins);
+        final SimulatedBackend sim = new SimulatedBackend();
+        simulatedPin = sim.getGpioController().provisionDigitalOutputPin(sim.asPin(PIN));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void mappedToggle() {
+        mappedPin.toggle();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int mappedSetClear() {
+        registers.set(1 << 22);
+        registers.clear(1 << 22);
+        return registers.getLevels();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void mappedPortWrite() {
+        value = ~value & 0xFF;
+        port.write(value);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void simulatedToggle() {
+        simulatedPin.toggle();
+    }
+}
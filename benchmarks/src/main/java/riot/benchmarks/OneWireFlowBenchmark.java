@@ -0,0 +1,125 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import riot.OneWire;
+import riot.backends.SimulatedW1Device;
+import riot.protocols.OneWireTemperatureProtocol;
+import riot.protocols.ParallelOneWireProtocol;
+import riot.protocols.RawOneWireProtocol;
+
+/**
+ * Benchmarks <code>OneWire.asFlow</code> and <code>OneWire.asDirectFlow</code>, reading a bus of simulated DS18B20
+ * temperature sensors one after the other, and <code>OneWire.parallelDevices().asFlow</code>, converting and reading
+ * them all at once. <code>OneWire.temperatureSensors().asFlow</code> reads them into typed readings; the raw flow is
+ * also measured with the parsing each consumer of its text output then has to do. The latency parameter applies to
+ * each sensor read.
+ */
+public class OneWireFlowBenchmark extends StreamBenchmark {
+
+    /**
+     * The number of sensors on the bus.
+     */
+    @Param({"1", "8"})
+    public int sensors;
+
+    private FlowProbe<RawOneWireProtocol.Command, Map> probe;
+    private FlowProbe<RawOneWireProtocol.Command, Map> directProbe;
+    private FlowProbe<ParallelOneWireProtocol.Command, ParallelOneWireProtocol.Sweep> parallelProbe;
+    private FlowProbe<OneWireTemperatureProtocol.Command, OneWireTemperatureProtocol.Readings> temperatureProbe;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withOneWireLatency(latency);
+        for (int i = 0; i < sensors; i++) {
+            final double temperature = 20 + i;
+            sim.connect(SimulatedW1Device.thermometer(String.format("28-%012x", i), () -> temperature));
+        }
+        probe = probe(OneWire.rawDevice().withBackend(sim).onChannel(SimulatedW1Device.DS18B20_FAMILY)
+                .asFlow(system));
+        directProbe = probe(OneWire.rawDevice().withBackend(sim).onChannel(SimulatedW1Device.DS18B20_FAMILY)
+                .asDirectFlow());
+        parallelProbe = probe(OneWire.parallelDevices().withBackend(sim)
+                .onChannel(SimulatedW1Device.DS18B20_FAMILY).asFlow(system));
+        temperatureProbe = probe(OneWire.temperatureSensors().withBackend(sim)
+                .onChannel(SimulatedW1Device.DS18B20_FAMILY).asFlow(system));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map asFlowLatency() {
+        return probe.roundTrip(RawOneWireProtocol.Command.READ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asFlowThroughput() {
+        probe.batch(RawOneWireProtocol.Command.READ, BATCH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map asDirectFlowLatency() {
+        return directProbe.roundTrip(RawOneWireProtocol.Command.READ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asDirectFlowThroughput() {
+        directProbe.batch(RawOneWireProtocol.Command.READ, BATCH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ParallelOneWireProtocol.Sweep parallelLatency() {
+        return parallelProbe.roundTrip(ParallelOneWireProtocol.Command.READ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public double asFlowParsedThroughput() {
+        double sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            final Map<?, ?> values = probe.roundTrip(RawOneWireProtocol.Command.READ);
+            for (Object value : values.values()) {
+                final String text = (String) value;
+                sum += Integer.parseInt(text.substring(text.lastIndexOf("t=") + 2).trim()) / 1000.0;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public double temperatureThroughput() {
+        double sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            final OneWireTemperatureProtocol.Readings readings =
+                    temperatureProbe.roundTrip(OneWireTemperatureProtocol.Command.READ);
+            for (int j = 0; j < readings.size(); j++) {
+                sum += readings.getTemperature(j);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package riot.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import riot.GPIO;
+import riot.protocols.RawI2CProtocol;
+import riot.recording.Recording;
+import riot.recording.RecordingWriter;
+import riot.recording.SampleCodecs;
+
+/**
+ * Benchmarks appending to a recording in a temporary directory: a pin state, and the result of a two-step I2C
+ * transaction. The segments are small (1MiB), so that many are allocated during a run; the sample times include the
+ * appends which had to wait for the next segment.
+ */
+@State(Scope.Benchmark)
+public class RecordingBenchmark {
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    private Path directory;
+    private RecordingWriter<GPIO.State> states;
+    private RecordingWriter<RawI2CProtocol.Result> results;
+    private final RawI2CProtocol.Result result = RawI2CProtocol.Result.of(
+            Arrays.asList(RawI2CProtocol.Result.of(new byte[1]), RawI2CProtocol.Result.of(new byte[6])));
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recording");
+        states = Recording.in(directory.resolve("states"), SampleCodecs.states()).withSegmentSize(SEGMENT_SIZE)
+                .openWriter();
+        results = Recording.in(directory.resolve("results"), SampleCodecs.i2cResults()).withSegmentSize(SEGMENT_SIZE)
+                .openWriter();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        states.close();
+        results.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void appendState() throws IOException {
+        states.append(GPIO.State.HIGH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void appendI2CResult() throws IOException {
+        results.append(result);
+    }
+}
@@ -0,0 +1,39 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import riot.SPI;
+
+/**
+ * Benchmarks <code>SPI.asChunkedFlow</code>, writing a 320x240 frame of 16-bit pixels to a display, as a stream of
+ * rows. Reports frames per second.
+ */
+public class SPIChunkedBenchmark extends StreamBenchmark {
+    private static final int ROWS = 240;
+    private static final ByteString ROW = ByteString.fromArray(new byte[320 * 2]);
+
+    private SPI<?, ?, ?> display;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withSpiLatency(latency, Duration.ZERO);
+        display = SPI.rawDevice().withBackend(sim).onChannel(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public SPI.Progress asChunkedFlowFrames() throws Exception {
+        return Source.repeat(ROW).take(ROWS).via(display.asChunkedFlow()).runWith(Sink.last(), mat)
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+}
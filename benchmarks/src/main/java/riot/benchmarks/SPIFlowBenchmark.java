@@ -0,0 +1,60 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import riot.SPI;
+
+/**
+ * Benchmarks <code>SPI.asFlow</code> and <code>SPI.asDirectFlow</code>, exchanging three bytes with a raw device, as a
+ * typical ADC read would.
+ */
+public class SPIFlowBenchmark extends StreamBenchmark {
+    private static final byte[] TRANSFER = {0x01, (byte) 0x80, 0x00};
+
+    private FlowProbe<byte[], byte[]> probe;
+    private FlowProbe<byte[], byte[]> directProbe;
+
+    @Override
+    protected void setUp(Duration latency) {
+        sim.withSpiLatency(latency, Duration.ZERO);
+        probe = probe(SPI.rawDevice().withBackend(sim).onChannel(0).asFlow(system));
+        directProbe = probe(SPI.rawDevice().withBackend(sim).onChannel(0).asDirectFlow());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] asFlowLatency() {
+        return probe.roundTrip(TRANSFER);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asFlowThroughput() {
+        probe.batch(TRANSFER, BATCH);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] asDirectFlowLatency() {
+        return directProbe.roundTrip(TRANSFER);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void asDirectFlowThroughput() {
+        directProbe.batch(TRANSFER, BATCH);
+    }
+}
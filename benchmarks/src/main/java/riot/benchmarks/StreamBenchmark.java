@@ -0,0 +1,88 @@
+package riot.benchmarks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import akka.NotUsed;
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
+import riot.backends.SimulatedBackend;
+import riot.backends.SimulatedGpioProvider;
+
+/**
+ * Base class of the benchmarks: starts an actor system and a simulated backend, whose latency per operation is a
+ * benchmark parameter. Latency benchmarks use JMH's SampleTime mode, which reports the p50, p90, p99 (etc.)
+ * percentiles of the time taken by one element; throughput benchmarks push {@link #BATCH} elements through a stream
+ * in each invocation, and report elements per second.
+ */
+@State(Scope.Benchmark)
+public abstract class StreamBenchmark {
+    static final int BATCH = 1000;
+
+    /**
+     * The simulated latency of each hardware operation, in microseconds.
+     */
+    @Param({"0", "100"})
+    public long latencyMicros;
+
+    protected ActorSystem system;
+    protected Materializer mat;
+    protected SimulatedBackend sim;
+
+    private final List<FlowProbe<?, ?>> probes = new ArrayList<>();
+
+    @Setup
+    public void startSystem() throws Exception {
+        system = ActorSystem.create(getClass().getSimpleName());
+        mat = ActorMaterializer.create(system);
+        sim = new SimulatedBackend();
+        setUp(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros)));
+    }
+
+    @TearDown
+    public void stopSystem() throws Exception {
+        for (FlowProbe<?, ?> probe : probes) {
+            probe.close();
+        }
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the streams components to benchmark.
+     *
+     * @param latency the latency to configure on the simulated hardware
+     * @throws Exception if the components cannot be created
+     */
+    protected abstract void setUp(Duration latency) throws Exception;
+
+    /**
+     * Materializes a flow between two queues, so that elements can be sent through it one by one. The stream is
+     * completed when the benchmark ends.
+     *
+     * @param flow the flow to materialize
+     * @return a probe to send elements through the flow
+     */
+    protected <I, O> FlowProbe<I, O> probe(Flow<I, O, NotUsed> flow) {
+        final FlowProbe<I, O> probe = new FlowProbe<>(flow, mat);
+        probes.add(probe);
+        return probe;
+    }
+
+    /**
+     * @return the simulated GPIO provider, used to drive and observe pins.
+     */
+    protected SimulatedGpioProvider gpio() {
+        return sim.getGpioProvider();
+    }
+}
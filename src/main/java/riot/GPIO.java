@@ -24,8 +24,20 @@ import akka.stream.javadsl.GraphDSL;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import akka.util.Timeout;
+import riot.actors.GPIOGroupActor;
 import riot.actors.GPIOInActor;
 import riot.actors.GPIOOutActor;
+import riot.actors.PulseEngine;
+import riot.actors.WaveformGenerator;
+import riot.backends.Backend;
+import riot.backends.Backends;
+import riot.metrics.Metrics;
+import riot.stages.AnalogSampler;
+import riot.stages.AnalogSamplingStage;
+import riot.stages.EdgeRingBuffer;
+import riot.stages.GPIOEdgeStage;
+import riot.stages.GPIOStateStage;
+import riot.stages.StateBuffer;
 
 /**
  * A builder object that allows the configuration of a GPIO pin. After a pin has been configured, utility methods allows
@@ -58,26 +70,49 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
     }
 
     /**
-     * Models a GPIO Pulse, or a sequence of pulses
+     * Models a GPIO Pulse, or a sequence of pulses. Lengths are in milliseconds, unless another unit is specified.
+     * Sequences are played by the {@link PulseEngine}, with microsecond resolution; the pulse returned by the actor
+     * once it has been played carries the timing achieved.
      */
     public static final class Pulse {
         private final long[] pulses;
+        private final TimeUnit unit;
+        private final Timing timing;
 
         public static Pulse high(long length) {
-            return new Pulse(length);
+            return high(length, TimeUnit.MILLISECONDS);
+        }
+
+        public static Pulse high(long length, TimeUnit unit) {
+            return new Pulse(unit, null, length);
         }
 
         public static Pulse low(long length) {
+            return low(length, TimeUnit.MILLISECONDS);
+        }
+
+        public static Pulse low(long length, TimeUnit unit) {
             //'high' pulse is first, but has length zero.
-            return new Pulse(0, length);
+            return new Pulse(unit, null, 0, length);
         }
 
         public static Pulse sequence(long... length) {
-            return new Pulse(length);
+            return sequence(TimeUnit.MILLISECONDS, length);
+        }
+
+        /**
+         * @param unit   the unit of the lengths, e.g. microseconds for an infrared remote control's carrier bursts
+         * @param length the lengths of the pulses: high, then low, then high, etc...
+         * @return a sequence of pulses.
+         */
+        public static Pulse sequence(TimeUnit unit, long... length) {
+            return new Pulse(unit, null, length);
         }
 
-        private Pulse(long... pulses) {
+        private Pulse(TimeUnit unit, Timing timing, long... pulses) {
             this.pulses = pulses;
+            this.unit = unit;
+            this.timing = timing;
         }
 
         /**
@@ -86,6 +121,470 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
         public long[] getPulses() {
             return pulses;
         }
+
+        /**
+         * @return the unit of the pulse timings.
+         */
+        public TimeUnit getUnit() {
+            return unit;
+        }
+
+        /**
+         * @return the timing achieved when this sequence was played, or null if it has not been.
+         */
+        public Timing getTiming() {
+            return timing;
+        }
+
+        /**
+         * @param timing the timing achieved when this sequence was played
+         * @return a copy of this sequence, with the timing achieved.
+         */
+        public Pulse withTiming(Timing timing) {
+            return new Pulse(unit, timing, pulses);
+        }
+
+        /**
+         * The timing achieved when playing a pulse sequence: how late each edge was, compared to the time it was due
+         * relative to the first edge.
+         */
+        public static final class Timing {
+            private final long[] errors;
+            private final long durationNanos;
+
+            public Timing(long[] errors, long durationNanos) {
+                this.errors = errors;
+                this.durationNanos = durationNanos;
+            }
+
+            /**
+             * @return how late each edge was, in nanoseconds, including the final one ending the last pulse.
+             */
+            public long[] getEdgeErrors() {
+                return errors;
+            }
+
+            /**
+             * @return the largest error of an edge.
+             */
+            public Duration getMaxError() {
+                long max = 0;
+                for (long error : errors) {
+                    max = Math.max(max, error);
+                }
+                return Duration.ofNanos(max);
+            }
+
+            /**
+             * @return the average error of the edges.
+             */
+            public Duration getMeanError() {
+                long sum = 0;
+                for (long error : errors) {
+                    sum += error;
+                }
+                return Duration.ofNanos(errors.length > 0 ? sum / errors.length : 0);
+            }
+
+            /**
+             * @return the time taken to play the whole sequence.
+             */
+            public Duration getDuration() {
+                return Duration.ofNanos(durationNanos);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("Timing(%d edges, mean error %dns, max error %dns)", errors.length,
+                        getMeanError().toNanos(), getMaxError().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Sets both the frequency and the duty cycle of a software PWM or Tone pin.
+     *
+     * @see Out#softPwm()
+     */
+    public static final class Waveform {
+        private final double frequency;
+        private final double duty;
+
+        private Waveform(double frequency, double duty) {
+            this.frequency = frequency;
+            this.duty = duty;
+        }
+
+        /**
+         * @param frequency the frequency, in Hz
+         * @param duty      the fraction of each period during which the pin is high, between 0 and 1
+         * @return a waveform message.
+         */
+        public static Waveform of(double frequency, double duty) {
+            return new Waveform(frequency, duty);
+        }
+
+        public double getFrequency() {
+            return frequency;
+        }
+
+        public double getDuty() {
+            return duty;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Waveform(%.1fHz, %.3f)", frequency, duty);
+        }
+    }
+
+    /**
+     * A batch of the pulse widths measured on a digital input pin: the time between consecutive edges, and whether the
+     * pin was high or low in between, in the order they occurred.
+     *
+     * @see In#pulseWidths(int, Duration)
+     */
+    public static final class PulseWidths {
+        private final long[] widths;
+        private final boolean[] states;
+
+        public PulseWidths(long[] widths, boolean[] states) {
+            this.widths = widths;
+            this.states = states;
+        }
+
+        /**
+         * @return the number of pulses in this batch.
+         */
+        public int size() {
+            return widths.length;
+        }
+
+        /**
+         * @param i the index of the pulse
+         * @return the width of that pulse, in nanoseconds.
+         */
+        public long getWidth(int i) {
+            return widths[i];
+        }
+
+        /**
+         * @param i the index of the pulse
+         * @return whether the pin was high during that pulse.
+         */
+        public boolean isHigh(int i) {
+            return states[i];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder string = new StringBuilder("PulseWidths(");
+            for (int i = 0; i < widths.length; i++) {
+                string.append(i > 0 ? ", " : "").append(states[i] ? 'H' : 'L').append(widths[i] / 1000).append("us");
+            }
+            return string.append(')').toString();
+        }
+    }
+
+    /**
+     * The frequency of a digital input pin, measured over a gate time from the rising edges that occurred in it.
+     *
+     * @see In#frequency(Duration)
+     */
+    public static final class Frequency {
+        private final long cycles;
+        private final long meanPeriodNanos;
+        private final long minPeriodNanos;
+        private final long maxPeriodNanos;
+
+        public Frequency(long cycles, long meanPeriodNanos, long minPeriodNanos, long maxPeriodNanos) {
+            this.cycles = cycles;
+            this.meanPeriodNanos = meanPeriodNanos;
+            this.minPeriodNanos = minPeriodNanos;
+            this.maxPeriodNanos = maxPeriodNanos;
+        }
+
+        /**
+         * @return the frequency, in Hz, or 0 if fewer than two rising edges occurred during the gate time.
+         */
+        public double getFrequency() {
+            return meanPeriodNanos > 0 ? 1e9 / meanPeriodNanos : 0;
+        }
+
+        /**
+         * @return the number of complete periods measured.
+         */
+        public long getCycles() {
+            return cycles;
+        }
+
+        /**
+         * @return the mean time between rising edges.
+         */
+        public Duration getPeriod() {
+            return Duration.ofNanos(meanPeriodNanos);
+        }
+
+        /**
+         * @return the shortest time between rising edges.
+         */
+        public Duration getMinPeriod() {
+            return Duration.ofNanos(minPeriodNanos);
+        }
+
+        /**
+         * @return the longest time between rising edges.
+         */
+        public Duration getMaxPeriod() {
+            return Duration.ofNanos(maxPeriodNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Frequency(%.3fHz, %d cycles)", getFrequency(), cycles);
+        }
+    }
+
+    /**
+     * A batch of edges of a digital input pin, in the order they occurred.
+     *
+     * @see In#asEdgeSource(int, int)
+     */
+    public static final class Edges {
+        private final long[] timestamps;
+        private final boolean[] states;
+        private final long dropped;
+
+        public Edges(long[] timestamps, boolean[] states, long dropped) {
+            this.timestamps = timestamps;
+            this.states = states;
+            this.dropped = dropped;
+        }
+
+        /**
+         * @return the number of edges in this batch.
+         */
+        public int size() {
+            return timestamps.length;
+        }
+
+        /**
+         * @param i the index of an edge in this batch
+         * @return the time of the edge, as given by {@link System#nanoTime()}.
+         */
+        public long getTimestamp(int i) {
+            return timestamps[i];
+        }
+
+        /**
+         * @param i the index of an edge in this batch
+         * @return the state of the pin after the edge.
+         */
+        public State getState(int i) {
+            return states[i] ? State.HIGH : State.LOW;
+        }
+
+        /**
+         * @param i the index of an edge in this batch
+         * @return true for a rising edge, false for a falling one.
+         */
+        public boolean isRising(int i) {
+            return states[i];
+        }
+
+        /**
+         * @return the number of edges dropped since the source started, up to this batch.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+    }
+
+    /**
+     * A chunk of consecutive samples of an analog input pin, taken at a fixed interval. Each sample is the average of
+     * the readings taken during its interval.
+     *
+     * @see In#asSampledSource(Duration, int, int)
+     */
+    public static final class Samples {
+        private final double[] values;
+        private final long timestamp;
+        private final long intervalNanos;
+        private final long missed;
+
+        public Samples(double[] values, long timestamp, long intervalNanos, long missed) {
+            this.values = values;
+            this.timestamp = timestamp;
+            this.intervalNanos = intervalNanos;
+            this.missed = missed;
+        }
+
+        /**
+         * @return the number of samples in this chunk.
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * @param i the index of a sample in this chunk
+         * @return the value of the sample.
+         */
+        public double getValue(int i) {
+            return values[i];
+        }
+
+        /**
+         * @return the values of the samples. The array belongs to this chunk, and is not copied.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * @param i the index of a sample in this chunk
+         * @return the start of the sample's interval, as given by {@link System#nanoTime()}.
+         */
+        public long getTimestamp(int i) {
+            return timestamp + i * intervalNanos;
+        }
+
+        /**
+         * @return the interval between samples.
+         */
+        public Duration getInterval() {
+            return Duration.ofNanos(intervalNanos);
+        }
+
+        /**
+         * @return the number of samples missed since the source started, up to this chunk, because the sampling thread
+         * fell behind or the stream did not keep up.
+         */
+        public long getMissed() {
+            return missed;
+        }
+    }
+
+    /**
+     * How the changes of an input pin are handed over to a stream that does not keep up with them.
+     *
+     * @see In#asSource(Buffering)
+     */
+    public static final class Buffering {
+
+        /**
+         * The kinds of buffering.
+         */
+        public enum Mode {
+            LATEST, LOSSLESS, ON_DEMAND, COUNTING
+        }
+
+        private static final Buffering LATEST = new Buffering(Mode.LATEST, 1);
+        private static final Buffering ON_DEMAND = new Buffering(Mode.ON_DEMAND, 1);
+        private static final Buffering COUNTING = new Buffering(Mode.COUNTING, 1);
+
+        private final Mode mode;
+        private final int capacity;
+
+        private Buffering(Mode mode, int capacity) {
+            this.mode = mode;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Only the latest change is kept until the stream demands it: the changes it replaces are coalesced. This
+         * favours latency, as the stream always receives the pin's current state next.
+         *
+         * @return the buffering strategy.
+         */
+        public static Buffering latest() {
+            return LATEST;
+        }
+
+        /**
+         * Changes are queued until the stream demands them, and none is lost: once the queue is full, the thread
+         * notifying the pin's changes waits for the stream to take one, so that later changes are held back in the
+         * backend instead. This favours completeness, e.g. to count every press of a button.
+         *
+         * @param capacity the number of changes queued before the notifying thread waits
+         * @return the buffering strategy.
+         */
+        public static Buffering lossless(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+            }
+            return new Buffering(Mode.LOSSLESS, capacity);
+        }
+
+        /**
+         * The pin's current state is emitted every time the stream demands an element, whether it changed or not: the
+         * stream samples the pin at its own rate, e.g. when zipped with a tick source. The changes between two samples
+         * are coalesced.
+         *
+         * @return the buffering strategy.
+         */
+        public static Buffering onDemand() {
+            return ON_DEMAND;
+        }
+
+        /**
+         * @return the buffering strategy of {@link In#asCountingSource()}.
+         */
+        static Buffering counting() {
+            return COUNTING;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        /**
+         * @return the number of changes that can be queued.
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public String toString() {
+            return mode == Mode.LOSSLESS ? "Buffering(LOSSLESS, " + capacity + ")" : "Buffering(" + mode + ")";
+        }
+    }
+
+    /**
+     * The changes of an input pin aggregated while the stream was busy: the latest state or value, and how many
+     * changes led to it.
+     *
+     * @param <M> the type of the pin's state or value
+     * @see In#asCountingSource()
+     */
+    public static final class Changes<M> {
+        private final M latest;
+        private final long count;
+
+        public Changes(M latest, long count) {
+            this.latest = latest;
+            this.count = count;
+        }
+
+        /**
+         * @return the latest state or value of the pin.
+         */
+        public M getLatest() {
+            return latest;
+        }
+
+        /**
+         * @return the number of changes aggregated, at least 1; for a digital pin, this is the number of edges.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Changes(" + latest + ", " + count + ")";
+        }
     }
 
     /**
@@ -100,6 +599,10 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      */
     private Pin pin;
 
+    private int pinAddress;
+
+    private Backend backend;
+
     protected PinMode pinMode;
 
     protected PinPullResistance pullResistance = PinPullResistance.OFF;
@@ -115,9 +618,19 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      * @see Pin
      */
     public Pin getPin() {
+        if (pin == null) {
+            pin = getBackend().asPin(pinAddress);
+        }
         return pin;
     }
 
+    /**
+     * @return the backend through which this pin is accessed.
+     */
+    public Backend getBackend() {
+        return backend != null ? backend : Backends.getDefault();
+    }
+
     /**
      * @return a Props object that can be used to create an Akka Actor
      */
@@ -176,6 +689,15 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      */
     public abstract <TT extends T> TT named(String name);
 
+    /**
+     * The constructed GPIO pin will be accessed through the specified backend, rather than the default one.
+     *
+     * @param backend the backend to use, e.g. a simulated one
+     * @return this GPIO Builder instance (for chaining).
+     * @see Backends
+     */
+    public abstract <TT extends T> TT withBackend(Backend backend);
+
     /**
      * @return whether this is bidirectional, i.e. whether it can be switched from Out to In.
      */
@@ -187,12 +709,24 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      * @return this pin's name
      */
     public String getName() {
+        if (name == null) {
+            name = getPin().getName();
+        }
         return name;
     }
 
     protected String getActorName() {
-        return name.replaceAll("[^a-zA-Z0-9-]", "-");
+        return getName().replaceAll("[^a-zA-Z0-9-]", "-");
     }
+
+    /**
+     * @return the name under which the pin's metrics are reported, e.g. "gpio-GPIO-1".
+     * @see Metrics
+     */
+    public String getMetricsName() {
+        return "gpio-" + getActorName();
+    }
+
     /*
      * Output Pin
      */
@@ -205,7 +739,7 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      * @return a GPIO Builder instance.
      */
     public static Out<State> out(int pin) {
-        return new Out(Utils.asPin(pin), State.class);
+        return new Out(pin, State.class);
     }
 
     /**
@@ -226,6 +760,10 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
 
         private Double initialValue = null;
 
+        private boolean software = false;
+
+        private double frequency = 200;
+
         private Out(Pin pin, Class<M> messageType) {
             super.pin = pin;
             super.pinMode = PinMode.DIGITAL_OUTPUT;
@@ -233,6 +771,12 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             super.name = pin.getName();
         }
 
+        private Out(int pinAddress, Class<M> messageType) {
+            super.pinAddress = pinAddress;
+            super.pinMode = PinMode.DIGITAL_OUTPUT;
+            super.messageType = messageType;
+        }
+
         /**
          * The constructed GPIO output pin will be analog.
          *
@@ -285,17 +829,59 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
         }
 
         /**
-         * The constructed GPIO pin will be a Tone output pin. (not fully implemented yet).
+         * The constructed GPIO pin will be a PWM output pin, whose signal is generated in software, so that any
+         * digital pin can be used. It accepts a Double duty cycle between 0 and 1, an Integer number of PWM steps as
+         * hardware PWM pins do, or a <code>GPIO.Waveform</code> setting both frequency and duty cycle.
          *
          * @return this GPIO Builder instance (for chaining).
+         * @see WaveformGenerator
          */
-        protected Out<Integer> tone() {
+        public Out<Double> softPwm() {
+            Out<Double> nextState = ((Out<Double>) this);
+            nextState.pinMode = PinMode.PWM_OUTPUT;
+            nextState.messageType = Double.class;
+            nextState.software = true;
+            return nextState;
+        }
+
+        /**
+         * The constructed GPIO pin will be a Tone output pin, which accepts a frequency in Hz as an Integer message,
+         * and outputs a square wave at that frequency, zero meaning silence. The signal is generated in software, so
+         * that any digital pin can be used.
+         *
+         * @return this GPIO Builder instance (for chaining).
+         * @see WaveformGenerator
+         */
+        public Out<Integer> tone() {
             Out<Integer> nextState = ((Out<Integer>) this);
             nextState.pinMode = PinMode.PWM_TONE_OUTPUT;
             nextState.messageType = Integer.class;
+            nextState.software = true;
             return nextState;
         }
 
+        /**
+         * @return whether the signal of this PWM or Tone pin is generated in software.
+         */
+        public boolean isSoftware() {
+            return software;
+        }
+
+        /**
+         * Sets the frequency of a software PWM pin's signal, until it receives a <code>GPIO.Waveform</code> message.
+         *
+         * @param frequency the frequency, in Hz; 200 by default
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public Out<M> withFrequency(double frequency) {
+            this.frequency = frequency;
+            return this;
+        }
+
+        public double getFrequency() {
+            return frequency;
+        }
+
         /**
          * The pin will be high when it starts (no GPIO.State object will be emitted for that state transition).This has
          * no effect on pins that are not digital.
@@ -408,6 +994,17 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             return this;
         }
 
+        /**
+         * The constructed GPIO pin will be accessed through the specified backend, rather than the default one.
+         *
+         * @param backend the backend to use, e.g. a simulated one
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public Out<M> withBackend(Backend backend) {
+            super.backend = backend;
+            return this;
+        }
+
         /**
          * Creates an Akka Streams sink that sets the pin's state accordingly when it receives a <code>GPIO.State</code>
          * message.
@@ -431,7 +1028,9 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
          */
         public Flow<M, M, NotUsed> asFlow(ActorSystem system) {
             return Flow.fromGraph(GraphDSL.create(b -> {
-                return b.add(Flow.of(messageType).ask(system.actorOf(asProps(), getActorName()), messageType, ASK_TIMEOUT));
+                return b.add(Flow.of(messageType)
+                        .ask(system.actorOf(asProps(), getActorName()), messageType, ASK_TIMEOUT)
+                        .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter()));
             }));
         }
 
@@ -440,7 +1039,7 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
          */
         @Override
         public Props asProps() {
-            return Props.create(GPIOOutActor.class, this);
+            return Props.create(GPIOOutActor.class, this).withMailbox(Metrics.MAILBOX);
         }
 
         /**
@@ -471,6 +1070,191 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
         }
     }
 
+    /*
+     * Group of output pins
+     */
+
+    /**
+     * The constructed GPIO pins will be a group of digital output pins, written together as the bits of an Integer
+     * message: bit i drives the i-th pin passed.
+     *
+     * @param pins the pin numbers on the device (this is the device-specific number, NOT the Broadcom internal
+     *             numbering), from the lowest bit up; at most 32
+     * @return a GPIO Group Builder instance.
+     */
+    public static Group group(int... pins) {
+        return new Group(pins, null);
+    }
+
+    /**
+     * The constructed GPIO pins will be a group of digital output pins, written together as the bits of an Integer
+     * message: bit i drives the i-th pin passed.
+     *
+     * @param pins the PI4J pin objects, from the lowest bit up; at most 32
+     * @return a GPIO Group Builder instance.
+     */
+    public static Group group(Pin... pins) {
+        return new Group(null, pins);
+    }
+
+    /**
+     * A group of digital output pins, such as a parallel bus or a bank of relays, which are written together by a
+     * single actor. Where the backend allows, all the pins are changed by a single register write, so that they change
+     * simultaneously; otherwise only the pins that change are written, one after the other.
+     *
+     * @see Backend#openDigitalPort(java.util.List)
+     */
+    public static final class Group {
+        private final int[] pinAddresses;
+
+        private Pin[] pins;
+
+        private Backend backend;
+
+        private String name;
+
+        private Integer initialValue;
+
+        private Integer shutdownValue;
+
+        private Group(int[] pinAddresses, Pin[] pins) {
+            final int width = pins != null ? pins.length : pinAddresses.length;
+            if (width == 0 || width > Integer.SIZE) {
+                throw new IllegalArgumentException("A group must have between 1 and 32 pins, not " + width);
+            }
+            this.pinAddresses = pinAddresses;
+            this.pins = pins;
+        }
+
+        /**
+         * @return the PI4J Pin objects of this group, from the lowest bit up.
+         */
+        public Pin[] getPins() {
+            if (pins == null) {
+                pins = new Pin[pinAddresses.length];
+                for (int i = 0; i < pins.length; i++) {
+                    pins[i] = getBackend().asPin(pinAddresses[i]);
+                }
+            }
+            return pins;
+        }
+
+        /**
+         * The constructed GPIO pins will be set to the bits of the specified value when they are provisioned.
+         *
+         * @param value the initial value of the group
+         * @return this GPIO Group Builder instance (for chaining).
+         */
+        public Group initiallyAt(int value) {
+            this.initialValue = value;
+            return this;
+        }
+
+        public Integer getInitialValue() {
+            return initialValue;
+        }
+
+        /**
+         * The constructed GPIO pins will be set to the bits of the specified value when the GPIO controller is shut
+         * down.
+         *
+         * @param value the value of the group on shutdown
+         * @return this GPIO Group Builder instance (for chaining).
+         */
+        public Group shuttingDownAt(int value) {
+            this.shutdownValue = value;
+            return this;
+        }
+
+        public Integer getShutdownValue() {
+            return shutdownValue;
+        }
+
+        /**
+         * The constructed GPIO group will be named as specified. This is only used in logging and debugging.
+         *
+         * @param name this group's name
+         * @return this GPIO Group Builder instance (for chaining).
+         */
+        public Group named(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @return this group's name
+         */
+        public String getName() {
+            if (name == null) {
+                final StringBuilder names = new StringBuilder("group");
+                for (Pin pin : getPins()) {
+                    names.append('-').append(pin.getName());
+                }
+                name = names.toString();
+            }
+            return name;
+        }
+
+        /**
+         * The constructed GPIO pins will be accessed through the specified backend, rather than the default one.
+         *
+         * @param backend the backend to use, e.g. a simulated one
+         * @return this GPIO Group Builder instance (for chaining).
+         */
+        public Group withBackend(Backend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * @return the backend through which these pins are accessed.
+         */
+        public Backend getBackend() {
+            return backend != null ? backend : Backends.getDefault();
+        }
+
+        private String getActorName() {
+            return getName().replaceAll("[^a-zA-Z0-9-]", "-");
+        }
+
+        /**
+         * @return the name under which the group's metrics are reported, e.g. "gpio-group-GPIO-0-GPIO-1".
+         * @see Metrics
+         */
+        public String getMetricsName() {
+            return "gpio-" + getActorName();
+        }
+
+        /**
+         * Creates an Akka Streams sink that sets the pins to the bits of each Integer it receives.
+         *
+         * @param system the ActorSystem in which to create the underlying Akka actor
+         * @return a sink object that can be used in Akka Streams
+         */
+        public Sink<Integer, NotUsed> asSink(ActorSystem system) {
+            return Sink.actorRef(system.actorOf(asProps(), getActorName()), NotUsed.getInstance());
+        }
+
+        /**
+         * Creates an Akka Streams flow that sets the pins to the bits of each Integer it receives, then emits the
+         * value written, with the bits beyond the group's pins cleared.
+         *
+         * @param system the ActorSystem in which to create the underlying Akka actor
+         * @return a flow object that can be used in Akka Streams
+         */
+        public Flow<Integer, Integer, NotUsed> asFlow(ActorSystem system) {
+            return Flow.of(Integer.class).ask(system.actorOf(asProps(), getActorName()), Integer.class, ASK_TIMEOUT)
+                    .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter());
+        }
+
+        /**
+         * @return a Props object that can be used to create an Akka Actor, which processes Integer messages.
+         */
+        public Props asProps() {
+            return Props.create(GPIOGroupActor.class, this).withMailbox(Metrics.MAILBOX);
+        }
+    }
+
     /*
      * Input Pin
      */
@@ -483,7 +1267,7 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      * @return a GPIO Builder instance.
      */
     public static In<State> in(int pin) {
-        return new In(Utils.asPin(pin), State.class);
+        return new In(pin, State.class);
     }
 
     /**
@@ -500,6 +1284,18 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
 
         private Set<ActorRef> listeners = new HashSet<ActorRef>();
 
+        private Duration debounce;
+
+        private Duration minimumPulseWidth;
+
+        private double deadband;
+
+        private int pulseWidthBatch;
+
+        private Duration pulseWidthGap;
+
+        private Duration frequencyGate;
+
         private In(Pin pin, Class<M> messageType) {
             super.pin = pin;
             super.pinMode = PinMode.DIGITAL_INPUT;
@@ -507,6 +1303,12 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             super.name = pin.getName();
         }
 
+        private In(int pinAddress, Class<M> messageType) {
+            super.pinAddress = pinAddress;
+            super.pinMode = PinMode.DIGITAL_INPUT;
+            super.messageType = messageType;
+        }
+
         /**
          * The constructed GPIO output pin will be analog.
          *
@@ -517,6 +1319,8 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             In<Double> nextState = ((In<Double>) this);
             nextState.pinMode = PinMode.ANALOG_INPUT;
             nextState.messageType = Double.class;
+            nextState.pulseWidthGap = null;
+            nextState.frequencyGate = null;
             return nextState;
         }
 
@@ -530,6 +1334,8 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             In<State> nextState = ((In<State>) this);
             nextState.pinMode = PinMode.DIGITAL_INPUT;
             nextState.messageType = State.class;
+            nextState.pulseWidthGap = null;
+            nextState.frequencyGate = null;
             return nextState;
         }
 
@@ -554,6 +1360,126 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             return listeners.size() > 0;
         }
 
+        /**
+         * The listeners of this digital pin will be notified of the widths of its pulses, i.e. of the time between
+         * consecutive edges, rather than of its states. The edges are timestamped as soon as the pin's provider
+         * reports them, and the widths are sent in batches, when a batch is full, or once the pin has not changed for
+         * the specified gap, e.g. at the end of a single-wire sensor's reply.
+         *
+         * @param maxBatch the largest number of pulse widths sent in one message
+         * @param gap      the time without edges after which a partial batch is sent
+         * @return this GPIO Builder instance (for chaining).
+         * @see PulseWidths
+         */
+        public In<PulseWidths> pulseWidths(int maxBatch, Duration gap) {
+            In<PulseWidths> nextState = ((In<PulseWidths>) this);
+            nextState.pinMode = PinMode.DIGITAL_INPUT;
+            nextState.messageType = PulseWidths.class;
+            nextState.pulseWidthBatch = maxBatch;
+            nextState.pulseWidthGap = gap;
+            nextState.frequencyGate = null;
+            return nextState;
+        }
+
+        /**
+         * The listeners of this digital pin will be notified of the widths of its pulses in batches of up to 64, sent
+         * after 10ms without edges.
+         *
+         * @return this GPIO Builder instance (for chaining).
+         * @see #pulseWidths(int, Duration)
+         */
+        public In<PulseWidths> pulseWidths() {
+            return pulseWidths(64, Duration.ofMillis(10));
+        }
+
+        public int getPulseWidthBatch() {
+            return pulseWidthBatch;
+        }
+
+        public Duration getPulseWidthGap() {
+            return pulseWidthGap;
+        }
+
+        /**
+         * The listeners of this digital pin will be notified of its frequency, e.g. that of a fan's tachometer, at the
+         * end of every gate time. The frequency is computed from the timestamps of the first and last rising edges in
+         * the gate time, so that its resolution does not depend on the gate time.
+         *
+         * @param gate the time over which the frequency is measured
+         * @return this GPIO Builder instance (for chaining).
+         * @see Frequency
+         */
+        public In<Frequency> frequency(Duration gate) {
+            In<Frequency> nextState = ((In<Frequency>) this);
+            nextState.pinMode = PinMode.DIGITAL_INPUT;
+            nextState.messageType = Frequency.class;
+            nextState.frequencyGate = gate;
+            nextState.pulseWidthGap = null;
+            return nextState;
+        }
+
+        public Duration getFrequencyGate() {
+            return frequencyGate;
+        }
+
+        /**
+         * The listeners of this digital pin will be notified of a change at once, after which further changes are
+         * ignored for the specified time. If the pin then differs from the state last notified, the listeners are
+         * notified again, and a new window starts. This suppresses the bouncing of mechanical switches without delaying
+         * the first edge. Filtering is done as events are received, by comparing their timestamps, so that ignored
+         * changes cost neither a message nor a scheduled task. Only the final check at the end of a window in which the
+         * pin changed is timed by the actor system's scheduler, and may be delayed by up to its resolution
+         * ({@code akka.scheduler.tick-duration}, 10ms by default).
+         *
+         * @param window the time during which changes are ignored after one is notified
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public In<M> debounced(Duration window) {
+            this.debounce = window;
+            return this;
+        }
+
+        public Duration getDebounce() {
+            return debounce;
+        }
+
+        /**
+         * The listeners of this digital pin will only be notified of a new state once the pin has held it for the
+         * specified time, which filters out glitches shorter than that, at the cost of delaying every change by as
+         * much. This is applied before {@link #debounced(Duration)} if both are set. Glitches are told apart by
+         * comparing the timestamps of successive edges, so that widths well below a millisecond can be filtered out;
+         * the new state is then confirmed by a single timer per pin, run by the actor system's scheduler, which may
+         * delay it by up to the scheduler's resolution ({@code akka.scheduler.tick-duration}, 10ms by default).
+         *
+         * @param width the shortest pulse that is not filtered out
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public In<M> withMinimumPulseWidth(Duration width) {
+            this.minimumPulseWidth = width;
+            return this;
+        }
+
+        public Duration getMinimumPulseWidth() {
+            return minimumPulseWidth;
+        }
+
+        /**
+         * The listeners of this analog pin will only be notified of a new value if it differs from the last one
+         * notified by at least the specified amount. As the reference only moves with notified values, noise around a
+         * steady value is suppressed, whereas a slow drift is still notified once it adds up to the deadband.
+         *
+         * @param deadband the smallest change that is notified
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public In<M> withDeadband(double deadband) {
+            this.deadband = deadband;
+            return this;
+        }
+
+        public double getDeadband() {
+            return deadband;
+        }
+
         /**
          * The constructed GPIO pin will have an internal pullup resistor. This is useful for input pins, for example
          * connected via a switch to ground.
@@ -587,17 +1513,91 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             return this;
         }
 
+        /**
+         * The constructed GPIO pin will be accessed through the specified backend, rather than the default one.
+         *
+         * @param backend the backend to use, e.g. a simulated one
+         * @return this GPIO Builder instance (for chaining).
+         */
+        public In<M> withBackend(Backend backend) {
+            super.backend = backend;
+            return this;
+        }
+
         /**
          * Creates an Akka Streams source that emits a <code>GPIO.State</code> (for digital pins), a Double (for analog
          * pins) or an Integer (for PWM pins) message every time the state of this pin changes. If this pin changes
          * faster than data can be processed in the stream, only the last state of the pin is emitted.
          *
-         * @param system the ActorSystem in which to create the underlying Akka actor
-         * @param mat    the Materializer which will be used to materialize the stream
          * @return a source that can be used in Akka Streams
+         * @see #asSource(Buffering)
+         */
+        public Source<M, StateBuffer<M>> asSource() {
+            return asSource(Buffering.latest());
+        }
+
+        /**
+         * @param system unused, as no actor is created
+         * @param mat    unused, as the source is materialized by the caller
+         * @return a source that can be used in Akka Streams
+         * @deprecated the pin's changes no longer go through an actor: use {@link #asSource()}
          */
+        @Deprecated
         public Source<M, NotUsed> asSource(ActorSystem system, Materializer mat) {
-            return asSource(system, mat, 1, OverflowStrategy.dropTail());
+            return asSource().mapMaterializedValue(buffer -> NotUsed.getInstance());
+        }
+
+        /**
+         * Creates an Akka Streams source that emits a <code>GPIO.State</code> (for digital pins), a Double (for analog
+         * pins) or an Integer (for PWM pins) message every time the state of this pin changes, or the pulse widths or
+         * frequency of this pin if it is configured to measure them. The changes are handed over to the stream without
+         * going through an actor's mailbox; the buffering strategy decides what becomes of them if this pin changes
+         * faster than they can be processed in the stream, and the materialized buffer counts the changes coalesced or
+         * dropped. The pin is provisioned when the source is materialized, and released when it stops.
+         *
+         * @param buffering how to buffer the changes, e.g. {@link Buffering#lossless(int)}
+         * @return a source that can be used in Akka Streams
+         * @see State
+         */
+        public Source<M, StateBuffer<M>> asSource(Buffering buffering) {
+            if (buffering.getMode() == Buffering.Mode.COUNTING) {
+                throw new IllegalArgumentException("Use asCountingSource() to aggregate the changes of a pin");
+            }
+            return Source.fromGraph(new GPIOStateStage<M>(this, buffering));
+        }
+
+        /**
+         * @param system    unused, as no actor is created
+         * @param buffering how to buffer the changes
+         * @return a source that can be used in Akka Streams
+         * @deprecated the pin's changes no longer go through an actor: use {@link #asSource(Buffering)}
+         */
+        @Deprecated
+        public Source<M, StateBuffer<M>> asSource(ActorSystem system, Buffering buffering) {
+            return asSource(buffering);
+        }
+
+        /**
+         * Creates an Akka Streams source that emits the changes of this pin aggregated while the stream was busy: each
+         * element carries the latest state or value of the pin, and the number of changes since the previous element,
+         * e.g. the number of edges of a digital pin. No change is lost, yet the stream is never held back by a fast
+         * pin.
+         *
+         * @return a source that can be used in Akka Streams
+         * @see Changes
+         */
+        public Source<Changes<M>, StateBuffer<Changes<M>>> asCountingSource() {
+            return Source.fromGraph(new GPIOStateStage<Changes<M>>(this, Buffering.counting()));
+        }
+
+        /**
+         * @param system unused, as no actor is created
+         * @return a source that can be used in Akka Streams
+         * @deprecated the pin's changes no longer go through an actor: use {@link #asCountingSource()}
+         */
+        @Deprecated
+        public Source<Changes<M>, StateBuffer<Changes<M>>> asCountingSource(ActorSystem system) {
+            return asCountingSource();
         }
 
         /**
@@ -620,6 +1620,56 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             return preMat.second();
         }
 
+        /**
+         * Creates an Akka Streams source that emits the edges of this digital pin in batches, with their timestamps.
+         * Edges are captured without going through an actor, into a preallocated ring buffer; they are only dropped
+         * if the buffer fills up, which the materialized ring buffer and the batches count. The pin is provisioned
+         * when the source is materialized, and released when it stops.
+         *
+         * @param capacity the number of edges the ring buffer can hold, rounded up to a power of two
+         * @param maxBatch the largest number of edges emitted in one batch
+         * @return a source that can be used in Akka Streams
+         */
+        public Source<Edges, EdgeRingBuffer> asEdgeSource(int capacity, int maxBatch) {
+            if (pinMode != PinMode.DIGITAL_INPUT) {
+                throw new IllegalStateException("Edges can only be captured on digital pins");
+            }
+            return Source.fromGraph(new GPIOEdgeStage(this, capacity, maxBatch));
+        }
+
+        /**
+         * Creates an Akka Streams source that emits the edges of this digital pin in batches of up to 1024, with a
+         * ring buffer of 65536 edges.
+         *
+         * @return a source that can be used in Akka Streams
+         * @see #asEdgeSource(int, int)
+         */
+        public Source<Edges, EdgeRingBuffer> asEdgeSource() {
+            return asEdgeSource(1 << 16, 1024);
+        }
+
+        /**
+         * Creates an Akka Streams source that samples this analog pin at a fixed rate, on a dedicated thread, and emits
+         * the samples in chunks. The pin is read <code>oversampling</code> times during each interval, at evenly spaced
+         * times, and the average of these readings is the interval's sample, which filters out noise above the sample
+         * rate. The readings are scheduled on absolute deadlines, so that the sample rate does not drift; if the thread
+         * falls behind by more than an interval, or if the stream does not keep up with the 16 chunks buffered, the
+         * samples are skipped and counted as missed. The pin is provisioned when the source is materialized, and
+         * released when it stops.
+         *
+         * @param interval     the interval between samples
+         * @param oversampling the number of readings averaged into each sample
+         * @param chunkSize    the number of samples emitted in one chunk
+         * @return a source that can be used in Akka Streams
+         * @see Samples
+         */
+        public Source<Samples, AnalogSampler> asSampledSource(Duration interval, int oversampling, int chunkSize) {
+            if (pinMode != PinMode.ANALOG_INPUT) {
+                throw new IllegalStateException("Only analog pins can be sampled");
+            }
+            return Source.fromGraph(new AnalogSamplingStage(this, interval, oversampling, chunkSize));
+        }
+
         /**
          * Creates an Akka Streams source that emits a <code>GPIO.State</code> (for digital pins), a Double (for analog
          * pins) or an Integer (for PWM pins) message at fixed intervals.
@@ -643,7 +1693,8 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
          * @see Get
          */
         public Flow<Get, M, NotUsed> asFlow(ActorSystem system) {
-            return Flow.of(Get.class).ask(system.actorOf(asProps(), getActorName()), messageType, ASK_TIMEOUT);
+            return Flow.of(Get.class).ask(system.actorOf(asProps(), getActorName()), messageType, ASK_TIMEOUT)
+                    .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter());
         }
 
         /**
@@ -653,7 +1704,17 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
          */
         @Override
         public Props asProps() {
-            return Props.create(GPIOInActor.class, this);
+            return Props.create(GPIOInActor.class, this).withMailbox(Metrics.MAILBOX);
+        }
+
+        /**
+         * @param buffer a buffer to which the actor hands the changes of the pin, in addition to notifying the
+         *               listeners
+         * @return a Props object that can be used to create an Akka Actor.
+         * @see #asSource(Buffering)
+         */
+        public Props asProps(StateBuffer<?> buffer) {
+            return Props.create(GPIOInActor.class, this, buffer).withMailbox(Metrics.MAILBOX);
         }
 
     }
@@ -670,7 +1731,7 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
      * @return a GPIO Builder instance.
      */
     public static In inOut(int pin) {
-        return new InOut(Utils.asPin(pin));
+        return new InOut(pin);
     }
 
     /**
@@ -689,5 +1750,10 @@ public abstract class GPIO<T extends GPIO<T, M>, M> {
             super(pin, State.class);
             super.inout = true;
         }
+
+        private InOut(int pinAddress) {
+            super(pinAddress, State.class);
+            super.inout = true;
+        }
     }
 }
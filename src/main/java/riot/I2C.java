@@ -1,18 +1,34 @@
 package riot;
 
 import akka.NotUsed;
+import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.stream.FlowShape;
+import akka.stream.Graph;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import akka.util.Timeout;
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
 import riot.actors.I2CActor;
+import riot.actors.I2CBusArbiter;
+import riot.backends.Backend;
+import riot.backends.Backends;
+import riot.dispatchers.IODispatchers;
+import riot.metrics.Metrics;
+import riot.stages.I2CStage;
+import riot.protocols.BufferPool;
 import riot.protocols.I2CProtocol;
+import riot.protocols.PooledBuffer;
+import riot.protocols.PooledRawI2CProtocol;
 import riot.protocols.ProtocolDescriptor;
 import riot.protocols.RawI2CProtocol;
+import riot.protocols.RegisterCache;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
@@ -31,6 +47,15 @@ public class I2C<P extends I2CProtocol<I, O>, I, O> {
     private ProtocolDescriptor<I, O> protoDescriptor;
     private int busNumber;
     private int address;
+    private Backend backend;
+    private String dispatcher = IODispatchers.BLOCKING_IO;
+    private boolean pinnedToBus = false;
+    private Duration coalescingWindow;
+    private final SharedActor sharedActor = new SharedActor();
+    private boolean arbitrated = false;
+    private int priority = 0;
+    private Duration deadline;
+    private RegisterCache registerCache;
 
     private I2C(P deviceProtocol) {
         this.proto = deviceProtocol;
@@ -41,6 +66,17 @@ public class I2C<P extends I2CProtocol<I, O>, I, O> {
         return new I2C<RawI2CProtocol, RawI2CProtocol.Command, RawI2CProtocol.Result>(new RawI2CProtocol());
     }
 
+    /**
+     * Creates a raw device whose results are stored in buffers taken from a pool. Each {@link PooledBuffer} must be
+     * released by its consumer once its data has been read.
+     *
+     * @param pool the pool of buffers
+     * @return a new I2C configuration object.
+     */
+    public static I2C<PooledRawI2CProtocol, RawI2CProtocol.Command, PooledBuffer> pooledRawDevice(BufferPool pool) {
+        return new I2C<PooledRawI2CProtocol, RawI2CProtocol.Command, PooledBuffer>(new PooledRawI2CProtocol(pool));
+    }
+
     public static <P extends I2CProtocol<I, O>, I, O> I2C<P, I, O> device(Class<P> deviceProtocol)
             throws IllegalAccessException, InstantiationException {
         return new I2C<P, I, O>(deviceProtocol.newInstance());
@@ -76,18 +112,204 @@ public class I2C<P extends I2CProtocol<I, O>, I, O> {
         return address;
     }
 
+    /**
+     * @return the name under which the device's metrics are reported, e.g. "i2c-1-40".
+     * @see Metrics
+     */
+    public String getMetricsName() {
+        return "i2c-" + busNumber + "-" + Integer.toHexString(address);
+    }
+
+    /**
+     * The device will be accessed through the specified backend, rather than the default one.
+     *
+     * @param backend the backend to use, e.g. a simulated one
+     * @return this configuration object for chaining.
+     * @see Backends
+     */
+    public I2C<P, I, O> withBackend(Backend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public Backend getBackend() {
+        return backend != null ? backend : Backends.getDefault();
+    }
+
+    /**
+     * The device's actor will run on the specified dispatcher, rather than on RIoT's bounded blocking I/O dispatcher.
+     *
+     * @param dispatcherId the id of a dispatcher defined in the configuration
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public I2C<P, I, O> withDispatcher(String dispatcherId) {
+        this.dispatcher = dispatcherId;
+        this.pinnedToBus = false;
+        return this;
+    }
+
+    /**
+     * The device's actor will share a single, dedicated thread with all other devices on the same bus. This serialises
+     * all access to the bus, and keeps slow devices elsewhere from delaying them.
+     *
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public I2C<P, I, O> onPinnedBusThread() {
+        this.pinnedToBus = true;
+        return this;
+    }
+
+    public String getDispatcher() {
+        return pinnedToBus ? IODispatchers.i2cBus(busNumber) : dispatcher;
+    }
+
+    /**
+     * Enables a write-through cache of the device's registers, whose policies are declared by the protocol. Reads of
+     * cached registers are then served without a bus transaction.
+     *
+     * @return this configuration object for chaining.
+     * @see I2CProtocol#declareRegisters(RegisterCache)
+     */
+    public I2C<P, I, O> withRegisterCache() {
+        final RegisterCache cache = new RegisterCache();
+        proto.declareRegisters(cache);
+        return withRegisterCache(cache);
+    }
+
+    /**
+     * Enables a write-through cache of the device's registers, with the policies declared on the cache passed rather
+     * than by the protocol.
+     *
+     * @param cache the register cache
+     * @return this configuration object for chaining.
+     */
+    public I2C<P, I, O> withRegisterCache(RegisterCache cache) {
+        this.registerCache = cache;
+        return this;
+    }
+
+    /**
+     * @return the register cache, which counts hits and misses, or null if it is not enabled.
+     */
+    public RegisterCache getRegisterCache() {
+        return registerCache;
+    }
+
+    /**
+     * Opens the device on the bus passed, through the register cache if it is enabled.
+     *
+     * @param bus the bus the device is on
+     * @return the device.
+     * @throws IOException if the device cannot be opened
+     */
+    public I2CDevice openDevice(I2CBus bus) throws IOException {
+        final I2CDevice dev = bus.getDevice(address);
+        return registerCache != null ? registerCache.wrap(dev) : dev;
+    }
+
+    /**
+     * The device's actor will hand its operations over to the arbiter of its bus, which serialises the operations of
+     * all the arbitrated devices on the bus, and runs them by order of priority and deadline. This only applies to
+     * the actor created by {@link #asProps()}, and the streams components based on it.
+     *
+     * @return this configuration object for chaining.
+     * @see I2CBusArbiter
+     */
+    public I2C<P, I, O> viaBusArbiter() {
+        this.arbitrated = true;
+        return this;
+    }
+
+    public boolean isArbitrated() {
+        return arbitrated;
+    }
+
+    /**
+     * Sets the priority of the device's operations on its bus' arbiter. Operations of a higher priority are run
+     * first. Implies {@link #viaBusArbiter()}.
+     *
+     * @param priority the priority of the device's operations, 0 by default
+     * @return this configuration object for chaining.
+     */
+    public I2C<P, I, O> withPriority(int priority) {
+        this.priority = priority;
+        this.arbitrated = true;
+        return this;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the deadline of the device's operations on its bus' arbiter. Among operations of the same priority, those
+     * with the earliest deadline are run first; operations which could not be run before their deadline fail with a
+     * timeout instead. Implies {@link #viaBusArbiter()}.
+     *
+     * @param deadline the time after receiving a message by which the operation should be run
+     * @return this configuration object for chaining.
+     */
+    public I2C<P, I, O> withDeadline(Duration deadline) {
+        this.deadline = deadline;
+        this.arbitrated = true;
+        return this;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Identical reads received by the device's actor while it is busy will be answered by a single execution of the
+     * protocol, whose result is also reused for identical reads received within the freshness window. Which messages
+     * are identical reads is defined by the protocol's descriptor. All the streams components created from this
+     * configuration object will then share the same actor.
+     *
+     * @param window the time for which the result of a read can be reused; zero to only coalesce concurrent reads
+     * @return this configuration object for chaining.
+     * @throws IllegalStateException if the protocol's descriptor doesn't declare which messages are reads
+     * @see ProtocolDescriptor#coalescing(java.util.function.Function)
+     */
+    public I2C<P, I, O> withCoalescing(Duration window) {
+        if (!protoDescriptor.isCoalescing()) {
+            throw new IllegalStateException("The protocol doesn't declare any reads that can be coalesced");
+        }
+        this.coalescingWindow = window;
+        return this;
+    }
+
+    /**
+     * @return the freshness window of coalesced reads, or null if reads are not coalesced.
+     */
+    public Duration getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
     /*
      * Streams and actors
      */
 
+    /**
+     * @param system the actor system
+     * @return the actor used by the streams components: a new one, unless reads are coalesced, in which case all
+     * components share the same actor.
+     */
+    private ActorRef streamsActor(ActorSystem system) {
+        return coalescingWindow == null ? system.actorOf(asProps()) : sharedActor.get(system, this::asProps);
+    }
+
     public Sink<I, NotUsed> asSink(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS)).to(Sink.ignore());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS))
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter()).to(Sink.ignore());
     }
 
     public Flow<I, O, NotUsed> asFlow(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout())
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter());
     }
 
     public Source<O, Cancellable> asSource(ActorSystem system, I command, Duration d) {
@@ -95,7 +317,30 @@ public class I2C<P extends I2CProtocol<I, O>, I, O> {
         return timerSource.via(asFlow(system));
     }
 
+    /**
+     * Creates an Akka Streams stage that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. The stage opens the device when it is materialized, and processes one element at a
+     * time, as demanded downstream. As executing the protocol blocks, this should be run on a suitable dispatcher;
+     * use {@link #asDirectFlow()} to do so.
+     *
+     * @return a stage that can be used in Akka Streams
+     */
+    public Graph<FlowShape<I, O>, NotUsed> asStage() {
+        return new I2CStage<>(this);
+    }
+
+    /**
+     * Creates an Akka Streams flow that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. It runs behind an asynchronous boundary, on this device's dispatcher.
+     *
+     * @return a flow that can be used in Akka Streams
+     * @see #asStage()
+     */
+    public Flow<I, O, NotUsed> asDirectFlow() {
+        return Flow.fromGraph(asStage()).async(getDispatcher());
+    }
+
     public Props asProps() {
-        return Props.create(I2CActor.class, this);
+        return Props.create(I2CActor.class, this).withDispatcher(getDispatcher()).withMailbox(Metrics.MAILBOX);
     }
 }
@@ -1,17 +1,27 @@
 package riot;
 
 import akka.NotUsed;
+import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.stream.FlowShape;
+import akka.stream.Graph;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
 import akka.util.Timeout;
 import com.pi4j.io.spi.SpiDevice;
 import com.pi4j.io.spi.SpiMode;
-import riot.actors.SPIActor;
+import riot.actors.OneWireActor;
+import riot.backends.Backend;
+import riot.backends.Backends;
+import riot.dispatchers.IODispatchers;
+import riot.metrics.Metrics;
+import riot.stages.OneWireStage;
 import riot.protocols.OneWireProtocol;
+import riot.protocols.OneWireTemperatureProtocol;
+import riot.protocols.ParallelOneWireProtocol;
 import riot.protocols.ProtocolDescriptor;
 import riot.protocols.RawOneWireProtocol;
 
@@ -33,6 +43,11 @@ public class OneWire<P extends OneWireProtocol<I, O>, I, O> {
     private P proto;
     private ProtocolDescriptor<I, O> protoDescriptor;
     private int deviceFamily;
+    private Backend backend;
+    private String dispatcher = IODispatchers.BLOCKING_IO;
+    private boolean pinnedToBus = false;
+    private Duration coalescingWindow;
+    private final SharedActor sharedActor = new SharedActor();
 
     private OneWire(P deviceProtocol) {
         this.proto = deviceProtocol;
@@ -43,6 +58,28 @@ public class OneWire<P extends OneWireProtocol<I, O>, I, O> {
         return new OneWire<OneWireProtocol<RawOneWireProtocol.Command, Map>, RawOneWireProtocol.Command, Map>(new RawOneWireProtocol());
     }
 
+    /**
+     * Reads all the temperature sensors of the family in one sweep, bounded by the time of a single conversion.
+     *
+     * @return a configuration object for the sensors.
+     * @see ParallelOneWireProtocol
+     */
+    public static OneWire<ParallelOneWireProtocol, ParallelOneWireProtocol.Command, ParallelOneWireProtocol.Sweep>
+            parallelDevices() {
+        return new OneWire<>(new ParallelOneWireProtocol());
+    }
+
+    /**
+     * Reads all the temperature sensors of the family into typed readings, parsed without creating any String.
+     *
+     * @return a configuration object for the sensors.
+     * @see OneWireTemperatureProtocol
+     */
+    public static OneWire<OneWireTemperatureProtocol, OneWireTemperatureProtocol.Command,
+            OneWireTemperatureProtocol.Readings> temperatureSensors() {
+        return new OneWire<>(new OneWireTemperatureProtocol());
+    }
+
     public static <P extends OneWireProtocol<I, O>, I, O> OneWire<P, I, O> device(Class<P> deviceProtocol)
             throws IllegalAccessException, InstantiationException {
         return new OneWire<P, I, O>(deviceProtocol.newInstance());
@@ -69,18 +106,108 @@ public class OneWire<P extends OneWireProtocol<I, O>, I, O> {
         return deviceFamily;
     }
 
+    /**
+     * @return the name under which the device's metrics are reported, e.g. "onewire-28".
+     * @see Metrics
+     */
+    public String getMetricsName() {
+        return "onewire-" + Integer.toHexString(deviceFamily);
+    }
+
+    /**
+     * The device will be accessed through the specified backend, rather than the default one.
+     *
+     * @param backend the backend to use, e.g. a simulated one
+     * @return this configuration object for chaining.
+     * @see Backends
+     */
+    public OneWire<P, I, O> withBackend(Backend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public Backend getBackend() {
+        return backend != null ? backend : Backends.getDefault();
+    }
+
+    /**
+     * The device's actor will run on the specified dispatcher, rather than on RIoT's bounded blocking I/O dispatcher.
+     *
+     * @param dispatcherId the id of a dispatcher defined in the configuration
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public OneWire<P, I, O> withDispatcher(String dispatcherId) {
+        this.dispatcher = dispatcherId;
+        this.pinnedToBus = false;
+        return this;
+    }
+
+    /**
+     * The device's actor will share a single, dedicated thread with all other devices on the OneWire master. This
+     * serialises all access to the bus, and keeps slow devices elsewhere from delaying them.
+     *
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public OneWire<P, I, O> onPinnedBusThread() {
+        this.pinnedToBus = true;
+        return this;
+    }
+
+    public String getDispatcher() {
+        return pinnedToBus ? IODispatchers.ONEWIRE_BUS : dispatcher;
+    }
+
+    /**
+     * Identical reads received by the device's actor while it is busy will be answered by a single execution of the
+     * protocol, whose result is also reused for identical reads received within the freshness window. Which messages
+     * are identical reads is defined by the protocol's descriptor. All the streams components created from this
+     * configuration object will then share the same actor.
+     *
+     * @param window the time for which the result of a read can be reused; zero to only coalesce concurrent reads
+     * @return this configuration object for chaining.
+     * @throws IllegalStateException if the protocol's descriptor doesn't declare which messages are reads
+     * @see ProtocolDescriptor#coalescing(java.util.function.Function)
+     */
+    public OneWire<P, I, O> withCoalescing(Duration window) {
+        if (!protoDescriptor.isCoalescing()) {
+            throw new IllegalStateException("The protocol doesn't declare any reads that can be coalesced");
+        }
+        this.coalescingWindow = window;
+        return this;
+    }
+
+    /**
+     * @return the freshness window of coalesced reads, or null if reads are not coalesced.
+     */
+    public Duration getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
     /*
      * Streams and actors
      */
 
+    /**
+     * @param system the actor system
+     * @return the actor used by the streams components: a new one, unless reads are coalesced, in which case all
+     * components share the same actor.
+     */
+    private ActorRef streamsActor(ActorSystem system) {
+        return coalescingWindow == null ? system.actorOf(asProps()) : sharedActor.get(system, this::asProps);
+    }
+
     public Sink<I, NotUsed> asSink(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS)).to(Sink.ignore());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS))
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter()).to(Sink.ignore());
     }
 
     public Flow<I, O, NotUsed> asFlow(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout())
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter());
     }
 
     public Source<O, Cancellable> asSource(ActorSystem system, I command, Duration d) {
@@ -88,8 +215,31 @@ public class OneWire<P extends OneWireProtocol<I, O>, I, O> {
         return timerSource.via(asFlow(system));
     }
 
+    /**
+     * Creates an Akka Streams stage that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. The stage opens the device when it is materialized, and processes one element at a
+     * time, as demanded downstream. As executing the protocol blocks, this should be run on a suitable dispatcher;
+     * use {@link #asDirectFlow()} to do so.
+     *
+     * @return a stage that can be used in Akka Streams
+     */
+    public Graph<FlowShape<I, O>, NotUsed> asStage() {
+        return new OneWireStage<>(this);
+    }
+
+    /**
+     * Creates an Akka Streams flow that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. It runs behind an asynchronous boundary, on this device's dispatcher.
+     *
+     * @return a flow that can be used in Akka Streams
+     * @see #asStage()
+     */
+    public Flow<I, O, NotUsed> asDirectFlow() {
+        return Flow.fromGraph(asStage()).async(getDispatcher());
+    }
+
     public Props asProps() {
-        return Props.create(SPIActor.class, this);
+        return Props.create(OneWireActor.class, this).withDispatcher(getDispatcher()).withMailbox(Metrics.MAILBOX);
     }
 
 }
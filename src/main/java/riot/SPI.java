@@ -1,20 +1,35 @@
 package riot;
 
 import akka.NotUsed;
+import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.stream.FlowShape;
+import akka.stream.Graph;
 import akka.stream.javadsl.Flow;
 import akka.stream.javadsl.Sink;
 import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import akka.util.Timeout;
 import com.pi4j.io.spi.SpiDevice;
 import com.pi4j.io.spi.SpiMode;
 import riot.actors.SPIActor;
+import riot.backends.Backend;
+import riot.backends.Backends;
+import riot.dispatchers.IODispatchers;
+import riot.metrics.Metrics;
+import riot.stages.ChunkingStage;
+import riot.stages.SPIChunkStage;
+import riot.stages.SPIStage;
+import riot.protocols.BufferPool;
+import riot.protocols.PooledBuffer;
+import riot.protocols.PooledRawSPIProtocol;
 import riot.protocols.SPIProtocol;
 import riot.protocols.ProtocolDescriptor;
 import riot.protocols.RawSPIProtocol;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
@@ -26,6 +41,56 @@ import java.util.concurrent.TimeUnit;
  */
 public class SPI<P extends SPIProtocol<I, O>, I, O> {
 
+    /**
+     * The progress of a chunked transfer, emitted after each chunk.
+     *
+     * @see SPI#asChunkedFlow()
+     */
+    public static final class Progress {
+        private final long chunks;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        public Progress(long chunks, long bytes, long elapsedNanos) {
+            this.chunks = chunks;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of chunks transferred so far.
+         */
+        public long getChunks() {
+            return chunks;
+        }
+
+        /**
+         * @return the number of bytes transferred so far.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the time elapsed since the first chunk started being transferred.
+         */
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        /**
+         * @return the average throughput so far, in bytes per second.
+         */
+        public double getThroughput() {
+            return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Progress(%d chunks, %d bytes, %.0f B/s)", chunks, bytes, getThroughput());
+        }
+    }
+
     /*
      * Settings
      */
@@ -34,6 +99,12 @@ public class SPI<P extends SPIProtocol<I, O>, I, O> {
     private int channel;
     private SpiMode mode = SpiDevice.DEFAULT_SPI_MODE;
     private int speed = SpiDevice.DEFAULT_SPI_SPEED;
+    private Backend backend;
+    private String dispatcher = IODispatchers.BLOCKING_IO;
+    private boolean pinnedToBus = false;
+    private Duration coalescingWindow;
+    private final SharedActor sharedActor = new SharedActor();
+    private int chunkSize = 0;
 
     private SPI(P deviceProtocol) {
         this.proto = deviceProtocol;
@@ -44,6 +115,18 @@ public class SPI<P extends SPIProtocol<I, O>, I, O> {
         return new SPI<RawSPIProtocol, byte[], byte[]>(new RawSPIProtocol());
     }
 
+    /**
+     * Creates a raw device which sends the bytes of {@link ByteBuffer} messages, and stores the bytes received in
+     * buffers taken from a pool. Each {@link PooledBuffer} must be released by its consumer once its data has been
+     * read.
+     *
+     * @param pool the pool of buffers
+     * @return a new SPI configuration object.
+     */
+    public static SPI<PooledRawSPIProtocol, ByteBuffer, PooledBuffer> pooledRawDevice(BufferPool pool) {
+        return new SPI<PooledRawSPIProtocol, ByteBuffer, PooledBuffer>(new PooledRawSPIProtocol(pool));
+    }
+
     public static <P extends SPIProtocol<I, O>, I, O> SPI<P, I, O> device(Class<P> deviceProtocol)
             throws IllegalAccessException, InstantiationException {
         return new SPI<P, I, O>(deviceProtocol.newInstance());
@@ -70,6 +153,14 @@ public class SPI<P extends SPIProtocol<I, O>, I, O> {
         return channel;
     }
 
+    /**
+     * @return the name under which the device's metrics are reported, e.g. "spi-0".
+     * @see Metrics
+     */
+    public String getMetricsName() {
+        return "spi-" + channel;
+    }
+
     public SPI<P, I, O> withMode0() {
         this.mode = SpiMode.MODE_0;
         return this;
@@ -111,18 +202,116 @@ public class SPI<P extends SPIProtocol<I, O>, I, O> {
         return this.speed;
     }
 
+    /**
+     * The device will be accessed through the specified backend, rather than the default one.
+     *
+     * @param backend the backend to use, e.g. a simulated one
+     * @return this configuration object for chaining.
+     * @see Backends
+     */
+    public SPI<P, I, O> withBackend(Backend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    public Backend getBackend() {
+        return backend != null ? backend : Backends.getDefault();
+    }
+
+    /**
+     * The device's actor will run on the specified dispatcher, rather than on RIoT's bounded blocking I/O dispatcher.
+     *
+     * @param dispatcherId the id of a dispatcher defined in the configuration
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public SPI<P, I, O> withDispatcher(String dispatcherId) {
+        this.dispatcher = dispatcherId;
+        this.pinnedToBus = false;
+        return this;
+    }
+
+    /**
+     * The device's actor will share a single, dedicated thread with all other devices on the SPI bus. This serialises
+     * all access to the bus, and keeps slow devices elsewhere from delaying them.
+     *
+     * @return this configuration object for chaining.
+     * @see IODispatchers
+     */
+    public SPI<P, I, O> onPinnedBusThread() {
+        this.pinnedToBus = true;
+        return this;
+    }
+
+    public String getDispatcher() {
+        return pinnedToBus ? IODispatchers.SPI_BUS : dispatcher;
+    }
+
+    /**
+     * Sets the size of the transfers made by {@link #asChunkedFlow()}. This defaults to the largest transfer the
+     * backend supports, which on a Raspberry Pi is the size of the spidev driver's buffer.
+     *
+     * @param bytes the number of bytes per transfer
+     * @return this configuration object for chaining.
+     */
+    public SPI<P, I, O> withChunkSize(int bytes) {
+        this.chunkSize = bytes;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize > 0 ? chunkSize : getBackend().getSpiBufferSize();
+    }
+
+    /**
+     * Identical reads received by the device's actor while it is busy will be answered by a single execution of the
+     * protocol, whose result is also reused for identical reads received within the freshness window. Which messages
+     * are identical reads is defined by the protocol's descriptor. All the streams components created from this
+     * configuration object will then share the same actor.
+     *
+     * @param window the time for which the result of a read can be reused; zero to only coalesce concurrent reads
+     * @return this configuration object for chaining.
+     * @throws IllegalStateException if the protocol's descriptor doesn't declare which messages are reads
+     * @see ProtocolDescriptor#coalescing(java.util.function.Function)
+     */
+    public SPI<P, I, O> withCoalescing(Duration window) {
+        if (!protoDescriptor.isCoalescing()) {
+            throw new IllegalStateException("The protocol doesn't declare any reads that can be coalesced");
+        }
+        this.coalescingWindow = window;
+        return this;
+    }
+
+    /**
+     * @return the freshness window of coalesced reads, or null if reads are not coalesced.
+     */
+    public Duration getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
     /*
      * Streams and actors
      */
 
+    /**
+     * @param system the actor system
+     * @return the actor used by the streams components: a new one, unless reads are coalesced, in which case all
+     * components share the same actor.
+     */
+    private ActorRef streamsActor(ActorSystem system) {
+        return coalescingWindow == null ? system.actorOf(asProps()) : sharedActor.get(system, this::asProps);
+    }
+
     public Sink<I, NotUsed> asSink(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS)).to(Sink.ignore());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), Timeout.apply(1, TimeUnit.SECONDS))
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter()).to(Sink.ignore());
     }
 
     public Flow<I, O, NotUsed> asFlow(ActorSystem system) {
-        return Flow.of(protoDescriptor.getInputMessageType()).ask(system.actorOf(asProps()),
-                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout());
+        return Flow.of(protoDescriptor.getInputMessageType()).ask(streamsActor(system),
+                protoDescriptor.getOutputMessageType(), protoDescriptor.getTimeout())
+                .mapError(Metrics.get(system).device(getMetricsName()).timeoutCounter());
     }
 
     public Source<O, Cancellable> asSource(ActorSystem system, I command, Duration d) {
@@ -130,8 +319,47 @@ public class SPI<P extends SPIProtocol<I, O>, I, O> {
         return timerSource.via(asFlow(system));
     }
 
+    /**
+     * Creates an Akka Streams stage that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. The stage opens the device when it is materialized, and processes one element at a
+     * time, as demanded downstream. As executing the protocol blocks, this should be run on a suitable dispatcher;
+     * use {@link #asDirectFlow()} to do so.
+     *
+     * @return a stage that can be used in Akka Streams
+     */
+    public Graph<FlowShape<I, O>, NotUsed> asStage() {
+        return new SPIStage<>(this);
+    }
+
+    /**
+     * Creates an Akka Streams flow that executes the protocol directly on the device, rather than sending an ask to
+     * an actor for every element. It runs behind an asynchronous boundary, on this device's dispatcher.
+     *
+     * @return a flow that can be used in Akka Streams
+     * @see #asStage()
+     */
+    public Flow<I, O, NotUsed> asDirectFlow() {
+        return Flow.fromGraph(asStage()).async(getDispatcher());
+    }
+
+    /**
+     * Creates an Akka Streams flow that writes a stream of bytes to the device, e.g. a frame for a display, without
+     * going through the protocol. The bytes are split into chunks of the configured size, each of which is written in
+     * a single transfer; the bytes received in return are discarded. Chunks are prepared behind an asynchronous
+     * boundary, so that the next one is ready while the current one is written on this device's dispatcher. The
+     * progress of the transfers is emitted after each chunk.
+     *
+     * @return a flow that can be used in Akka Streams
+     * @see #withChunkSize(int)
+     */
+    public Flow<ByteString, Progress, NotUsed> asChunkedFlow() {
+        final int size = getChunkSize();
+        return Flow.of(ByteString.class).via(new ChunkingStage(size)).async()
+                .via(new SPIChunkStage(this, size)).async(getDispatcher());
+    }
+
     public Props asProps() {
-        return Props.create(SPIActor.class, this);
+        return Props.create(SPIActor.class, this).withDispatcher(getDispatcher()).withMailbox(Metrics.MAILBOX);
     }
 
 }
@@ -0,0 +1,29 @@
+package riot;
+
+import java.util.function.Supplier;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Holds the actor shared by all the streams components created from a device's configuration object. Used internally
+ * in this package.
+ */
+final class SharedActor {
+    private ActorSystem system;
+    private ActorRef actor;
+
+    /**
+     * @param system the actor system
+     * @param props  the Props of the actor, used if it needs to be created
+     * @return the shared actor, created if none exists yet in that actor system.
+     */
+    synchronized ActorRef get(ActorSystem system, Supplier<Props> props) {
+        if (actor == null || this.system != system) {
+            this.system = system;
+            this.actor = system.actorOf(props.get());
+        }
+        return actor;
+    }
+}
@@ -0,0 +1,184 @@
+package riot.actors;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import akka.actor.ActorRef;
+import akka.actor.Status;
+import riot.protocols.ProtocolDescriptor;
+
+/**
+ * Coalesces identical reads received by a device actor, as identified by the protocol's coalescing key. A read is not
+ * executed when it is received: the actor sends itself a message to do so, and identical reads received until the
+ * execution completes (typically, while a previous operation was blocking the actor) are answered by the same
+ * execution. The result is then reused for identical reads received within the freshness window. Other messages are
+ * to be executed by the actor, once the reads received before them have been started; they also discard the results
+ * kept for reuse.
+ *
+ * @param <I> the type of the protocol's input messages
+ * @param <O> the type of the protocol's output messages
+ */
+class Coalescer<I, O> {
+    private static final int PRUNE_SIZE = 64;
+
+    /**
+     * Executes the protocol, either synchronously, or by handing the message to another actor.
+     */
+    @FunctionalInterface
+    interface Exec<I, O> {
+        CompletionStage<O> exec(I message) throws Exception;
+    }
+
+    /**
+     * Sent by the actor to itself, to start executing the pending read with that key.
+     */
+    static final class Flush {
+        private final Object key;
+
+        private Flush(Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Sent to the actor when an asynchronous execution completes.
+     */
+    static final class Completed {
+        private final Object key;
+        private final Object result;
+
+        private Completed(Object key, Object result) {
+            this.key = key;
+            this.result = result;
+        }
+    }
+
+    private static final class Pending<I> {
+        private final I message;
+        private final List<ActorRef> waiters = new ArrayList<>(1);
+        private boolean started = false;
+
+        private Pending(I message) {
+            this.message = message;
+        }
+    }
+
+    private static final class Fresh {
+        private final Object result;
+        private final long time;
+
+        private Fresh(Object result, long time) {
+            this.result = result;
+            this.time = time;
+        }
+    }
+
+    private final ProtocolDescriptor<I, O> descriptor;
+    private final long window;
+    private final Exec<I, O> exec;
+    private final Map<Object, Pending<I>> pending = new LinkedHashMap<>();
+    private final Map<Object, Fresh> recent = new HashMap<>();
+
+    /**
+     * @param descriptor the protocol's descriptor, defining the coalescing key
+     * @param window     the time for which a result can be reused
+     * @param exec       the execution of the protocol
+     */
+    Coalescer(ProtocolDescriptor<I, O> descriptor, Duration window, Exec<I, O> exec) {
+        this.descriptor = descriptor;
+        this.window = window.toNanos();
+        this.exec = exec;
+    }
+
+    /**
+     * Handles a message received by the actor.
+     *
+     * @param message the message
+     * @param sender  its sender
+     * @param self    the actor
+     * @return false if the message is not a read, and should be executed by the actor.
+     * @throws Exception if executing the protocol fails
+     */
+    boolean onMessage(I message, ActorRef sender, ActorRef self) throws Exception {
+        final Object key = descriptor.getCoalescingKey(message);
+        if (key == null) {
+            startAll(self);
+            recent.clear();
+            return false;
+        }
+        final Fresh fresh = recent.get(key);
+        if (fresh != null && System.nanoTime() - fresh.time <= window) {
+            sender.tell(fresh.result, self);
+            return true;
+        }
+        Pending<I> p = pending.get(key);
+        if (p == null) {
+            p = new Pending<>(message);
+            pending.put(key, p);
+            self.tell(new Flush(key), self);
+        }
+        p.waiters.add(sender);
+        return true;
+    }
+
+    void onFlush(Flush flush, ActorRef self) throws Exception {
+        final Pending<I> p = pending.get(flush.key);
+        if (p != null && !p.started) {
+            start(flush.key, p, self);
+        }
+    }
+
+    void onCompleted(Completed completed, ActorRef self) {
+        final Pending<I> p = pending.remove(completed.key);
+        if (p != null) {
+            reply(completed.key, p, completed.result, self);
+        }
+    }
+
+    private void startAll(ActorRef self) throws Exception {
+        for (Map.Entry<Object, Pending<I>> entry : new ArrayList<>(pending.entrySet())) {
+            if (!entry.getValue().started) {
+                start(entry.getKey(), entry.getValue(), self);
+            }
+        }
+    }
+
+    private void start(Object key, Pending<I> p, ActorRef self) throws Exception {
+        p.started = true;
+        final CompletionStage<O> stage;
+        try {
+            stage = exec.exec(p.message);
+        } catch (Exception e) {
+            pending.remove(key);
+            reply(key, p, new Status.Failure(e), self);
+            throw e;
+        }
+        final CompletableFuture<O> future = stage.toCompletableFuture();
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            pending.remove(key);
+            reply(key, p, future.join(), self);
+        } else {
+            stage.whenComplete((result, e) ->
+                    self.tell(new Completed(key, e == null ? result : new Status.Failure(e)), ActorRef.noSender()));
+        }
+    }
+
+    private void reply(Object key, Pending<I> p, Object result, ActorRef self) {
+        if (window > 0 && !(result instanceof Status.Failure)) {
+            if (recent.size() >= PRUNE_SIZE) {
+                final long now = System.nanoTime();
+                recent.values().removeIf(f -> now - f.time > window);
+            }
+            recent.put(key, new Fresh(result, System.nanoTime()));
+        }
+        for (ActorRef waiter : p.waiters) {
+            waiter.tell(result, self);
+        }
+    }
+}
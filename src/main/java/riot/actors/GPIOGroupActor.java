@@ -0,0 +1,94 @@
+package riot.actors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+
+import akka.actor.AbstractActor;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import riot.GPIO;
+import riot.backends.DigitalPort;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
+
+public class GPIOGroupActor extends AbstractActor {
+    final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+    private final GPIO.Group conf;
+
+    private GpioController gpio;
+    private DeviceMetrics metrics;
+
+    private List<GpioPinDigitalOutput> outputs;
+    private DigitalPort port;
+
+    protected GPIOGroupActor(GPIO.Group conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Receive createReceive() {
+        return super.receiveBuilder()
+                .match(Integer.class, this::onValue)
+                .build();
+    }
+
+    /**
+     * Records the time taken by each message with the metrics of the group.
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object msg) {
+        final long start = System.nanoTime();
+        try {
+            super.aroundReceive(receive, msg);
+        } catch (Throwable t) {
+            metrics.recordError(start);
+            throw t;
+        }
+        metrics.record(start);
+    }
+
+    @Override
+    public void preStart() {
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
+        gpio = conf.getBackend().getGpioController();
+        final Pin[] pins = conf.getPins();
+        outputs = new ArrayList<>(pins.length);
+        for (int i = 0; i < pins.length; i++) {
+            final GpioPinDigitalOutput output;
+            if (conf.getInitialValue() != null) {
+                output = gpio.provisionDigitalOutputPin(pins[i], pins[i].getName(), bit(conf.getInitialValue(), i));
+            } else {
+                output = gpio.provisionDigitalOutputPin(pins[i], pins[i].getName());
+            }
+            if (conf.getShutdownValue() != null) {
+                output.setShutdownOptions(true, bit(conf.getShutdownValue(), i));
+            }
+            outputs.add(output);
+        }
+        port = conf.getBackend().openDigitalPort(outputs);
+    }
+
+    @Override
+    public void postStop() {
+        if (outputs != null) {
+            gpio.unprovisionPin(outputs.toArray(new GpioPinDigitalOutput[0]));
+        }
+    }
+
+    public void onValue(Integer value) {
+        port.write(value);
+        sender().tell(port.getValue(), self());
+    }
+
+    private static PinState bit(int value, int i) {
+        return PinState.getState((value & (1 << i)) != 0);
+    }
+}
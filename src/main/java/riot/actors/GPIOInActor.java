@@ -1,5 +1,7 @@
 package riot.actors;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 
@@ -9,30 +11,88 @@ import com.pi4j.io.gpio.event.GpioPinAnalogValueChangeEvent;
 import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
 import com.pi4j.io.gpio.event.GpioPinListenerAnalog;
 import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+import com.pi4j.io.gpio.event.PinAnalogValueChangeEvent;
+import com.pi4j.io.gpio.event.PinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.PinListener;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Scheduler;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import riot.GPIO;
 import riot.GPIO.State;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
+import riot.stages.StateBuffer;
+import scala.PartialFunction;
+import scala.concurrent.ExecutionContext;
+import scala.runtime.BoxedUnit;
 
 public class GPIOInActor extends AbstractActor implements GpioPinListenerAnalog, GpioPinListenerDigital {
     final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-    private static final GpioController gpio = GpioFactory.getInstance();
-
     private final GPIO.In conf;
 
+    private GpioController gpio;
+    private DeviceMetrics metrics;
+
     private GpioPinInput input;
     private GpioPinDigitalMultipurpose inputMultipurpose;
     private GpioPinDigitalInput inputDigital;
     private GpioPinAnalogInput inputAnalog;
 
     private Set<ActorRef> listeners;
+    private final StateBuffer<?> buffer;
+
+    /*
+     * Filters, applied on the listener thread before any message is sent
+     */
+    private Scheduler scheduler;
+    private ExecutionContext executor;
+    private long debounceNanos;
+    private long pulseWidthNanos;
+    private double deadband;
+    private Boolean reported;
+    private long reportedAt;
+    private boolean candidate;
+    private long candidateSince;
+    private boolean candidatePending;
+    private boolean lockoutPending;
+    private Cancellable timer;
+    private long timerDeadline;
+    private final Runnable timerTask = this::onTimer;
+    private boolean stopped;
+    private Double reportedValue;
+
+    /*
+     * Pulse width and frequency capture, from edges timestamped by the provider's listener
+     */
+    private PinListener edgeListener;
+    private boolean edgeSeen;
+    private long lastEdge;
+    private boolean lastLevel;
+    private long[] widths;
+    private boolean[] widthStates;
+    private int widthCount;
+    private long gapNanos;
+    private boolean flushScheduled;
+    private Cancellable gateTimer;
+    private long rises;
+    private long firstRise;
+    private long lastRise;
+    private long minPeriod = Long.MAX_VALUE;
+    private long maxPeriod;
 
     protected GPIOInActor(GPIO.In conf) {
+        this(conf, null);
+    }
+
+    protected GPIOInActor(GPIO.In conf, StateBuffer<?> buffer) {
         this.conf = conf;
+        this.buffer = buffer;
     }
 
     @Override
@@ -48,8 +108,25 @@ public class GPIOInActor extends AbstractActor implements GpioPinListenerAnalog,
         return receive.build();
     }
 
+    /**
+     * Records the time taken by each message with the metrics of the pin.
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object msg) {
+        final long start = System.nanoTime();
+        try {
+            super.aroundReceive(receive, msg);
+        } catch (Throwable t) {
+            metrics.recordError(start);
+            throw t;
+        }
+        metrics.record(start);
+    }
+
     @Override
     public void preStart() {
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
+        gpio = conf.getBackend().getGpioController();
         if (input == null) {
             switch (conf.getPinMode()) {
                 case DIGITAL_INPUT:
@@ -72,15 +149,40 @@ public class GPIOInActor extends AbstractActor implements GpioPinListenerAnalog,
             if (conf.getPullResistance() != null) {
                 input.setPullResistance(conf.getPullResistance());
             }
-            if (conf.hasListener()) {
+            if (conf.hasListener() || buffer != null) {
+                scheduler = getContext().getSystem().scheduler();
+                executor = getContext().getDispatcher();
+                debounceNanos = conf.getDebounce() != null ? conf.getDebounce().toNanos() : 0;
+                pulseWidthNanos = conf.getMinimumPulseWidth() != null ? conf.getMinimumPulseWidth().toNanos() : 0;
+                deadband = conf.getDeadband();
                 this.listeners = Collections.unmodifiableSet(conf.getListeners());
-                input.addListener(this);
+                if (conf.getPulseWidthGap() != null || conf.getFrequencyGate() != null) {
+                    startCapture();
+                } else if (buffer != null) {
+                    listenToProvider();
+                    buffer.seed(inputAnalog != null ? (Object) inputAnalog.getValue()
+                            : inputDigital.isHigh() ? State.HIGH : State.LOW);
+                } else {
+                    input.addListener(this);
+                }
             }
         }
     }
 
     @Override
     public void postStop() {
+        synchronized (this) {
+            stopped = true;
+            if (timer != null) {
+                timer.cancel();
+            }
+        }
+        if (gateTimer != null) {
+            gateTimer.cancel();
+        }
+        if (edgeListener != null) {
+            input.getProvider().removeListener(input.getPin(), edgeListener);
+        }
         if (input != null) {
             input.removeAllListeners();
             input.unexport();
@@ -88,7 +190,7 @@ public class GPIOInActor extends AbstractActor implements GpioPinListenerAnalog,
     }
 
     public void onGPIOGet(GPIO.Get state) {
-        if (input == null) {
+        if (input != null) {
             switch (conf.getPinMode()) {
                 case DIGITAL_INPUT:
                     if (inputDigital.isHigh()) {
@@ -108,37 +210,257 @@ public class GPIOInActor extends AbstractActor implements GpioPinListenerAnalog,
     }
 
     public void onGPIOPulse(GPIO.Pulse pulse) {
-        inputMultipurpose.setMode(PinMode.DIGITAL_OUTPUT);
-        for (int i = 0; i < pulse.getPulses().length; i++) {
-            //Even pulses, starting with 0, are high, odds are low
-            final PinState pulseState = i % 2 == 0 ? PinState.HIGH : PinState.LOW;
-            final long pulseLength = pulse.getPulses()[i];
-            if (pulseLength > 0)
-                inputMultipurpose.pulse(pulseLength, pulseState, true);
-        }
-        inputMultipurpose.setMode(PinMode.DIGITAL_INPUT);
+        final PulseEngine engine = PulseEngine.get(getContext().getSystem());
+        Patterns.pipe(engine.submit(inputMultipurpose, pulse,
+                () -> inputMultipurpose.setMode(PinMode.DIGITAL_OUTPUT),
+                () -> inputMultipurpose.setMode(PinMode.DIGITAL_INPUT)), getContext().getDispatcher())
+                .to(sender(), self());
     }
 
     @Override
     public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent event) {
-        switch (event.getState()) {
-            case HIGH:
-                notifyListeners(State.HIGH);
-                break;
-            case LOW:
-                notifyListeners(State.LOW);
-                break;
+        onChange(event.getState().isHigh());
+    }
+
+    private void onChange(boolean high) {
+        if (pulseWidthNanos > 0) {
+            onEdge(high, System.nanoTime());
+        } else if (debounceNanos > 0) {
+            onDebounced(high, System.nanoTime());
+        } else {
+            notifyListeners(high ? State.HIGH : State.LOW);
+        }
+    }
+
+    /**
+     * Glitch filter: the level of each edge is kept as a candidate, timestamped as it is received, and only passed on
+     * once the pin has held it for the minimum pulse width. A candidate replaced by the next edge before that is a
+     * glitch, and is dropped: this is decided by comparing the edges' timestamps, so that the timer confirming the
+     * candidates only delays them, and does not limit the width of the glitches filtered out.
+     */
+    private synchronized void onEdge(boolean high, long now) {
+        if (candidatePending && high == candidate) {
+            return;
+        }
+        if (candidatePending && now - candidateSince >= pulseWidthNanos) {
+            // Held long enough, but the timer has not confirmed it yet
+            onPulse(candidate, candidateSince + pulseWidthNanos);
+        }
+        candidate = high;
+        candidateSince = now;
+        candidatePending = true;
+        arm(now + pulseWidthNanos);
+    }
+
+    private void onPulse(boolean high, long time) {
+        candidatePending = false;
+        if (debounceNanos > 0) {
+            onFiltered(high, time);
+        } else if (reported == null || reported != high) {
+            report(high, time);
+        }
+    }
+
+    private synchronized void onDebounced(boolean high, long now) {
+        onFiltered(high, now);
+    }
+
+    /**
+     * Debouncing: the first change is reported at once, then the pin is ignored until the window has elapsed since the
+     * report, as compared with the changes' timestamps. If it changed in the meantime, its level is read at the end of
+     * the window, and reported if it differs from the last one reported.
+     */
+    private void onFiltered(boolean high, long time) {
+        if (reported != null && reported == high) {
+            return;
+        }
+        if (reported == null || time - reportedAt >= debounceNanos) {
+            report(high, time);
+        } else {
+            lockoutPending = true;
+            arm(reportedAt + debounceNanos);
+        }
+    }
+
+    private void report(boolean high, long time) {
+        reported = high;
+        reportedAt = time;
+        notifyListeners(high ? State.HIGH : State.LOW);
+    }
+
+    /**
+     * Arms the pin's single timer, unless it is already armed for an earlier deadline. Edges only arm it if it is not
+     * armed yet, so that bouncing contacts do not each schedule a task.
+     *
+     * @param deadline the time at which the timer should fire, as per {@link System#nanoTime()}
+     */
+    private void arm(long deadline) {
+        if (timer != null) {
+            if (deadline - timerDeadline >= 0) {
+                return;
+            }
+            timer.cancel();
         }
+        timerDeadline = deadline;
+        timer = scheduler.scheduleOnce(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())), timerTask,
+                executor);
+    }
+
+    private synchronized void onTimer() {
+        timer = null;
+        if (stopped) {
+            return;
+        }
+        final long now = System.nanoTime();
+        if (candidatePending) {
+            final boolean high = inputDigital.isHigh();
+            if (high != candidate) {
+                // As events may be delivered out of order, the pin may already be at another level: start over from it
+                candidate = high;
+                candidateSince = now;
+            } else if (now - candidateSince >= pulseWidthNanos) {
+                onPulse(candidate, candidateSince + pulseWidthNanos);
+            }
+        }
+        if (lockoutPending && now - reportedAt >= debounceNanos) {
+            lockoutPending = false;
+            final boolean high = inputDigital.isHigh();
+            if (reported != high) {
+                report(high, now);
+            }
+        }
+        if (candidatePending) {
+            arm(candidateSince + pulseWidthNanos);
+        }
+        if (lockoutPending) {
+            arm(reportedAt + debounceNanos);
+        }
+    }
+
+    private void schedule(long nanos, Runnable task) {
+        scheduler.scheduleOnce(Duration.ofNanos(nanos), task, executor);
     }
 
     @Override
     public void handleGpioPinAnalogValueChangeEvent(GpioPinAnalogValueChangeEvent event) {
-        notifyListeners(event.getValue());
+        onChange(event.getValue());
+    }
+
+    private void onChange(double value) {
+        if (deadband > 0) {
+            synchronized (this) {
+                if (reportedValue != null && Math.abs(value - reportedValue) < deadband) {
+                    return;
+                }
+                reportedValue = value;
+            }
+        }
+        notifyListeners(value);
+    }
+
+    /**
+     * Changes handed over to a buffer are taken from the provider's listener rather than from the pin's, so that they
+     * arrive in order, and so that a lossless buffer holds back the thread raising them rather than the pin's executor.
+     */
+    private void listenToProvider() {
+        edgeListener = event -> {
+            if (event instanceof PinDigitalStateChangeEvent) {
+                onChange(((PinDigitalStateChangeEvent) event).getState().isHigh());
+            } else if (event instanceof PinAnalogValueChangeEvent) {
+                onChange(((PinAnalogValueChangeEvent) event).getValue());
+            }
+        };
+        input.getProvider().addListener(input.getPin(), edgeListener);
+    }
+
+    private void startCapture() {
+        if (conf.getFrequencyGate() != null) {
+            gateTimer = scheduler.schedule(conf.getFrequencyGate(), conf.getFrequencyGate(), this::onGate, executor);
+        } else {
+            widths = new long[conf.getPulseWidthBatch()];
+            widthStates = new boolean[conf.getPulseWidthBatch()];
+            gapNanos = conf.getPulseWidthGap().toNanos();
+        }
+        // Listening to the provider rather than to the pin, whose events are delivered late by an executor
+        edgeListener = event -> {
+            if (event instanceof PinDigitalStateChangeEvent) {
+                onCapturedEdge(System.nanoTime(), ((PinDigitalStateChangeEvent) event).getState().isHigh());
+            }
+        };
+        input.getProvider().addListener(input.getPin(), edgeListener);
+    }
+
+    private synchronized void onCapturedEdge(long time, boolean high) {
+        if (edgeSeen && high == lastLevel) {
+            return;
+        }
+        if (widths == null) {
+            if (high) {
+                if (rises > 0) {
+                    final long period = time - lastRise;
+                    minPeriod = Math.min(minPeriod, period);
+                    maxPeriod = Math.max(maxPeriod, period);
+                } else {
+                    firstRise = time;
+                }
+                lastRise = time;
+                rises++;
+            }
+        } else if (edgeSeen) {
+            widths[widthCount] = time - lastEdge;
+            widthStates[widthCount] = lastLevel;
+            if (++widthCount == widths.length) {
+                flushWidths();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                schedule(gapNanos, this::onGapElapsed);
+            }
+        }
+        edgeSeen = true;
+        lastEdge = time;
+        lastLevel = high;
+    }
+
+    private synchronized void onGapElapsed() {
+        flushScheduled = false;
+        if (widthCount == 0 || stopped) {
+            return;
+        }
+        final long idle = System.nanoTime() - lastEdge;
+        if (idle >= gapNanos) {
+            flushWidths();
+        } else {
+            flushScheduled = true;
+            schedule(gapNanos - idle, this::onGapElapsed);
+        }
+    }
+
+    private void flushWidths() {
+        notifyListeners(new GPIO.PulseWidths(Arrays.copyOf(widths, widthCount),
+                Arrays.copyOf(widthStates, widthCount)));
+        widthCount = 0;
+    }
+
+    private synchronized void onGate() {
+        final long cycles = rises > 1 ? rises - 1 : 0;
+        notifyListeners(cycles > 0
+                ? new GPIO.Frequency(cycles, (lastRise - firstRise) / cycles, minPeriod, maxPeriod)
+                : new GPIO.Frequency(0, 0, 0, 0));
+        // The last rising edge starts the next measurement
+        if (rises > 0) {
+            firstRise = lastRise;
+            rises = 1;
+        }
+        minPeriod = Long.MAX_VALUE;
+        maxPeriod = 0;
     }
 
     private void notifyListeners(Object msg) {
         for (ActorRef actorRef : listeners) {
             actorRef.tell(msg, self());
         }
+        if (buffer != null) {
+            buffer.offer(msg);
+        }
     }
 }
@@ -5,22 +5,32 @@ import com.pi4j.io.gpio.*;
 import akka.actor.AbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import riot.GPIO;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
 
 public class GPIOOutActor extends AbstractActor {
     private static final int PWM_RANGE = 1024;
 
     final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
-    private static final GpioController gpio = GpioFactory.getInstance();
-
     private final GPIO.Out conf;
 
+    private GpioController gpio;
+    private DeviceMetrics metrics;
+
     private GpioPinOutput output;
     private GpioPinDigitalOutput outputDigital;
     private GpioPinAnalogOutput outputAnalog;
     private GpioPinPwmOutput outputPwm;
 
+    private WaveformGenerator.Channel channel;
+    private double frequency;
+    private double duty;
+
     protected GPIOOutActor(GPIO.Out conf) {
         this.conf = conf;
     }
@@ -37,17 +47,46 @@ public class GPIOOutActor extends AbstractActor {
                 return super.receiveBuilder()
                         .match(Double.class, this::onValue).build();
             case PWM_OUTPUT:
+                if (conf.isSoftware()) {
+                    return super.receiveBuilder()
+                            .match(Double.class, this::onDuty)
+                            .match(Integer.class, this::onDuty)
+                            .match(GPIO.Waveform.class, this::onWaveform)
+                            .build();
+                }
                 return super.receiveBuilder()
                         .match(Double.class, this::onValue)
                         .match(Integer.class, this::onValue)
                         .build();
+            case PWM_TONE_OUTPUT:
+                return super.receiveBuilder()
+                        .match(Integer.class, this::onTone)
+                        .match(GPIO.Waveform.class, this::onWaveform)
+                        .build();
             default:
                 throw new IllegalArgumentException("GPIOOutActor cannot be created for " + conf.getPinMode());
         }
     }
 
+    /**
+     * Records the time taken by each message with the metrics of the pin.
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object msg) {
+        final long start = System.nanoTime();
+        try {
+            super.aroundReceive(receive, msg);
+        } catch (Throwable t) {
+            metrics.recordError(start);
+            throw t;
+        }
+        metrics.record(start);
+    }
+
     @Override
     public void preStart() {
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
+        gpio = conf.getBackend().getGpioController();
         if (output == null) {
             switch (conf.getPinMode()) {
                 case DIGITAL_OUTPUT:
@@ -65,6 +104,10 @@ public class GPIOOutActor extends AbstractActor {
                     output = outputAnalog;
                     break;
                 case PWM_OUTPUT:
+                    if (conf.isSoftware()) {
+                        openChannel(conf.getFrequency(), conf.getInitialValue() != null ? conf.getInitialValue() : 0);
+                        break;
+                    }
                     outputPwm = gpio.provisionPwmOutputPin(conf.getPin(), conf.getName());
                     outputPwm.setPwmRange(PWM_RANGE);
                     if (conf.getInitialValue() != null) {
@@ -72,6 +115,9 @@ public class GPIOOutActor extends AbstractActor {
                     }
                     output = outputPwm;
                     break;
+                case PWM_TONE_OUTPUT:
+                    openChannel(conf.getInitialValue() != null ? conf.getInitialValue() : 0, 0.5);
+                    break;
                 default:
                     throw new IllegalArgumentException("GPIOOutActor cannot be initialized for " + conf.getPinMode());
             }
@@ -86,8 +132,20 @@ public class GPIOOutActor extends AbstractActor {
         }
     }
 
+    private void openChannel(double frequency, double duty) {
+        outputDigital = gpio.provisionDigitalOutputPin(conf.getPin(), conf.getName(), PinState.LOW);
+        output = outputDigital;
+        channel = WaveformGenerator.get(getContext().getSystem()).open(outputDigital);
+        this.frequency = frequency;
+        this.duty = duty;
+        channel.set(frequency, duty);
+    }
+
     @Override
     public void postStop() {
+        if (channel != null) {
+            channel.close();
+        }
         if (output != null) {
             output.unexport();
         }
@@ -116,15 +174,8 @@ public class GPIOOutActor extends AbstractActor {
     }
 
     public void onGPIOPulse(GPIO.Pulse pulse) {
-        for (int i = 0; i < pulse.getPulses().length; i++) {
-            //Even pulses, starting with 0, are high, odds are low
-            final PinState pulseState = i % 2 == 0 ? PinState.HIGH : PinState.LOW;
-            final long pulseLength = pulse.getPulses()[i];
-            if (pulseLength > 0) {
-                outputDigital.pulse(pulseLength, pulseState, pulse.getPulses().length > 1);
-            }
-        }
-        sender().tell(pulse, self());
+        final PulseEngine engine = PulseEngine.get(getContext().getSystem());
+        Patterns.pipe(engine.submit(outputDigital, pulse), getContext().getDispatcher()).to(sender(), self());
     }
 
     public void onValue(Double value) {
@@ -144,6 +195,31 @@ public class GPIOOutActor extends AbstractActor {
         }
     }
 
+    public void onDuty(Double duty) {
+        this.duty = duty;
+        channel.set(frequency, duty);
+        sender().tell(duty, self());
+    }
+
+    public void onDuty(Integer steps) {
+        this.duty = (double) steps / PWM_RANGE;
+        channel.set(frequency, duty);
+        sender().tell(steps, self());
+    }
+
+    public void onTone(Integer frequency) {
+        this.frequency = frequency;
+        channel.set(frequency, duty);
+        sender().tell(frequency, self());
+    }
+
+    public void onWaveform(GPIO.Waveform waveform) {
+        this.frequency = waveform.getFrequency();
+        this.duty = waveform.getDuty();
+        channel.set(frequency, duty);
+        sender().tell(waveform, self());
+    }
+
     private static final int toPwmSteps(double value) {
         final long steps = Math.round(value * PWM_RANGE);
         if (steps > PWM_RANGE) {
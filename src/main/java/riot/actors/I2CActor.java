@@ -1,16 +1,24 @@
 package riot.actors;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CDevice;
-import com.pi4j.io.i2c.I2CFactory;
 import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
 
+import akka.Done;
 import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Status;
 import akka.event.Logging;
+import akka.pattern.Patterns;
 import akka.event.LoggingAdapter;
 import riot.I2C;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
 import riot.protocols.I2CProtocol;
 
 public class I2CActor<P extends I2CProtocol<I, O>, I, O> extends AbstractActor {
@@ -18,6 +26,9 @@ public class I2CActor<P extends I2CProtocol<I, O>, I, O> extends AbstractActor {
 
     private I2CDevice dev;
     private I2CProtocol<I, O> proto;
+    private ActorRef arbiter;
+    private Coalescer<I, O> coalescer;
+    private DeviceMetrics metrics;
 
     private final I2C<P, I, O> conf;
 
@@ -28,24 +39,87 @@ public class I2CActor<P extends I2CProtocol<I, O>, I, O> extends AbstractActor {
     @Override
     public Receive createReceive() {
         return super.receiveBuilder() //
+                .match(Coalescer.Flush.class, f -> coalescer.onFlush(f, self()))
+                .match(Coalescer.Completed.class, c -> coalescer.onCompleted(c, self()))
+                .matchEquals(Done.getInstance(), d -> log.debug("I2C device opened"))
+                .match(Status.Failure.class, this::onOpenFailed)
                 .match(conf.getProtocolDescriptor().getInputMessageType(), this::onMessage).build();
     }
 
     @Override
     public void preStart() throws UnsupportedBusNumberException, IOException {
-        final I2CBus bus = I2CFactory.getInstance(conf.getBusNumber());
-        dev = bus.getDevice(conf.getAddress());
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
         proto = conf.getProtocol();
+        if (conf.isArbitrated()) {
+            // The device is only accessed by jobs, which the arbiter runs one at a time
+            arbiter = I2CBusArbiters.get(getContext().getSystem()).forBus(conf.getBackend(), conf.getBusNumber());
+            // The opening job's outcome is piped back, so that the actor fails if the device can't be opened
+            Patterns.pipe(Patterns.askWithReplyTo(arbiter,
+                    replyTo -> I2CBusArbiter.Request.lifecycle(this::open, replyTo), getTimeout()),
+                    getContext().getDispatcher()).to(self());
+        } else {
+            open(conf.getBackend().getI2CBus(conf.getBusNumber()));
+        }
+        if (conf.getCoalescingWindow() != null) {
+            coalescer = new Coalescer<>(conf.getProtocolDescriptor(), conf.getCoalescingWindow(),
+                    arbiter != null ? this::askArbiter : m -> CompletableFuture.completedFuture(exec(m)));
+        }
+    }
+
+    private Duration getTimeout() {
+        return Duration.ofMillis(conf.getProtocolDescriptor().getTimeout().duration().toMillis());
+    }
+
+    private CompletionStage<O> askArbiter(I message) {
+        return Patterns.askWithReplyTo(arbiter, replyTo -> new I2CBusArbiter.Request(conf.getPriority(),
+                conf.getDeadline(), bus -> exec(message), replyTo), getTimeout())
+                .thenApply(conf.getProtocolDescriptor().getOutputMessageType()::cast);
+    }
+
+    private Object open(I2CBus bus) throws IOException {
+        dev = conf.openDevice(bus);
         proto.init(dev);
+        return Done.getInstance();
+    }
+
+    private void onOpenFailed(Status.Failure failure) throws IOException {
+        throw new IOException("Could not open I2C device on bus " + conf.getBusNumber(), failure.cause());
     }
 
     @Override
     public void postStop() throws IOException {
-        proto.shutdown(dev);
+        if (arbiter != null) {
+            arbiter.tell(I2CBusArbiter.Request.lifecycle(bus -> {
+                proto.shutdown(dev);
+                return null;
+            }, null), ActorRef.noSender());
+        } else {
+            proto.shutdown(dev);
+        }
+    }
+
+    private O exec(I message) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final O result = proto.exec(dev, message);
+            metrics.record(start);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(start);
+            throw e;
+        }
     }
 
-    public void onMessage(I message) throws IOException {
-        sender().tell(proto.exec(dev, message), self());
+    public void onMessage(I message) throws Exception {
+        if (coalescer != null && coalescer.onMessage(message, sender(), self())) {
+            return;
+        }
+        if (arbiter != null) {
+            arbiter.tell(new I2CBusArbiter.Request(conf.getPriority(), conf.getDeadline(),
+                    bus -> exec(message), sender()), self());
+        } else {
+            sender().tell(exec(message), self());
+        }
     }
 
 }
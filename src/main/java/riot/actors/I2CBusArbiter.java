@@ -0,0 +1,289 @@
+package riot.actors;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeoutException;
+
+import com.pi4j.io.i2c.I2CBus;
+
+import akka.Done;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import riot.backends.Backend;
+import riot.dispatchers.IODispatchers;
+
+/**
+ * Owns an I2C bus, and serialises the jobs sent to it by all the device actors on that bus. Queued jobs opening or
+ * closing a device are run first; the others are run in order of priority (highest first), then of deadline (earliest
+ * first), then of arrival. Only one job is run per message processed, so that a job queued while others are waiting
+ * can overtake them. A job whose deadline has passed by the time it is dequeued is not run, and fails with a
+ * {@link TimeoutException}.
+ *
+ * @see I2CBusArbiters
+ */
+public class I2CBusArbiter extends AbstractActor {
+    final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+
+    /**
+     * A sequence of operations on the bus.
+     *
+     * @param <T> the type of the job's result
+     */
+    @FunctionalInterface
+    public interface Job<T> {
+        T run(I2CBus bus) throws Exception;
+    }
+
+    /**
+     * A job to run on the bus. Its result is sent to the recipient of the request, or {@link Done} if it returned
+     * null; if it fails, a {@link Status.Failure} is sent instead.
+     */
+    public static final class Request {
+        private final int priority;
+        private final long deadline;
+        private final Job<?> job;
+        private final ActorRef replyTo;
+        private final boolean lifecycle;
+        private long sequence;
+
+        /**
+         * @param priority the priority of the job; jobs of higher priority are run first
+         * @param deadline the time after which the job should not be run anymore, or null if it should always be run
+         * @param job      the job to run
+         * @param replyTo  the recipient of the job's result, or null if the result should be discarded
+         */
+        public Request(int priority, Duration deadline, Job<?> job, ActorRef replyTo) {
+            this(priority, deadline, job, replyTo, false);
+        }
+
+        private Request(int priority, Duration deadline, Job<?> job, ActorRef replyTo, boolean lifecycle) {
+            this.priority = priority;
+            this.deadline = deadline == null ? Long.MAX_VALUE : System.nanoTime() + deadline.toNanos();
+            this.job = job;
+            this.replyTo = replyTo;
+            this.lifecycle = lifecycle;
+        }
+
+        /**
+         * Opening or closing a device: run before any other job, whatever its priority, so that a device is never
+         * accessed before it has been opened.
+         *
+         * @param job     the job to run
+         * @param replyTo the recipient of the job's result, or null if the result should be discarded
+         * @return the request.
+         */
+        static Request lifecycle(Job<?> job, ActorRef replyTo) {
+            return new Request(Integer.MAX_VALUE, null, job, replyTo, true);
+        }
+    }
+
+    /**
+     * Asks the arbiter for the statistics of its bus, which it replies to with a {@link Stats} message.
+     */
+    public enum Query {
+        STATS
+    }
+
+    /**
+     * The statistics of a bus since its arbiter started.
+     */
+    public static final class Stats {
+        private final int busNumber;
+        private final long completed;
+        private final long failed;
+        private final long expired;
+        private final int queued;
+        private final int maxQueued;
+        private final long busyNanos;
+        private final long uptimeNanos;
+
+        Stats(int busNumber, long completed, long failed, long expired, int queued, int maxQueued, long busyNanos,
+              long uptimeNanos) {
+            this.busNumber = busNumber;
+            this.completed = completed;
+            this.failed = failed;
+            this.expired = expired;
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+            this.busyNanos = busyNanos;
+            this.uptimeNanos = uptimeNanos;
+        }
+
+        public int getBusNumber() {
+            return busNumber;
+        }
+
+        /**
+         * @return the number of jobs that were run successfully.
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return the number of jobs that failed.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of jobs that were not run, because their deadline had passed.
+         */
+        public long getExpired() {
+            return expired;
+        }
+
+        /**
+         * @return the number of jobs waiting to be run.
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return the largest number of jobs that have been waiting at the same time.
+         */
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        /**
+         * @return the total time spent running jobs.
+         */
+        public Duration getBusyTime() {
+            return Duration.ofNanos(busyNanos);
+        }
+
+        /**
+         * @return the time elapsed since the arbiter started.
+         */
+        public Duration getUptime() {
+            return Duration.ofNanos(uptimeNanos);
+        }
+
+        /**
+         * @return the fraction of the time spent running jobs, between 0 and 1.
+         */
+        public double getUtilisation() {
+            return uptimeNanos > 0 ? (double) busyNanos / uptimeNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats(bus %d: %d completed, %d failed, %d expired, %d/%d queued, %.1f%% busy)",
+                    busNumber, completed, failed, expired, queued, maxQueued, getUtilisation() * 100);
+        }
+    }
+
+    private static final Object TICK = "tick";
+
+    private static final Comparator<Request> ORDER = Comparator.comparing((Request r) -> !r.lifecycle)
+            .thenComparing(Comparator.comparingInt((Request r) -> r.priority).reversed())
+            .thenComparingLong(r -> r.deadline)
+            .thenComparingLong(r -> r.sequence);
+
+    private final Backend backend;
+    private final int busNumber;
+    private final PriorityQueue<Request> queue = new PriorityQueue<>(ORDER);
+
+    private I2CBus bus;
+    private boolean tickPending = false;
+    private long sequence = 0;
+    private long completed = 0;
+    private long failed = 0;
+    private long expired = 0;
+    private int maxQueued = 0;
+    private long busyNanos = 0;
+    private long started;
+
+    protected I2CBusArbiter(Backend backend, int busNumber) {
+        this.backend = backend;
+        this.busNumber = busNumber;
+    }
+
+    /**
+     * @param backend   the backend through which the bus is accessed
+     * @param busNumber the number of the bus
+     * @return the Props of an arbiter for that bus, running on the bus' dedicated dispatcher.
+     */
+    public static Props props(Backend backend, int busNumber) {
+        return Props.create(I2CBusArbiter.class, backend, busNumber).withDispatcher(IODispatchers.i2cBus(busNumber));
+    }
+
+    @Override
+    public Receive createReceive() {
+        return super.receiveBuilder()
+                .match(Request.class, this::onRequest)
+                .matchEquals(TICK, t -> onTick())
+                .matchEquals(Query.STATS, q -> sender().tell(getStats(), self()))
+                .build();
+    }
+
+    @Override
+    public void preStart() throws Exception {
+        started = System.nanoTime();
+        bus = backend.getI2CBus(busNumber);
+    }
+
+    private void onRequest(Request request) {
+        request.sequence = sequence++;
+        queue.add(request);
+        maxQueued = Math.max(maxQueued, queue.size());
+        scheduleTick();
+    }
+
+    private void onTick() {
+        tickPending = false;
+        final Request request = queue.poll();
+        if (request != null) {
+            run(request);
+        }
+        if (!queue.isEmpty()) {
+            scheduleTick();
+        }
+    }
+
+    private void scheduleTick() {
+        if (!tickPending) {
+            tickPending = true;
+            self().tell(TICK, self());
+        }
+    }
+
+    private void run(Request request) {
+        final long start = System.nanoTime();
+        if (start - request.deadline > 0) {
+            expired++;
+            reply(request, new Status.Failure(new TimeoutException("Deadline passed before the job could run")));
+            return;
+        }
+        Object result;
+        try {
+            result = request.job.run(bus);
+            completed++;
+        } catch (Exception e) {
+            log.error(e, "I2C job failed on bus {}", busNumber);
+            result = new Status.Failure(e);
+            failed++;
+        }
+        busyNanos += System.nanoTime() - start;
+        reply(request, result);
+    }
+
+    private void reply(Request request, Object result) {
+        if (request.replyTo != null) {
+            request.replyTo.tell(result != null ? result : Done.getInstance(), self());
+        }
+    }
+
+    private Stats getStats() {
+        return new Stats(busNumber, completed, failed, expired, queue.size(), maxQueued, busyNanos,
+                System.nanoTime() - started);
+    }
+}
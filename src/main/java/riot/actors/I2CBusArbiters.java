@@ -0,0 +1,64 @@
+package riot.actors;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.Map;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import riot.backends.Backend;
+
+/**
+ * An Akka extension keeping track of the I2C bus arbiters of an actor system, so that all the devices on a bus share
+ * the same arbiter.
+ *
+ * @see I2CBusArbiter
+ */
+public class I2CBusArbiters implements Extension {
+
+    private static final class Id extends AbstractExtensionId<I2CBusArbiters> implements ExtensionIdProvider {
+        @Override
+        public I2CBusArbiters createExtension(ExtendedActorSystem system) {
+            return new I2CBusArbiters(system);
+        }
+
+        @Override
+        public Id lookup() {
+            return ID;
+        }
+    }
+
+    private static final Id ID = new Id();
+
+    private final ActorSystem system;
+    private final Map<SimpleImmutableEntry<Backend, Integer>, ActorRef> arbiters = new HashMap<>();
+
+    private I2CBusArbiters(ActorSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * @param system the actor system
+     * @return the I2C bus arbiters of that actor system.
+     */
+    public static I2CBusArbiters get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    /**
+     * Returns the arbiter of an I2C bus, creating it if needed.
+     *
+     * @param backend   the backend through which the bus is accessed
+     * @param busNumber the number of the bus
+     * @return the arbiter of that bus.
+     */
+    public synchronized ActorRef forBus(Backend backend, int busNumber) {
+        return arbiters.computeIfAbsent(new SimpleImmutableEntry<>(backend, busNumber),
+                k -> system.actorOf(I2CBusArbiter.props(backend, busNumber),
+                        "i2c-bus-" + busNumber + "-arbiter-" + arbiters.size()));
+    }
+}
@@ -4,12 +4,14 @@ import akka.actor.AbstractActor;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import com.pi4j.io.w1.W1Device;
-import com.pi4j.io.w1.W1Master;
 import riot.OneWire;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
 import riot.protocols.OneWireProtocol;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class OneWireActor<P extends OneWireProtocol<I, O>, I, O> extends AbstractActor {
     final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
@@ -17,6 +19,9 @@ public class OneWireActor<P extends OneWireProtocol<I, O>, I, O> extends Abstrac
     private List<W1Device> dev;
     private OneWireProtocol<I, O> proto;
 
+    private Coalescer<I, O> coalescer;
+    private DeviceMetrics metrics;
+
     private final OneWire<P, I, O> conf;
 
     protected OneWireActor(OneWire<P, I, O> conf) {
@@ -26,15 +31,21 @@ public class OneWireActor<P extends OneWireProtocol<I, O>, I, O> extends Abstrac
     @Override
     public Receive createReceive() {
         return super.receiveBuilder() //
+                .match(Coalescer.Flush.class, f -> coalescer.onFlush(f, self()))
                 .match(conf.getProtocolDescriptor().getInputMessageType(), this::onMessage).build();
     }
 
     @Override
     public void preStart() throws IOException {
-        final W1Master w1Master = new W1Master();
-        dev = w1Master.getDevices(conf.getDeviceFamily());
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
+        dev = OneWireRegistry.get(getContext().getSystem()).devices(conf.getBackend(), conf.getDeviceFamily())
+                .getDevices();
         proto = conf.getProtocol();
-        proto.init(dev);
+        proto.init(dev, conf.getBackend());
+        if (conf.getCoalescingWindow() != null) {
+            coalescer = new Coalescer<>(conf.getProtocolDescriptor(), conf.getCoalescingWindow(),
+                    m -> CompletableFuture.completedFuture(exec(m)));
+        }
     }
 
     @Override
@@ -42,8 +53,23 @@ public class OneWireActor<P extends OneWireProtocol<I, O>, I, O> extends Abstrac
         proto.shutdown(dev);
     }
 
-    public void onMessage(I message) throws IOException {
-        sender().tell(proto.exec(dev, message), self());
+    private O exec(I message) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final O result = proto.exec(dev, message);
+            metrics.record(start);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(start);
+            throw e;
+        }
+    }
+
+    public void onMessage(I message) throws Exception {
+        if (coalescer != null && coalescer.onMessage(message, sender(), self())) {
+            return;
+        }
+        sender().tell(exec(message), self());
     }
 
 }
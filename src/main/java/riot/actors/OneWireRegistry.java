@@ -0,0 +1,173 @@
+package riot.actors;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pi4j.io.w1.W1Device;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import riot.backends.Backend;
+import riot.dispatchers.IODispatchers;
+
+/**
+ * An Akka extension keeping a live list of the OneWire devices of each family, shared by all the actors and stages
+ * accessing them. The lists are kept up to date by listing the ids of the connected devices periodically
+ * (<code>riot.onewire-registry.poll-interval</code>), and only creating the devices which appeared, and dropping those
+ * which disappeared; sysfs does not notify changes of its directories, so they cannot be watched.
+ */
+public class OneWireRegistry implements Extension {
+
+    private static final class Id extends AbstractExtensionId<OneWireRegistry> implements ExtensionIdProvider {
+        @Override
+        public OneWireRegistry createExtension(ExtendedActorSystem system) {
+            return new OneWireRegistry(system);
+        }
+
+        @Override
+        public Id lookup() {
+            return ID;
+        }
+    }
+
+    private static final Id ID = new Id();
+
+    /**
+     * The devices of one family, accessed through one backend.
+     */
+    public static final class Devices {
+        private final Backend backend;
+        private final int deviceFamily;
+        private final List<W1Device> devices = new CopyOnWriteArrayList<>();
+        private final List<W1Device> view = Collections.unmodifiableList(devices);
+        private final AtomicLong added = new AtomicLong();
+        private final AtomicLong removed = new AtomicLong();
+
+        private Devices(Backend backend, int deviceFamily) {
+            this.backend = backend;
+            this.deviceFamily = deviceFamily;
+        }
+
+        /**
+         * @return the devices currently connected. The list is updated in place as devices are connected or
+         * disconnected, and can be iterated while it is.
+         */
+        public List<W1Device> getDevices() {
+            return view;
+        }
+
+        /**
+         * Updates the list of devices at once, rather than at the next poll.
+         *
+         * @return true if devices were added or removed.
+         * @throws IOException if the devices cannot be enumerated
+         */
+        public synchronized boolean refresh() throws IOException {
+            final Set<String> ids = new HashSet<>(backend.getW1DeviceIds(deviceFamily));
+            final List<W1Device> gone = new ArrayList<>();
+            final Set<String> known = new HashSet<>();
+            for (W1Device device : devices) {
+                if (ids.contains(device.getId())) {
+                    known.add(device.getId());
+                } else {
+                    gone.add(device);
+                }
+            }
+            ids.removeAll(known);
+            devices.removeAll(gone);
+            removed.addAndGet(gone.size());
+            if (!ids.isEmpty()) {
+                final List<W1Device> appeared = backend.getW1Devices(deviceFamily, ids);
+                devices.addAll(appeared);
+                added.addAndGet(appeared.size());
+            }
+            return !gone.isEmpty() || !ids.isEmpty();
+        }
+
+        /**
+         * @return the number of devices which appeared since the list was created, including the initial ones.
+         */
+        public long getAdded() {
+            return added.get();
+        }
+
+        /**
+         * @return the number of devices which disappeared since the list was created.
+         */
+        public long getRemoved() {
+            return removed.get();
+        }
+
+        @Override
+        public String toString() {
+            return "OneWire devices of family " + Integer.toHexString(deviceFamily) + ": " + devices.size();
+        }
+    }
+
+    private final LoggingAdapter log;
+    private final Map<SimpleImmutableEntry<Backend, Integer>, Devices> registry = new ConcurrentHashMap<>();
+
+    private OneWireRegistry(ActorSystem system) {
+        log = Logging.getLogger(system, this);
+        final Duration interval = system.settings().config().getDuration("riot.onewire-registry.poll-interval");
+        system.scheduler().schedule(interval, interval, this::poll,
+                system.dispatchers().lookup(IODispatchers.BLOCKING_IO));
+    }
+
+    /**
+     * @param system the actor system
+     * @return the OneWire device registry of that actor system.
+     */
+    public static OneWireRegistry get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    /**
+     * Returns the devices of a family, enumerating them if this is the first time they are requested.
+     *
+     * @param backend      the backend through which the devices are accessed
+     * @param deviceFamily the OneWire device family code
+     * @return the live list of devices of that family.
+     * @throws IOException if the devices cannot be enumerated
+     */
+    public Devices devices(Backend backend, int deviceFamily) throws IOException {
+        final SimpleImmutableEntry<Backend, Integer> key = new SimpleImmutableEntry<>(backend, deviceFamily);
+        Devices devices = registry.get(key);
+        if (devices == null) {
+            final Devices created = new Devices(backend, deviceFamily);
+            created.refresh();
+            devices = registry.putIfAbsent(key, created);
+            if (devices == null) {
+                devices = created;
+            }
+        }
+        return devices;
+    }
+
+    private void poll() {
+        for (Devices devices : registry.values()) {
+            try {
+                if (devices.refresh()) {
+                    log.info("{} after refresh", devices);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warning("Unable to refresh {}: {}", devices, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package riot.actors;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.PinState;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import riot.GPIO;
+
+/**
+ * An Akka extension which plays pulse sequences on output pins, on a dedicated thread rather than on the actors'
+ * dispatcher. The time of each edge is computed from the start of the sequence, so that errors do not add up; the
+ * thread sleeps until shortly before each edge, then spins until it is due. The spin threshold is set by
+ * <code>riot.pulse-engine.spin-threshold</code>. Sequences are played one at a time, in the order they were submitted.
+ *
+ * @see GPIO.Pulse
+ */
+public class PulseEngine implements Extension {
+
+    private static final class Id extends AbstractExtensionId<PulseEngine> implements ExtensionIdProvider {
+        @Override
+        public PulseEngine createExtension(ExtendedActorSystem system) {
+            return new PulseEngine(system);
+        }
+
+        @Override
+        public Id lookup() {
+            return ID;
+        }
+    }
+
+    private static final Id ID = new Id();
+
+    private static final class Job {
+        final GpioPinDigitalOutput pin;
+        final GPIO.Pulse pulse;
+        final Runnable before;
+        final Runnable after;
+        final CompletableFuture<GPIO.Pulse> done = new CompletableFuture<>();
+
+        Job(GpioPinDigitalOutput pin, GPIO.Pulse pulse, Runnable before, Runnable after) {
+            this.pin = pin;
+            this.pulse = pulse;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final long spinThresholdNanos;
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private PulseEngine(ActorSystem system) {
+        spinThresholdNanos = system.settings().config().getDuration("riot.pulse-engine.spin-threshold").toNanos();
+        thread = new Thread(this::run, system.name() + "-riot-pulse-engine");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        system.registerOnTermination(thread::interrupt);
+    }
+
+    /**
+     * @param system the actor system
+     * @return the pulse engine of that actor system.
+     */
+    public static PulseEngine get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    /**
+     * Plays a pulse sequence on a pin, once the sequences submitted before it have been played.
+     *
+     * @param pin   the output pin
+     * @param pulse the pulse sequence
+     * @return a stage completed with a copy of the pulse sequence, with the timing achieved, once it has been played.
+     */
+    public CompletionStage<GPIO.Pulse> submit(GpioPinDigitalOutput pin, GPIO.Pulse pulse) {
+        return submit(pin, pulse, null, null);
+    }
+
+    /**
+     * Plays a pulse sequence on a pin, running the actions passed just before and after it, e.g. to switch a
+     * bidirectional pin to output and back.
+     *
+     * @param pin    the output pin
+     * @param pulse  the pulse sequence
+     * @param before the action run on the engine's thread before the sequence, or null
+     * @param after  the action run on the engine's thread after the sequence, or null
+     * @return a stage completed with a copy of the pulse sequence, with the timing achieved, once it has been played.
+     */
+    public CompletionStage<GPIO.Pulse> submit(GpioPinDigitalOutput pin, GPIO.Pulse pulse, Runnable before,
+                                              Runnable after) {
+        final Job job = new Job(pin, pulse, before, after);
+        jobs.add(job);
+        return job.done;
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Job job = jobs.take();
+                try {
+                    final GPIO.Pulse.Timing timing;
+                    try {
+                        if (job.before != null) {
+                            job.before.run();
+                        }
+                        timing = play(job.pin, job.pulse);
+                    } finally {
+                        // Restores e.g. a bidirectional pin's mode, even if the sequence couldn't be played
+                        if (job.after != null) {
+                            job.after.run();
+                        }
+                    }
+                    job.done.complete(job.pulse.withTiming(timing));
+                } catch (RuntimeException e) {
+                    job.done.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The actor system is terminating
+        }
+        for (Job job : jobs) {
+            job.done.cancel(false);
+        }
+    }
+
+    private GPIO.Pulse.Timing play(GpioPinDigitalOutput pin, GPIO.Pulse pulse) {
+        final long[] lengths = pulse.getPulses();
+        final long[] errors = new long[lengths.length + 1];
+        int edges = 0;
+        final long start = System.nanoTime();
+        long target = start;
+        PinState played = null;
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) {
+                //Even pulses, starting with 0, are high, odds are low
+                final PinState state = i % 2 == 0 ? PinState.HIGH : PinState.LOW;
+                errors[edges++] = waitUntil(target);
+                pin.setState(state);
+                played = state;
+                target += pulse.getUnit().toNanos(lengths[i]);
+            }
+        }
+        // The trailing edge ends the last pulse actually played, if any
+        if (played != null) {
+            errors[edges++] = waitUntil(target);
+            pin.setState(PinState.getInverseState(played));
+        }
+        return new GPIO.Pulse.Timing(Arrays.copyOf(errors, edges), System.nanoTime() - start);
+    }
+
+    /**
+     * @param deadline the time to wait for, as per {@link System#nanoTime()}
+     * @return how late it is on return, in nanoseconds.
+     */
+    private long waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > spinThresholdNanos) {
+            LockSupport.parkNanos(remaining - spinThresholdNanos);
+        }
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            // Busy-wait for the remainder
+        }
+        return now - deadline;
+    }
+}
@@ -5,11 +5,13 @@ import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import com.pi4j.io.spi.SpiChannel;
 import com.pi4j.io.spi.SpiDevice;
-import com.pi4j.io.spi.SpiFactory;
 import riot.SPI;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
 import riot.protocols.SPIProtocol;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public class SPIActor<P extends SPIProtocol<I, O>, I, O> extends AbstractActor {
     final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
@@ -17,6 +19,9 @@ public class SPIActor<P extends SPIProtocol<I, O>, I, O> extends AbstractActor {
     private SpiDevice dev;
     private SPIProtocol<I, O> proto;
 
+    private Coalescer<I, O> coalescer;
+    private DeviceMetrics metrics;
+
     private final SPI<P, I, O> conf;
 
     protected SPIActor(SPI<P, I, O> conf) {
@@ -26,15 +31,21 @@ public class SPIActor<P extends SPIProtocol<I, O>, I, O> extends AbstractActor {
     @Override
     public Receive createReceive() {
         return super.receiveBuilder() //
+                .match(Coalescer.Flush.class, f -> coalescer.onFlush(f, self()))
                 .match(conf.getProtocolDescriptor().getInputMessageType(), this::onMessage).build();
     }
 
     @Override
     public void preStart() throws IOException {
+        metrics = Metrics.get(getContext().getSystem()).device(conf.getMetricsName(), self());
         final SpiChannel chan = SpiChannel.getByNumber(conf.getChannel());
-        dev = SpiFactory.getInstance(chan, conf.getSpeed(), conf.getMode());
+        dev = conf.getBackend().getSpiDevice(chan, conf.getSpeed(), conf.getMode());
         proto = conf.getProtocol();
         proto.init(dev);
+        if (conf.getCoalescingWindow() != null) {
+            coalescer = new Coalescer<>(conf.getProtocolDescriptor(), conf.getCoalescingWindow(),
+                    m -> CompletableFuture.completedFuture(exec(m)));
+        }
     }
 
     @Override
@@ -42,8 +53,23 @@ public class SPIActor<P extends SPIProtocol<I, O>, I, O> extends AbstractActor {
         proto.shutdown(dev);
     }
 
-    public void onMessage(I message) throws IOException {
-        sender().tell(proto.exec(dev, message), self());
+    private O exec(I message) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final O result = proto.exec(dev, message);
+            metrics.record(start);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError(start);
+            throw e;
+        }
+    }
+
+    public void onMessage(I message) throws Exception {
+        if (coalescer != null && coalescer.onMessage(message, sender(), self())) {
+            return;
+        }
+        sender().tell(exec(message), self());
     }
 
 }
@@ -0,0 +1,304 @@
+package riot.actors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.typesafe.config.Config;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+
+/**
+ * An Akka extension generating software PWM signals on any digital output pin. All channels are multiplexed onto a
+ * single thread, which schedules their edges on a hashed timing wheel: each tick of the wheel, only the channels with
+ * an edge due are visited, so the cost of a channel is proportional to its frequency rather than to the number of
+ * channels. The edges are aligned on ticks, whose length (<code>riot.waveform-generator.tick</code>) is the resolution
+ * of the signals.
+ */
+public class WaveformGenerator implements Extension {
+
+    private static final class Id extends AbstractExtensionId<WaveformGenerator> implements ExtensionIdProvider {
+        @Override
+        public WaveformGenerator createExtension(ExtendedActorSystem system) {
+            return new WaveformGenerator(system);
+        }
+
+        @Override
+        public Id lookup() {
+            return ID;
+        }
+    }
+
+    private static final Id ID = new Id();
+
+    /**
+     * A signal generated on a pin. Its frequency and duty cycle can be changed at any time; changes take effect at
+     * the start of the next period.
+     */
+    public final class Channel {
+        private final GpioPinDigitalOutput pin;
+        private volatile long periodNanos;
+        private volatile long highNanos;
+        private volatile boolean closed;
+
+        // Owned by the generator's thread
+        private boolean inWheel;
+        private boolean high;
+        private long periodStart;
+        private long period;
+        private long deadline;
+        private Channel next;
+
+        private Channel(GpioPinDigitalOutput pin) {
+            this.pin = pin;
+        }
+
+        /**
+         * @param frequency the frequency of the signal, in Hz; zero to hold the pin low, or high if the duty cycle is
+         *                  1
+         * @param duty      the fraction of each period during which the pin is high, between 0 and 1
+         */
+        public void set(double frequency, double duty) {
+            final double clamped = Math.max(0, Math.min(1, duty));
+            final long period = frequency > 0 ? Math.round(1e9 / frequency) : 0;
+            this.periodNanos = period;
+            this.highNanos = period > 0 ? Math.round(period * clamped) : (clamped >= 1 ? 1 : 0);
+            command(this);
+        }
+
+        /**
+         * Stops the signal, leaving the pin as it is. No edge is generated once this returns.
+         */
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            command(this);
+        }
+
+        private boolean isOscillating() {
+            return periodNanos > 0 && highNanos > 0 && highNanos < periodNanos;
+        }
+
+        private synchronized void write(boolean level) {
+            if (!closed) {
+                pin.setState(level);
+                edges.incrementAndGet();
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final Channel[] wheel;
+    private final int mask;
+    private final BlockingQueue<Channel> commands = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final long start = System.nanoTime();
+    private long tick;
+    private int scheduled;
+
+    private final AtomicInteger channels = new AtomicInteger();
+    private final AtomicLong edges = new AtomicLong();
+    private final AtomicLong lateness = new AtomicLong();
+
+    private WaveformGenerator(ActorSystem system) {
+        final Config config = system.settings().config().getConfig("riot.waveform-generator");
+        tickNanos = config.getDuration("tick").toNanos();
+        final int size = Integer.highestOneBit(Math.max(2, config.getInt("wheel-size") - 1)) << 1;
+        wheel = new Channel[size];
+        mask = size - 1;
+        thread = new Thread(this::run, system.name() + "-riot-waveform-generator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        system.registerOnTermination(thread::interrupt);
+    }
+
+    /**
+     * @param system the actor system
+     * @return the waveform generator of that actor system.
+     */
+    public static WaveformGenerator get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    /**
+     * Opens a channel generating a signal on a pin. The pin is left as it is until the channel is set.
+     *
+     * @param pin the output pin
+     * @return the channel.
+     */
+    public Channel open(GpioPinDigitalOutput pin) {
+        channels.incrementAndGet();
+        return new Channel(pin);
+    }
+
+    /**
+     * @return the number of channels currently open.
+     */
+    public int getChannels() {
+        return channels.get();
+    }
+
+    /**
+     * @return the number of edges generated so far, on all channels.
+     */
+    public long getEdges() {
+        return edges.get();
+    }
+
+    /**
+     * @return the average time by which edges were late, compared to the tick they were due on.
+     */
+    public Duration getMeanLateness() {
+        final long count = edges.get();
+        return Duration.ofNanos(count > 0 ? lateness.get() / count : 0);
+    }
+
+    /**
+     * @return the CPU time used by the generator's thread so far, or null if the JVM cannot measure it.
+     */
+    public Duration getCpuTime() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported()) {
+            return null;
+        }
+        final long nanos = threads.getThreadCpuTime(thread.getId());
+        return nanos >= 0 ? Duration.ofNanos(nanos) : null;
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (scheduled == 0) {
+                    // Nothing to generate: wait for a channel to be set, then restart the wheel at the current time
+                    // before scheduling it, so that its first edge isn't placed on a tick that has already passed
+                    final Channel first = commands.take();
+                    tick = (System.nanoTime() - start) / tickNanos;
+                    onCommand(first);
+                }
+                Channel command;
+                while ((command = commands.poll()) != null) {
+                    onCommand(command);
+                }
+                // Sleep until the next tick with an edge due, or until a channel is set
+                final long wait = start + nextOccupiedTick() * tickNanos - System.nanoTime();
+                if (wait > 0 && commands.isEmpty()) {
+                    LockSupport.parkNanos(wait);
+                }
+                final long reached = (System.nanoTime() - start) / tickNanos;
+                while (tick < reached) {
+                    tick++;
+                    onTick();
+                }
+            }
+        } catch (InterruptedException e) {
+            // The actor system is terminating
+        }
+    }
+
+    /**
+     * @return the first tick after the current one whose slot holds a channel, possibly due on a later turn.
+     */
+    private long nextOccupiedTick() {
+        for (long next = tick + 1; next <= tick + wheel.length; next++) {
+            if (wheel[(int) (next & mask)] != null) {
+                return next;
+            }
+        }
+        return tick + wheel.length;
+    }
+
+    private void command(Channel channel) {
+        commands.add(channel);
+        LockSupport.unpark(thread);
+    }
+
+    private void onCommand(Channel channel) {
+        if (channel.closed) {
+            if (channel.periodNanos >= 0) {
+                channel.periodNanos = -1;
+                channels.decrementAndGet();
+            }
+        } else if (!channel.isOscillating()) {
+            channel.write(channel.highNanos > 0);
+            channel.high = channel.highNanos > 0;
+        } else if (!channel.inWheel) {
+            channel.high = false;
+            channel.periodStart = System.nanoTime();
+            channel.period = 0;
+            schedule(channel, channel.periodStart);
+        }
+    }
+
+    private void onTick() {
+        final int slot = (int) (tick & mask);
+        Channel channel = wheel[slot];
+        wheel[slot] = null;
+        final long now = System.nanoTime();
+        while (channel != null) {
+            final Channel next = channel.next;
+            channel.next = null;
+            if (ticks(channel.deadline) > tick) {
+                // Due on a later turn of the wheel
+                channel.next = wheel[slot];
+                wheel[slot] = channel;
+            } else {
+                scheduled--;
+                channel.inWheel = false;
+                onEdge(channel, now);
+            }
+            channel = next;
+        }
+    }
+
+    private void onEdge(Channel channel, long now) {
+        if (channel.closed || !channel.isOscillating()) {
+            return;
+        }
+        lateness.addAndGet(now - channel.deadline);
+        if (!channel.high) {
+            // Start of a period: changes to the frequency and duty cycle take effect
+            channel.periodStart += channel.period;
+            channel.period = channel.periodNanos;
+            if (channel.periodStart + channel.period < now) {
+                // Fell behind by more than a period, e.g. after a pause: restart from now
+                channel.periodStart = now;
+            }
+            channel.write(true);
+            channel.high = true;
+            schedule(channel, channel.periodStart + channel.highNanos);
+        } else {
+            channel.write(false);
+            channel.high = false;
+            schedule(channel, channel.periodStart + channel.period);
+        }
+    }
+
+    private void schedule(Channel channel, long deadline) {
+        channel.deadline = deadline;
+        final int slot = (int) (Math.max(ticks(deadline), tick + 1) & mask);
+        channel.next = wheel[slot];
+        wheel[slot] = channel;
+        channel.inWheel = true;
+        scheduled++;
+    }
+
+    /**
+     * @param time a time, as per {@link System#nanoTime()}
+     * @return the tick on which an edge due at that time is generated.
+     */
+    private long ticks(long time) {
+        return (time - start + tickNanos - 1) / tickNanos;
+    }
+}
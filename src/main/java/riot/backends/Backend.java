@@ -0,0 +1,143 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+import com.pi4j.io.spi.SpiMode;
+import com.pi4j.io.w1.W1Device;
+
+/**
+ * The hardware access layer used by RIoT's actors. All access to GPIO pins, I2C busses, SPI devices and OneWire
+ * devices goes through a Backend, so that the actors and streams components can run either on the actual hardware
+ * (using {@link Pi4JBackend}) or against an in-memory model of it (using {@link SimulatedBackend}).
+ *
+ * @see Backends
+ */
+public interface Backend {
+
+    /**
+     * Maps a pin number to a concrete Pin instance for this backend.
+     *
+     * @param address the pin number in the board's own numbering (i.e. NOT in Broadcom's numbering).
+     * @return the corresponding Pin object
+     */
+    Pin asPin(int address);
+
+    /**
+     * @return the GPIO controller used to provision pins.
+     */
+    GpioController getGpioController();
+
+    /**
+     * Groups provisioned digital output pins into a port, which writes them all at once where the hardware allows,
+     * and otherwise one after the other.
+     *
+     * @param pins the pins of the port, the first one being driven by the lowest bit; at most 32
+     * @return a port writing the pins passed.
+     */
+    default DigitalPort openDigitalPort(List<GpioPinDigitalOutput> pins) {
+        return new SequentialDigitalPort(pins);
+    }
+
+    /**
+     * @param busNumber the number of the I2C bus, typically 1 on a Raspberry Pi.
+     * @return the I2C bus with that number.
+     * @throws UnsupportedBusNumberException if the bus does not exist
+     * @throws IOException                   if the bus cannot be opened
+     */
+    I2CBus getI2CBus(int busNumber) throws UnsupportedBusNumberException, IOException;
+
+    /**
+     * @param channel the SPI channel (chip select)
+     * @param speed   the bus speed, in Hz
+     * @param mode    the SPI mode
+     * @return the SPI device on that channel.
+     * @throws IOException if the device cannot be opened
+     */
+    SpiDevice getSpiDevice(SpiChannel channel, int speed, SpiMode mode) throws IOException;
+
+    /**
+     * @return the largest number of bytes a single SPI transfer can carry.
+     */
+    default int getSpiBufferSize() {
+        return SpiDevice.MAX_SUPPORTED_BYTES;
+    }
+
+    /**
+     * @param deviceFamily the OneWire device family code
+     * @return the OneWire devices of that family which are currently connected.
+     * @throws IOException if the devices cannot be enumerated
+     */
+    List<W1Device> getW1Devices(int deviceFamily) throws IOException;
+
+    /**
+     * Lists the OneWire devices of a family without creating them, which is cheap enough to be done periodically to
+     * watch for devices being connected or disconnected.
+     *
+     * @param deviceFamily the OneWire device family code
+     * @return the ids of the OneWire devices of that family which are currently connected.
+     * @throws IOException if the devices cannot be enumerated
+     */
+    default List<String> getW1DeviceIds(int deviceFamily) throws IOException {
+        final List<String> ids = new ArrayList<>();
+        for (W1Device device : getW1Devices(deviceFamily)) {
+            ids.add(device.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * @param deviceFamily the OneWire device family code
+     * @param ids          the ids of the devices to create
+     * @return the OneWire devices of that family with those ids which are currently connected.
+     * @throws IOException if the devices cannot be created
+     */
+    default List<W1Device> getW1Devices(int deviceFamily, Collection<String> ids) throws IOException {
+        final List<W1Device> devices = new ArrayList<>();
+        for (W1Device device : getW1Devices(deviceFamily)) {
+            if (ids.contains(device.getId())) {
+                devices.add(device);
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Reads the raw value of a OneWire device, i.e. the content of its <code>w1_slave</code> file, into a buffer, so
+     * that it can be parsed without creating a String.
+     *
+     * @param device the device to read
+     * @param buffer the buffer to read into
+     * @return the number of bytes read, at most the length of the buffer.
+     * @throws IOException if the device cannot be read
+     */
+    default int readW1Device(W1Device device, byte[] buffer) throws IOException {
+        final byte[] value = device.getValue().getBytes(StandardCharsets.US_ASCII);
+        final int length = Math.min(value.length, buffer.length);
+        System.arraycopy(value, 0, buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Starts a temperature conversion on all the OneWire devices at once, so that each device's value can then be read
+     * without waiting for a conversion of its own.
+     *
+     * @return false if the backend cannot trigger a simultaneous conversion, in which case each device converts when
+     * it is read.
+     * @throws IOException if the conversion cannot be triggered
+     */
+    default boolean triggerW1Conversion() throws IOException {
+        return false;
+    }
+
+}
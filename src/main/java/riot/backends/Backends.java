@@ -0,0 +1,51 @@
+package riot.backends;
+
+/**
+ * Holds the backend used by configurations that have not been given one explicitly. Unless set otherwise, this is a
+ * {@link Pi4JBackend}, or the class named by the <code>riot.backend</code> system property.
+ */
+public final class Backends {
+    private static volatile Backend defaultBackend = null;
+
+    private Backends() {
+        // No instantiation necessary.
+    }
+
+    /**
+     * @return the backend used by configurations that have not been given one explicitly.
+     */
+    public static Backend getDefault() {
+        Backend backend = defaultBackend;
+        if (backend == null) {
+            synchronized (Backends.class) {
+                if (defaultBackend == null) {
+                    defaultBackend = createFromSystemProperty();
+                }
+                backend = defaultBackend;
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Sets the backend used by configurations that have not been given one explicitly. This must be done before any
+     * actor or streams component is created.
+     *
+     * @param backend the backend to use by default
+     */
+    public static void setDefault(Backend backend) {
+        defaultBackend = backend;
+    }
+
+    private static Backend createFromSystemProperty() {
+        final String className = System.getProperty("riot.backend");
+        if (className == null || className.isEmpty()) {
+            return new Pi4JBackend();
+        }
+        try {
+            return (Backend) Class.forName(className).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException("Unable to instantiate backend " + className, e);
+        }
+    }
+}
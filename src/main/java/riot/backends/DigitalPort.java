@@ -0,0 +1,28 @@
+package riot.backends;
+
+/**
+ * A group of digital output pins written together, as the bits of an int. Bit i of a value drives the i-th pin of the
+ * group. Backends write all the pins at once where the hardware allows, e.g. through a single pair of set and clear
+ * registers on a Raspberry Pi, so that they change simultaneously.
+ *
+ * @see Backend#openDigitalPort(java.util.List)
+ */
+public interface DigitalPort {
+
+    /**
+     * @return the number of pins in the port.
+     */
+    int getWidth();
+
+    /**
+     * Drives every pin of the port to the corresponding bit of the value passed.
+     *
+     * @param value the bits to write; bits beyond the width of the port are ignored
+     */
+    void write(int value);
+
+    /**
+     * @return the value last written to the port.
+     */
+    int getValue();
+}
@@ -0,0 +1,180 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The GPIO register block of the Raspberry Pi's SoC (BCM2835 and its successors), mapped in memory so that pins are
+ * configured, read and written with plain memory accesses instead of calls into a native library. Only the first bank
+ * of pins, i.e. Broadcom numbers 0 to 31 (which includes all the pins of the header), is accessible.
+ * <p>
+ * The block is normally mapped from <code>/dev/gpiomem</code>, which members of the <code>gpio</code> group can open
+ * without being root. For tests and benchmarks, {@link #standIn(Path)} maps a plain file instead, and emulates the
+ * effect of the set and clear registers on the level register, so that pins read back the state they were set to.
+ * <p>
+ * Writes to the set and clear registers only affect the pins whose bit is 1, so they need no locking; changes of
+ * function, which update 3 bits of a shared register, are serialized.
+ */
+public final class GpioRegisters {
+    /**
+     * The device exposing the GPIO register block.
+     */
+    public static final Path GPIOMEM = Paths.get("/dev/gpiomem");
+
+    /**
+     * The function of a pin used as an input.
+     */
+    public static final int INPUT = 0b000;
+
+    /**
+     * The function of a pin used as an output.
+     */
+    public static final int OUTPUT = 0b001;
+
+    static final int BLOCK_SIZE = 0xB4;
+
+    private static final int GPFSEL0 = 0x00;
+    private static final int GPSET0 = 0x1C;
+    private static final int GPCLR0 = 0x28;
+    private static final int GPLEV0 = 0x34;
+    private static final int PINS = 32;
+
+    // FileChannelImpl's protection mode for read-write mappings
+    private static final int MAP_RW = 1;
+
+    private final ByteBuffer block;
+    private final boolean standIn;
+
+    private GpioRegisters(ByteBuffer block, boolean standIn) {
+        this.block = block.order(ByteOrder.LITTLE_ENDIAN);
+        this.standIn = standIn;
+    }
+
+    /**
+     * Maps the GPIO register block exposed by a device, normally {@link #GPIOMEM}.
+     * <p>
+     * The JDK cannot map character devices through {@link FileChannel#map}, as it tries to extend them to the size
+     * mapped; they are instead mapped through the channel's internal mapping method, which on Java 9 and later
+     * requires the JVM to be run with <code>--add-opens java.base/sun.nio.ch=ALL-UNNAMED --add-opens
+     * java.base/java.nio=ALL-UNNAMED</code>.
+     *
+     * @param device the device to map
+     * @return the registers of that device.
+     * @throws IOException if the device cannot be opened or mapped
+     */
+    public static GpioRegisters map(Path device) throws IOException {
+        try (FileChannel channel = FileChannel.open(device, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() >= BLOCK_SIZE) {
+                return new GpioRegisters(channel.map(FileChannel.MapMode.READ_WRITE, 0, BLOCK_SIZE), false);
+            }
+            return new GpioRegisters(mapDevice(device, channel), false);
+        }
+    }
+
+    /**
+     * Maps a plain file standing in for the GPIO register block, creating it if needed. Setting or clearing pins also
+     * updates the level register, as the hardware would.
+     *
+     * @param file the file to map
+     * @return registers backed by that file.
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static GpioRegisters standIn(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return new GpioRegisters(channel.map(FileChannel.MapMode.READ_WRITE, 0, BLOCK_SIZE), true);
+        }
+    }
+
+    private static ByteBuffer mapDevice(Path device, FileChannel channel) throws IOException {
+        try {
+            Method map0 = null;
+            for (Method method : channel.getClass().getDeclaredMethods()) {
+                if (method.getName().equals("map0")) {
+                    map0 = method;
+                }
+            }
+            if (map0 == null) {
+                throw new IOException("Unable to map " + device + ": no mapping method found in " + channel.getClass());
+            }
+            map0.setAccessible(true);
+            final long address = map0.getParameterCount() == 3
+                    ? (Long) map0.invoke(channel, MAP_RW, 0L, (long) BLOCK_SIZE)
+                    : (Long) map0.invoke(channel, MAP_RW, 0L, (long) BLOCK_SIZE, false);
+            final Constructor<?> wrap = Class.forName("java.nio.DirectByteBuffer")
+                    .getDeclaredConstructor(long.class, int.class);
+            wrap.setAccessible(true);
+            return (ByteBuffer) wrap.newInstance(address, BLOCK_SIZE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IOException("Unable to map " + device + " (on Java 9 and later, the JVM must be run with "
+                    + "--add-opens java.base/sun.nio.ch=ALL-UNNAMED --add-opens java.base/java.nio=ALL-UNNAMED)", e);
+        }
+    }
+
+    /**
+     * @param bcm      the Broadcom number of the pin, between 0 and 31
+     * @param function the function of the pin, e.g. {@link #INPUT} or {@link #OUTPUT}
+     */
+    public synchronized void setFunction(int bcm, int function) {
+        final int offset = GPFSEL0 + (checkPin(bcm) / 10) * 4;
+        final int shift = (bcm % 10) * 3;
+        block.putInt(offset, (block.getInt(offset) & ~(0b111 << shift)) | ((function & 0b111) << shift));
+    }
+
+    /**
+     * @param bcm the Broadcom number of the pin, between 0 and 31
+     * @return the function of the pin.
+     */
+    public int getFunction(int bcm) {
+        return (block.getInt(GPFSEL0 + (checkPin(bcm) / 10) * 4) >>> ((bcm % 10) * 3)) & 0b111;
+    }
+
+    /**
+     * Sets output pins high.
+     *
+     * @param mask the pins to set, bit <i>n</i> being Broadcom pin <i>n</i>
+     */
+    public void set(int mask) {
+        block.putInt(GPSET0, mask);
+        if (standIn) {
+            synchronized (this) {
+                block.putInt(GPLEV0, block.getInt(GPLEV0) | mask);
+            }
+        }
+    }
+
+    /**
+     * Sets output pins low.
+     *
+     * @param mask the pins to clear, bit <i>n</i> being Broadcom pin <i>n</i>
+     */
+    public void clear(int mask) {
+        block.putInt(GPCLR0, mask);
+        if (standIn) {
+            synchronized (this) {
+                block.putInt(GPLEV0, block.getInt(GPLEV0) & ~mask);
+            }
+        }
+    }
+
+    /**
+     * @return the levels of all the pins, bit <i>n</i> being Broadcom pin <i>n</i>.
+     */
+    public int getLevels() {
+        return block.getInt(GPLEV0);
+    }
+
+    private static int checkPin(int bcm) {
+        if (bcm < 0 || bcm >= PINS) {
+            throw new IllegalArgumentException("Pin " + bcm + " is not in the first bank of GPIO registers");
+        }
+        return bcm;
+    }
+}
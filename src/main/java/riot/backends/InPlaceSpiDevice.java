@@ -0,0 +1,21 @@
+package riot.backends;
+
+import java.io.IOException;
+
+import com.pi4j.io.spi.SpiDevice;
+
+/**
+ * An SPI device which can transfer data in place: the bytes sent are overwritten by the bytes received, so that no
+ * array needs to be allocated for the response.
+ */
+public interface InPlaceSpiDevice extends SpiDevice {
+
+    /**
+     * Sends the first bytes of the array, and replaces them with the bytes received.
+     *
+     * @param data   the bytes to send, which will be overwritten by the response
+     * @param length the number of bytes to transfer
+     * @throws IOException if the transfer fails
+     */
+    void transfer(byte[] data, int length) throws IOException;
+}
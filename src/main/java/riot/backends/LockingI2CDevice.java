@@ -0,0 +1,32 @@
+package riot.backends;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * An I2C device that can run a sequence of operations while holding the lock of its bus, so that no other device on
+ * the same bus is accessed in between.
+ */
+public interface LockingI2CDevice extends I2CDevice {
+
+    /**
+     * Runs the operations while holding the bus lock.
+     *
+     * @param operations the operations to run on this device
+     * @param <T>        the type of the operations' result
+     * @return the result of the operations
+     * @throws IOException if communication with the device fails
+     */
+    <T> T runLocked(Operations<T> operations) throws IOException;
+
+    /**
+     * A sequence of operations on an I2C device.
+     *
+     * @param <T> the type of the operations' result
+     */
+    @FunctionalInterface
+    interface Operations<T> {
+        T run(I2CDevice dev) throws IOException;
+    }
+}
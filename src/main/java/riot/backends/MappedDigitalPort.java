@@ -0,0 +1,54 @@
+package riot.backends;
+
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+
+/**
+ * A port of any pins of the first GPIO bank, written through a single write of the set register and a single write of
+ * the clear register.
+ */
+class MappedDigitalPort implements DigitalPort {
+    private final GpioRegisters registers;
+    private final int[] bits;
+    private final int all;
+    private int value;
+
+    MappedDigitalPort(GpioRegisters registers, List<GpioPinDigitalOutput> pins) {
+        this.registers = registers;
+        this.bits = new int[pins.size()];
+        int all = 0;
+        final int levels = registers.getLevels();
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = MappedGpioProvider.bit(pins.get(i).getPin());
+            all |= bits[i];
+            if ((levels & bits[i]) != 0) {
+                value |= 1 << i;
+            }
+        }
+        this.all = all;
+    }
+
+    @Override
+    public int getWidth() {
+        return bits.length;
+    }
+
+    @Override
+    public void write(int value) {
+        int set = 0;
+        for (int i = 0; i < bits.length; i++) {
+            if ((value & (1 << i)) != 0) {
+                set |= bits[i];
+            }
+        }
+        registers.set(set);
+        registers.clear(all & ~set);
+        this.value = value & SequentialDigitalPort.mask(bits.length);
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+}
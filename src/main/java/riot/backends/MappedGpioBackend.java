@@ -0,0 +1,78 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.RaspiPin;
+import com.pi4j.io.gpio.impl.GpioControllerImpl;
+
+/**
+ * A backend for the Raspberry Pi which reads and writes digital pins through the memory-mapped GPIO registers (see
+ * {@link GpioRegisters}), instead of calling into wiringPi for each operation; I2C, SPI and OneWire devices are still
+ * accessed through Pi4J. It can be selected by default with
+ * <code>-Driot.backend=riot.backends.MappedGpioBackend</code>.
+ * <p>
+ * The registers raise no events, so input pins provisioned with this backend do not notify their changes; use the
+ * {@link Pi4JBackend} for inputs that must be watched. Pins are numbered as on the Raspberry Pi (i.e. using
+ * <code>RaspiPin</code>), on boards with a 40-pin header.
+ */
+public class MappedGpioBackend extends Pi4JBackend {
+    private final MappedGpioProvider gpioProvider;
+    private final GpioController gpioController;
+
+    /**
+     * Maps the registers exposed by <code>/dev/gpiomem</code>.
+     *
+     * @throws UncheckedIOException if the registers cannot be mapped
+     */
+    public MappedGpioBackend() {
+        this(mapGpiomem());
+    }
+
+    /**
+     * @param registers the registers through which pins are accessed, e.g. a stand-in created by
+     *                  {@link GpioRegisters#standIn(java.nio.file.Path)}
+     */
+    public MappedGpioBackend(GpioRegisters registers) {
+        gpioProvider = new MappedGpioProvider(registers);
+        gpioController = new GpioControllerImpl(gpioProvider);
+    }
+
+    private static GpioRegisters mapGpiomem() {
+        try {
+            return GpioRegisters.map(GpioRegisters.GPIOMEM);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Pin asPin(int address) {
+        return RaspiPin.getPinByAddress(address);
+    }
+
+    @Override
+    public GpioController getGpioController() {
+        return gpioController;
+    }
+
+    /**
+     * @return the GPIO provider, through which the registers can be accessed directly.
+     */
+    public MappedGpioProvider getGpioProvider() {
+        return gpioProvider;
+    }
+
+    /**
+     * @return a port which writes all its pins through a single write of the set register and a single write of the
+     * clear register, whichever pins they are.
+     */
+    @Override
+    public DigitalPort openDigitalPort(List<GpioPinDigitalOutput> pins) {
+        return new MappedDigitalPort(gpioProvider.getRegisters(), pins);
+    }
+}
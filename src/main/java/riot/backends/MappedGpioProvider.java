@@ -0,0 +1,95 @@
+package riot.backends;
+
+import com.pi4j.io.gpio.GpioProviderBase;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinMode;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.RaspiGpioProvider;
+import com.pi4j.io.gpio.exception.InvalidPinException;
+import com.pi4j.io.gpio.exception.UnsupportedPinModeException;
+
+/**
+ * A GPIO provider which configures, reads and writes digital pins through the memory-mapped GPIO registers. Pins are
+ * numbered as on the Raspberry Pi (i.e. using <code>RaspiPin</code>) and translated to Broadcom numbers; only digital
+ * inputs and outputs are supported. The registers do not raise events: changes of input pins are not notified to the
+ * listeners, so inputs must be read explicitly. Pull resistors are left as they are.
+ */
+public class MappedGpioProvider extends GpioProviderBase {
+    // Broadcom numbers of wiringPi pins 0 to 31, on boards with a 40-pin header
+    private static final int[] BCM = {
+            17, 18, 27, 22, 23, 24, 25, 4, 2, 3, 8, 7, 10, 9, 11, 14,
+            15, 28, 29, 30, 31, 5, 6, 13, 19, 26, 12, 16, 20, 21, 0, 1};
+
+    private final GpioRegisters registers;
+
+    MappedGpioProvider(GpioRegisters registers) {
+        this.registers = registers;
+    }
+
+    @Override
+    public String getName() {
+        return RaspiGpioProvider.NAME;
+    }
+
+    /**
+     * @return the registers through which the pins are accessed.
+     */
+    public GpioRegisters getRegisters() {
+        return registers;
+    }
+
+    /**
+     * @param pin a pin, in wiringPi numbering
+     * @return the bit of that pin in the set, clear and level registers.
+     */
+    static int bit(Pin pin) {
+        final int address = pin.getAddress();
+        if (address < 0 || address >= BCM.length) {
+            throw new InvalidPinException(pin);
+        }
+        return 1 << BCM[address];
+    }
+
+    @Override
+    public void export(Pin pin, PinMode mode) {
+        super.export(pin, mode);
+        setFunction(pin, mode);
+    }
+
+    @Override
+    public void setMode(Pin pin, PinMode mode) {
+        super.setMode(pin, mode);
+        setFunction(pin, mode);
+    }
+
+    private void setFunction(Pin pin, PinMode mode) {
+        final int bcm = Integer.numberOfTrailingZeros(bit(pin));
+        switch (mode) {
+            case DIGITAL_INPUT:
+                registers.setFunction(bcm, GpioRegisters.INPUT);
+                break;
+            case DIGITAL_OUTPUT:
+                registers.setFunction(bcm, GpioRegisters.OUTPUT);
+                break;
+            default:
+                throw new UnsupportedPinModeException(pin, mode);
+        }
+    }
+
+    @Override
+    public void setState(Pin pin, PinState state) {
+        if (state.isHigh()) {
+            registers.set(bit(pin));
+        } else {
+            registers.clear(bit(pin));
+        }
+        if (!listeners.isEmpty()) {
+            dispatchPinDigitalStateChangeEvent(pin, state);
+        }
+    }
+
+    @Override
+    public PinState getState(Pin pin) {
+        return PinState.getState((registers.getLevels() & bit(pin)) != 0);
+    }
+}
@@ -0,0 +1,256 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.pi4j.io.gpio.BananaPiPin;
+import com.pi4j.io.gpio.BpiPin;
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioFactory;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.NanoPiPin;
+import com.pi4j.io.gpio.OdroidC1Pin;
+import com.pi4j.io.gpio.OrangePiPin;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.RCMPin;
+import com.pi4j.io.gpio.RaspiPin;
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CFactory;
+import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+import com.pi4j.io.spi.SpiFactory;
+import com.pi4j.io.spi.SpiMode;
+import com.pi4j.io.w1.W1Device;
+import com.pi4j.io.w1.W1DeviceType;
+import com.pi4j.io.w1.W1Master;
+import com.pi4j.system.SystemInfo;
+
+/**
+ * The default backend, which accesses the actual hardware through the Pi4J library.
+ */
+public class Pi4JBackend implements Backend {
+    private static final Path SPIDEV_BUFSIZ = Paths.get("/sys/module/spidev/parameters/bufsiz");
+    private static final int SPIDEV_DEFAULT_BUFSIZ = 4096;
+    private static final Path W1_DEVICES = Paths.get("/sys/bus/w1/devices");
+    private static final byte[] W1_TRIGGER = "trigger\n".getBytes(StandardCharsets.US_ASCII);
+
+    private volatile int spiBufferSize = -1;
+    private volatile W1Master w1Master;
+
+    /**
+     * Maps a pin number to a concrete Pin instance for the current board. This may fail if the board is not known in
+     * this version of RIoT.
+     *
+     * @param address the pin number in the board's own numbering (i.e. NOT in Broadcom's numbering).
+     * @return the corresponding Pin object
+     * @throws RuntimeException if mapping fails (pin or board type is unknown, or board type could not be
+     *                          identified).
+     */
+    @Override
+    public Pin asPin(int address) {
+        try {
+            switch (SystemInfo.getBoardType()) {
+
+                case RaspberryPi_A:
+                case RaspberryPi_B_Rev1:
+                case RaspberryPi_B_Rev2:
+                case RaspberryPi_A_Plus:
+                case RaspberryPi_B_Plus:
+                case RaspberryPi_2B:
+                case RaspberryPi_3B:
+                case RaspberryPi_3B_Plus:
+                case RaspberryPi_Zero:
+                case RaspberryPi_ZeroW:
+                case RaspberryPi_Alpha:
+                case RaspberryPi_Unknown:
+                    return RaspiPin.getPinByAddress(address);
+
+                case RaspberryPi_ComputeModule:
+                case RaspberryPi_ComputeModule3:
+                    return RCMPin.getPinByAddress(address);
+
+                case BananaPi:
+                case BananaPro:
+                    return BananaPiPin.getPinByAddress(address);
+
+                case Bpi_M1:
+                case Bpi_M1P:
+                case Bpi_M2:
+                case Bpi_M2P:
+                case Bpi_M2P_H2_Plus:
+                case Bpi_M2P_H5:
+                case Bpi_M2U:
+                case Bpi_M2U_V40:
+                case Bpi_M2M:
+                case Bpi_M3:
+                case Bpi_R1:
+                case Bpi_M64:
+                    return BpiPin.getPinByAddress(address);
+
+                case Odroid:
+                    return OdroidC1Pin.getPinByAddress(address);
+
+                case OrangePi:
+                    return OrangePiPin.getPinByAddress(address);
+
+                case NanoPi_M1:
+                case NanoPi_M1_Plus:
+                case NanoPi_M3:
+                case NanoPi_NEO:
+                case NanoPi_NEO2:
+                case NanoPi_NEO2_Plus:
+                case NanoPi_NEO_Air:
+                case NanoPi_S2:
+                case NanoPi_A64:
+                case NanoPi_K2:
+                    return NanoPiPin.getPinByAddress(address);
+
+                default:
+                    throw new RuntimeException("Unknown pin mapping for board " + SystemInfo.getBoardType().toString());
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to find pin for pin number " + address, e);
+        }
+    }
+
+    @Override
+    public GpioController getGpioController() {
+        return GpioFactory.getInstance();
+    }
+
+    /**
+     * @return a port which writes wiringPi pins 0 to 7 at once if the pins passed are exactly those, in that order,
+     * and which otherwise writes the pins one after the other.
+     */
+    @Override
+    public DigitalPort openDigitalPort(List<GpioPinDigitalOutput> pins) {
+        final DigitalPort port = WiringPiBytePort.of(pins);
+        return port != null ? port : new SequentialDigitalPort(pins);
+    }
+
+    @Override
+    public I2CBus getI2CBus(int busNumber) throws UnsupportedBusNumberException, IOException {
+        return new Pi4JI2CBus(I2CFactory.getInstance(busNumber));
+    }
+
+    @Override
+    public SpiDevice getSpiDevice(SpiChannel channel, int speed, SpiMode mode) throws IOException {
+        return new Pi4JSpiDevice(channel, SpiFactory.getInstance(channel, speed, mode), getSpiBufferSize());
+    }
+
+    /**
+     * @return the size of the spidev driver's buffer, as set by its {@code bufsiz} module parameter.
+     */
+    @Override
+    public int getSpiBufferSize() {
+        if (spiBufferSize < 0) {
+            try {
+                spiBufferSize = Integer.parseInt(new String(Files.readAllBytes(SPIDEV_BUFSIZ)).trim());
+            } catch (IOException | NumberFormatException e) {
+                spiBufferSize = SPIDEV_DEFAULT_BUFSIZ;
+            }
+        }
+        return spiBufferSize;
+    }
+
+    @Override
+    public List<W1Device> getW1Devices(int deviceFamily) throws IOException {
+        return new W1Master().getDevices(deviceFamily);
+    }
+
+    /**
+     * @return the names of the directories of the devices of that family in <code>/sys/bus/w1/devices</code>.
+     */
+    @Override
+    public List<String> getW1DeviceIds(int deviceFamily) throws IOException {
+        final List<String> ids = new ArrayList<>();
+        if (!Files.isDirectory(W1_DEVICES)) {
+            return ids;
+        }
+        try (DirectoryStream<Path> devices = Files.newDirectoryStream(W1_DEVICES,
+                String.format("%02x-*", deviceFamily))) {
+            for (Path device : devices) {
+                ids.add(device.getFileName().toString());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Creates the devices directly from their directories, using the device type Pi4J has for their family, rather
+     * than enumerating all the devices again.
+     */
+    @Override
+    public List<W1Device> getW1Devices(int deviceFamily, Collection<String> ids) throws IOException {
+        for (W1DeviceType type : getW1Master().getDeviceTypes()) {
+            if (type.getDeviceFamilyCode() == deviceFamily) {
+                final List<W1Device> devices = new ArrayList<>();
+                for (String id : ids) {
+                    final Path directory = W1_DEVICES.resolve(id);
+                    if (Files.isDirectory(directory)) {
+                        devices.add(type.create(directory.toFile()));
+                    }
+                }
+                return devices;
+            }
+        }
+        return Backend.super.getW1Devices(deviceFamily, ids);
+    }
+
+    private W1Master getW1Master() {
+        if (w1Master == null) {
+            w1Master = new W1Master();
+        }
+        return w1Master;
+    }
+
+    /**
+     * Reads the device's <code>w1_slave</code> file directly into the buffer.
+     */
+    @Override
+    public int readW1Device(W1Device device, byte[] buffer) throws IOException {
+        try (InputStream in = Files.newInputStream(W1_DEVICES.resolve(device.getId()).resolve("w1_slave"))) {
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Writes <code>trigger</code> to the <code>therm_bulk_read</code> attribute of every OneWire master, which makes
+     * the w1_therm driver (Linux 5.10 and later) start a conversion on all the sensors of the master with a single
+     * command. Reading a sensor then only waits for the rest of that conversion.
+     *
+     * @return false if no master supports bulk conversions.
+     */
+    @Override
+    public boolean triggerW1Conversion() throws IOException {
+        if (!Files.isDirectory(W1_DEVICES)) {
+            return false;
+        }
+        boolean triggered = false;
+        try (DirectoryStream<Path> masters = Files.newDirectoryStream(W1_DEVICES, "w1_bus_master*")) {
+            for (Path master : masters) {
+                final Path bulkRead = master.resolve("therm_bulk_read");
+                if (Files.isWritable(bulkRead)) {
+                    Files.write(bulkRead, W1_TRIGGER);
+                    triggered = true;
+                }
+            }
+        }
+        return triggered;
+    }
+}
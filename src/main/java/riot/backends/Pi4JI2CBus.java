@@ -0,0 +1,31 @@
+package riot.backends;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * Wraps a Pi4J I2C bus, so that its devices can run operations while holding the bus lock.
+ */
+class Pi4JI2CBus implements I2CBus {
+    private final I2CBus bus;
+
+    Pi4JI2CBus(I2CBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public LockingI2CDevice getDevice(int address) throws IOException {
+        return new Pi4JI2CDevice(bus, bus.getDevice(address));
+    }
+
+    @Override
+    public int getBusNumber() {
+        return bus.getBusNumber();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bus.close();
+    }
+}
@@ -0,0 +1,103 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.impl.I2CBusImpl;
+
+/**
+ * Wraps a Pi4J I2C device. Pi4J's bus lock is reentrant, so the device's own operations can be run while it is held.
+ */
+class Pi4JI2CDevice implements LockingI2CDevice {
+    private final I2CBus bus;
+    private final I2CDevice dev;
+
+    Pi4JI2CDevice(I2CBus bus, I2CDevice dev) {
+        this.bus = bus;
+        this.dev = dev;
+    }
+
+    @Override
+    public <T> T runLocked(Operations<T> operations) throws IOException {
+        if (bus instanceof I2CBusImpl) {
+            return ((I2CBusImpl) bus).runBusLockedDeviceAction(dev, () -> operations.run(this));
+        }
+        synchronized (bus) {
+            return operations.run(this);
+        }
+    }
+
+    @Override
+    public int getAddress() {
+        return dev.getAddress();
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        dev.write(b);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        dev.write(buffer, offset, size);
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException {
+        dev.write(buffer);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        dev.write(address, b);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        dev.write(address, buffer, offset, size);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException {
+        dev.write(address, buffer);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return dev.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        return dev.read(buffer, offset, size);
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        return dev.read(address);
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        return dev.read(address, buffer, offset, size);
+    }
+
+    @Override
+    public void ioctl(long command, int value) throws IOException {
+        dev.ioctl(command, value);
+    }
+
+    @Override
+    public void ioctl(long command, ByteBuffer values, IntBuffer offsets) throws IOException {
+        dev.ioctl(command, values, offsets);
+    }
+
+    @Override
+    public int read(byte[] writeBuffer, int writeOffset, int writeSize, byte[] readBuffer, int readOffset,
+                    int readSize) throws IOException {
+        return dev.read(writeBuffer, writeOffset, writeSize, readBuffer, readOffset, readSize);
+    }
+}
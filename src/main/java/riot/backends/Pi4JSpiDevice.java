@@ -0,0 +1,82 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+import com.pi4j.wiringpi.Spi;
+
+/**
+ * Wraps a Pi4J SPI device, and transfers data in place through wiringPi. In-place transfers are only limited by the
+ * size of the spidev driver's buffer.
+ */
+class Pi4JSpiDevice implements InPlaceSpiDevice {
+    private final SpiChannel channel;
+    private final SpiDevice dev;
+    private final int bufferSize;
+
+    Pi4JSpiDevice(SpiChannel channel, SpiDevice dev, int bufferSize) {
+        this.channel = channel;
+        this.dev = dev;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void transfer(byte[] data, int length) throws IOException {
+        if (length > bufferSize) {
+            throw new IOException("Number of bytes in data to write cannot exceed " + bufferSize + " bytes.");
+        }
+        if (Spi.wiringPiSPIDataRW(channel.getChannel(), data, length) < 0) {
+            throw new IOException("Failed to write data to SPI channel: " + channel);
+        }
+    }
+
+    @Override
+    public String write(String data, Charset charset) throws IOException {
+        return dev.write(data, charset);
+    }
+
+    @Override
+    public String write(String data, String charset) throws IOException {
+        return dev.write(data, charset);
+    }
+
+    @Override
+    public ByteBuffer write(ByteBuffer data) throws IOException {
+        return dev.write(data);
+    }
+
+    @Override
+    public byte[] write(InputStream input) throws IOException {
+        return dev.write(input);
+    }
+
+    @Override
+    public int write(InputStream input, OutputStream output) throws IOException {
+        return dev.write(input, output);
+    }
+
+    @Override
+    public byte[] write(byte[] data, int start, int length) throws IOException {
+        return dev.write(data, start, length);
+    }
+
+    @Override
+    public byte[] write(byte... data) throws IOException {
+        return dev.write(data);
+    }
+
+    @Override
+    public short[] write(short[] data, int start, int length) throws IOException {
+        return dev.write(data, start, length);
+    }
+
+    @Override
+    public short[] write(short... data) throws IOException {
+        return dev.write(data);
+    }
+}
@@ -0,0 +1,49 @@
+package riot.backends;
+
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.PinState;
+
+/**
+ * A port which writes its pins one after the other, for backends which cannot write them at once. Only the pins whose
+ * bit changed are written.
+ */
+class SequentialDigitalPort implements DigitalPort {
+    private final GpioPinDigitalOutput[] pins;
+    private int value;
+
+    SequentialDigitalPort(List<GpioPinDigitalOutput> pins) {
+        this.pins = pins.toArray(new GpioPinDigitalOutput[0]);
+        for (int i = 0; i < this.pins.length; i++) {
+            if (this.pins[i].isHigh()) {
+                value |= 1 << i;
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return pins.length;
+    }
+
+    @Override
+    public void write(int value) {
+        int changed = (value ^ this.value) & mask(pins.length);
+        while (changed != 0) {
+            final int i = Integer.numberOfTrailingZeros(changed);
+            pins[i].setState(PinState.getState((value & (1 << i)) != 0));
+            changed &= changed - 1;
+        }
+        this.value = value & mask(pins.length);
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+
+    static int mask(int width) {
+        return width >= Integer.SIZE ? -1 : (1 << width) - 1;
+    }
+}
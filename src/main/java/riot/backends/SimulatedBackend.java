@@ -0,0 +1,255 @@
+package riot.backends;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.RaspiPin;
+import com.pi4j.io.gpio.impl.GpioControllerImpl;
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiMode;
+import com.pi4j.io.w1.W1Device;
+
+/**
+ * A backend that models the hardware in memory, so that RIoT's actors and streams can be run, tested and benchmarked
+ * on any machine. Each type of operation can be given a latency, to reproduce realistic bus timings, and the
+ * behaviour of input pins, I2C registers, SPI devices and OneWire devices can be scripted, e.g.: <br>
+ *
+ * <pre>
+ * SimulatedBackend sim = new SimulatedBackend()
+ *         .withI2CLatency(Duration.ofNanos(100_000), Duration.ofNanos(90_000));
+ * sim.i2cDevice(1, 0x23).script(0x10, (byte) 0x01, (byte) 0x02);
+ * Flow&lt;Command, Result, NotUsed&gt; flow = I2C.rawDevice().withBackend(sim).onBus(1).at(0x23).asFlow(system);
+ * </pre>
+ * <p>
+ * Pins are numbered as on the Raspberry Pi (i.e. using <code>RaspiPin</code>).
+ */
+public class SimulatedBackend implements Backend {
+    private final SimulatedGpioProvider gpioProvider = new SimulatedGpioProvider();
+    private final GpioController gpioController = new GpioControllerImpl(gpioProvider);
+    private final Map<Integer, SimulatedI2CBus> i2cBuses = new ConcurrentHashMap<>();
+    private final Map<SpiChannel, SimulatedSpiDevice> spiDevices = new ConcurrentHashMap<>();
+    private final List<SimulatedW1Device> w1Devices = new CopyOnWriteArrayList<>();
+
+    private volatile SimulatedLatency i2cLatency = SimulatedLatency.NONE;
+    private volatile SimulatedLatency spiLatency = SimulatedLatency.NONE;
+    private volatile SimulatedLatency w1Latency = SimulatedLatency.NONE;
+
+    /*
+     * Latencies
+     */
+
+    /**
+     * Every read or write of a GPIO pin will take the specified time.
+     *
+     * @param perOperation the duration of each operation
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend withGpioLatency(Duration perOperation) {
+        gpioProvider.setLatency(new SimulatedLatency(perOperation, Duration.ZERO));
+        return this;
+    }
+
+    /**
+     * Every I2C transaction will take the specified time. At 100kHz, a byte takes about 90 microseconds to transfer.
+     *
+     * @param perTransaction the fixed duration of each transaction
+     * @param perByte        the additional duration for each byte transferred (including register addresses)
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend withI2CLatency(Duration perTransaction, Duration perByte) {
+        i2cLatency = new SimulatedLatency(perTransaction, perByte);
+        for (SimulatedI2CBus bus : i2cBuses.values()) {
+            bus.setLatency(i2cLatency);
+        }
+        return this;
+    }
+
+    /**
+     * Every SPI transfer will take the specified time. At 1MHz, a byte takes 8 microseconds to transfer.
+     *
+     * @param perTransfer the fixed duration of each transfer
+     * @param perByte     the additional duration for each byte transferred
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend withSpiLatency(Duration perTransfer, Duration perByte) {
+        spiLatency = new SimulatedLatency(perTransfer, perByte);
+        for (SimulatedSpiDevice device : spiDevices.values()) {
+            device.setLatency(spiLatency);
+        }
+        return this;
+    }
+
+    /**
+     * Every read of a OneWire device will take the specified time. A DS18B20 takes up to 750 milliseconds for a
+     * conversion at full resolution.
+     *
+     * @param perRead the duration of each read
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend withOneWireLatency(Duration perRead) {
+        w1Latency = new SimulatedLatency(perRead, Duration.ZERO);
+        for (SimulatedW1Device device : w1Devices) {
+            device.setLatency(w1Latency);
+        }
+        return this;
+    }
+
+    /*
+     * Scripting
+     */
+
+    /**
+     * @return the simulated GPIO provider, which can be used to drive input pins.
+     */
+    public SimulatedGpioProvider getGpioProvider() {
+        return gpioProvider;
+    }
+
+    /**
+     * Simulates an external change of a digital input pin's state.
+     *
+     * @param pin   the pin number
+     * @param state the new state of the pin
+     */
+    public void drive(int pin, PinState state) {
+        gpioProvider.drive(asPin(pin), state);
+    }
+
+    /**
+     * Simulates an external change of an analog input pin's value.
+     *
+     * @param pin   the pin number
+     * @param value the new value of the pin
+     */
+    public void drive(int pin, double value) {
+        gpioProvider.drive(asPin(pin), value);
+    }
+
+    /**
+     * @param pin the pin number
+     * @return the current state of the pin, e.g. as set by an output actor.
+     */
+    public PinState getState(int pin) {
+        return gpioProvider.getState(asPin(pin));
+    }
+
+    /**
+     * @param busNumber the number of the I2C bus
+     * @param address   the address of the device on that bus
+     * @return the simulated device, whose registers can be set or scripted.
+     */
+    public SimulatedI2CDevice i2cDevice(int busNumber, int address) {
+        return getI2CBus(busNumber).getDevice(address);
+    }
+
+    /**
+     * @param channel the SPI channel
+     * @return the simulated device on that channel, whose responses can be set.
+     */
+    public SimulatedSpiDevice spiDevice(int channel) {
+        return getSpiDevice(SpiChannel.getByNumber(channel));
+    }
+
+    /**
+     * Connects a OneWire device.
+     *
+     * @param device the device to connect
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend connect(SimulatedW1Device device) {
+        device.setLatency(w1Latency);
+        w1Devices.add(device);
+        return this;
+    }
+
+    /**
+     * Disconnects a OneWire device.
+     *
+     * @param id the id of the device to disconnect
+     * @return this backend (for chaining).
+     */
+    public SimulatedBackend disconnect(String id) {
+        w1Devices.removeIf(device -> device.getId().equals(id));
+        return this;
+    }
+
+    /*
+     * Backend
+     */
+
+    @Override
+    public Pin asPin(int address) {
+        final Pin pin = RaspiPin.getPinByAddress(address);
+        if (pin == null) {
+            throw new RuntimeException("Unable to find pin for pin number " + address);
+        }
+        return pin;
+    }
+
+    @Override
+    public GpioController getGpioController() {
+        return gpioController;
+    }
+
+    /**
+     * @return a port whose pins all change in a single simulated GPIO operation.
+     */
+    @Override
+    public DigitalPort openDigitalPort(List<GpioPinDigitalOutput> pins) {
+        return new SimulatedDigitalPort(gpioProvider, pins);
+    }
+
+    @Override
+    public SimulatedI2CBus getI2CBus(int busNumber) {
+        return i2cBuses.computeIfAbsent(busNumber, n -> {
+            final SimulatedI2CBus bus = new SimulatedI2CBus(n);
+            bus.setLatency(i2cLatency);
+            return bus;
+        });
+    }
+
+    @Override
+    public SimulatedSpiDevice getSpiDevice(SpiChannel channel, int speed, SpiMode mode) {
+        return getSpiDevice(channel);
+    }
+
+    private SimulatedSpiDevice getSpiDevice(SpiChannel channel) {
+        return spiDevices.computeIfAbsent(channel, c -> {
+            final SimulatedSpiDevice device = new SimulatedSpiDevice(c);
+            device.setLatency(spiLatency);
+            return device;
+        });
+    }
+
+    /**
+     * Starts a conversion on all the connected OneWire devices, which completes after their read latency.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean triggerW1Conversion() {
+        for (SimulatedW1Device device : w1Devices) {
+            device.triggerConversion();
+        }
+        return true;
+    }
+
+    @Override
+    public List<W1Device> getW1Devices(int deviceFamily) {
+        final List<W1Device> devices = new ArrayList<>();
+        for (SimulatedW1Device device : w1Devices) {
+            if (device.getFamilyId() == deviceFamily) {
+                devices.add(device);
+            }
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,42 @@
+package riot.backends;
+
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+
+/**
+ * A port of simulated pins, which all change in a single operation of the simulated provider.
+ */
+class SimulatedDigitalPort implements DigitalPort {
+    private final SimulatedGpioProvider provider;
+    private final Pin[] pins;
+    private int value;
+
+    SimulatedDigitalPort(SimulatedGpioProvider provider, List<GpioPinDigitalOutput> pins) {
+        this.provider = provider;
+        this.pins = new Pin[pins.size()];
+        for (int i = 0; i < this.pins.length; i++) {
+            this.pins[i] = pins.get(i).getPin();
+            if (pins.get(i).isHigh()) {
+                value |= 1 << i;
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return pins.length;
+    }
+
+    @Override
+    public void write(int value) {
+        provider.setStates(pins, value);
+        this.value = value & SequentialDigitalPort.mask(pins.length);
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,119 @@
+package riot.backends;
+
+import com.pi4j.io.gpio.GpioProviderBase;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.RaspiGpioProvider;
+
+/**
+ * An in-memory GPIO provider. Output pins simply keep the state they were set to, while the state of input pins is
+ * driven by calling {@link #drive(Pin, PinState)} or {@link #drive(Pin, double)}, which will notify any listener just
+ * like an actual state change would. Changes to output pins are also notified to the listeners registered with this
+ * provider, so that they can be observed. It uses the Raspberry Pi's provider name, so that RaspiPin objects can be
+ * provisioned with it.
+ */
+public class SimulatedGpioProvider extends GpioProviderBase {
+
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public String getName() {
+        return RaspiGpioProvider.NAME;
+    }
+
+    /**
+     * Simulates an external change of a digital pin's state.
+     *
+     * @param pin   the pin whose state changes
+     * @param state the new state of the pin
+     */
+    public void drive(Pin pin, PinState state) {
+        if (currentState(pin) != state) {
+            getPinCache(pin).setState(state);
+            dispatchPinDigitalStateChangeEvent(pin, state);
+        }
+    }
+
+    /**
+     * Simulates an external change of an analog pin's value.
+     *
+     * @param pin   the pin whose value changes
+     * @param value the new value of the pin
+     */
+    public void drive(Pin pin, double value) {
+        if (getPinCache(pin).getAnalogValue() != value) {
+            getPinCache(pin).setAnalogValue(value);
+            dispatchPinAnalogValueChangeEvent(pin, value);
+        }
+    }
+
+    @Override
+    public void setState(Pin pin, PinState state) {
+        latency.apply();
+        final PinState previous = currentState(pin);
+        super.setState(pin, state);
+        if (previous != state) {
+            dispatchPinDigitalStateChangeEvent(pin, state);
+        }
+    }
+
+    /**
+     * Sets the states of several pins as the bits of a value, in a single operation. Listeners are only notified once
+     * all the pins have changed.
+     *
+     * @param pins  the pins, the first one being set by the lowest bit
+     * @param value the bits to set
+     */
+    void setStates(Pin[] pins, int value) {
+        latency.apply();
+        final PinState[] previous = new PinState[pins.length];
+        for (int i = 0; i < pins.length; i++) {
+            previous[i] = currentState(pins[i]);
+            getPinCache(pins[i]).setState(PinState.getState((value & (1 << i)) != 0));
+        }
+        for (int i = 0; i < pins.length; i++) {
+            final PinState state = currentState(pins[i]);
+            if (previous[i] != state) {
+                dispatchPinDigitalStateChangeEvent(pins[i], state);
+            }
+        }
+    }
+
+    @Override
+    public PinState getState(Pin pin) {
+        latency.apply();
+        return currentState(pin);
+    }
+
+    private PinState currentState(Pin pin) {
+        final PinState state = getPinCache(pin).getState();
+        return state != null ? state : PinState.LOW;
+    }
+
+    @Override
+    public void setValue(Pin pin, double value) {
+        latency.apply();
+        super.setValue(pin, value);
+    }
+
+    @Override
+    public double getValue(Pin pin) {
+        latency.apply();
+        return getPinCache(pin).getAnalogValue();
+    }
+
+    @Override
+    public void setPwm(Pin pin, int value) {
+        latency.apply();
+        super.setPwm(pin, value);
+    }
+
+    @Override
+    public void setPwmRange(Pin pin, int range) {
+        // The simulated PWM has no range limitation
+    }
+}
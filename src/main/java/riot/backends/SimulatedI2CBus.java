@@ -0,0 +1,48 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pi4j.io.i2c.I2CBus;
+
+/**
+ * An in-memory I2C bus. A device is present at every address, and behaves as described in {@link SimulatedI2CDevice}.
+ * Operations on the bus' devices are serialised by locking the bus object.
+ */
+public class SimulatedI2CBus implements I2CBus {
+    private final int busNumber;
+    private final Map<Integer, SimulatedI2CDevice> devices = new ConcurrentHashMap<>();
+
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+
+    SimulatedI2CBus(int busNumber) {
+        this.busNumber = busNumber;
+    }
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+        for (SimulatedI2CDevice device : devices.values()) {
+            device.setLatency(latency);
+        }
+    }
+
+    @Override
+    public SimulatedI2CDevice getDevice(int address) {
+        return devices.computeIfAbsent(address, a -> {
+            final SimulatedI2CDevice device = new SimulatedI2CDevice(this, a);
+            device.setLatency(latency);
+            return device;
+        });
+    }
+
+    @Override
+    public int getBusNumber() {
+        return busNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,227 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * An in-memory I2C device, modelled as a bank of 256 registers with an auto-incrementing register pointer. Writes
+ * without a register address set the pointer to their first byte and store the remaining bytes from there on, which
+ * is how most register-based devices behave. Individual registers can be scripted, so that successive reads return a
+ * predefined sequence of values. All operations lock the bus the device is on.
+ */
+public class SimulatedI2CDevice implements LockingI2CDevice {
+    private final Object bus;
+    private final int address;
+    private final byte[] registers = new byte[256];
+    private final Map<Integer, IntSupplier> scripts = new HashMap<>();
+    private int pointer = 0;
+
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+
+    SimulatedI2CDevice(Object bus, int address) {
+        this.bus = bus;
+        this.address = address;
+    }
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Sets the content of one or more consecutive registers.
+     *
+     * @param register the first register to set
+     * @param values   the values to store, starting at that register
+     * @return this device (for chaining).
+     */
+    public SimulatedI2CDevice setRegister(int register, byte... values) {
+        synchronized (bus) {
+            for (int i = 0; i < values.length; i++) {
+                registers[(register + i) & 0xFF] = values[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * @param register the register to read
+     * @return the content of that register, as last written (scripts are not taken into account).
+     */
+    public byte getRegister(int register) {
+        synchronized (bus) {
+            return registers[register & 0xFF];
+        }
+    }
+
+    /**
+     * Successive reads of the register will return the values passed, one after the other. Once all have been read,
+     * the last value is returned for any further read.
+     *
+     * @param register the register to script
+     * @param values   the values to return
+     * @return this device (for chaining).
+     */
+    public SimulatedI2CDevice script(int register, byte... values) {
+        final byte[] sequence = values.clone();
+        final int[] next = {0};
+        return onRead(register, () -> {
+            final int index = Math.min(next[0]++, sequence.length - 1);
+            return sequence[index];
+        });
+    }
+
+    /**
+     * Reads of the register will return the value produced by the supplier passed.
+     *
+     * @param register the register to script
+     * @param supplier the supplier of the register's value
+     * @return this device (for chaining).
+     */
+    public SimulatedI2CDevice onRead(int register, IntSupplier supplier) {
+        synchronized (bus) {
+            scripts.put(register & 0xFF, supplier);
+            return this;
+        }
+    }
+
+    private byte readRegister(int register) {
+        final IntSupplier script = scripts.get(register & 0xFF);
+        if (script != null) {
+            return (byte) script.getAsInt();
+        }
+        return registers[register & 0xFF];
+    }
+
+    private int readRegisters(int register, byte[] buffer, int offset, int size) {
+        for (int i = 0; i < size; i++) {
+            buffer[offset + i] = readRegister(register + i);
+        }
+        pointer = (register + size) & 0xFF;
+        return size;
+    }
+
+    private void writeRegisters(int register, byte[] buffer, int offset, int size) {
+        for (int i = 0; i < size; i++) {
+            registers[(register + i) & 0xFF] = buffer[offset + i];
+        }
+        pointer = (register + size) & 0xFF;
+    }
+
+    @Override
+    public <T> T runLocked(Operations<T> operations) throws IOException {
+        synchronized (bus) {
+            return operations.run(this);
+        }
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        synchronized (bus) {
+            latency.apply(1);
+            pointer = b & 0xFF;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        synchronized (bus) {
+            latency.apply(size);
+            if (size > 0) {
+                writeRegisters(buffer[offset] & 0xFF, buffer, offset + 1, size - 1);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        synchronized (bus) {
+            latency.apply(2);
+            writeRegisters(address, new byte[]{b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        synchronized (bus) {
+            latency.apply(size + 1);
+            writeRegisters(address, buffer, offset, size);
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException {
+        write(address, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (bus) {
+            latency.apply(1);
+            final byte value = readRegister(pointer);
+            pointer = (pointer + 1) & 0xFF;
+            return value & 0xFF;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        synchronized (bus) {
+            latency.apply(size);
+            return readRegisters(pointer, buffer, offset, size);
+        }
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        synchronized (bus) {
+            latency.apply(2);
+            final byte value = readRegister(address);
+            pointer = (address + 1) & 0xFF;
+            return value & 0xFF;
+        }
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        synchronized (bus) {
+            latency.apply(size + 1);
+            return readRegisters(address, buffer, offset, size);
+        }
+    }
+
+    @Override
+    public int read(byte[] writeBuffer, int writeOffset, int writeSize, byte[] readBuffer, int readOffset,
+                    int readSize) throws IOException {
+        synchronized (bus) {
+            latency.apply(writeSize + readSize);
+            if (writeSize > 0) {
+                writeRegisters(writeBuffer[writeOffset] & 0xFF, writeBuffer, writeOffset + 1, writeSize - 1);
+            }
+            return readRegisters(pointer, readBuffer, readOffset, readSize);
+        }
+    }
+
+    @Override
+    public void ioctl(long command, int value) throws IOException {
+        // ioctl calls have no effect on simulated devices
+    }
+
+    @Override
+    public void ioctl(long command, ByteBuffer values, IntBuffer offsets) throws IOException {
+        // ioctl calls have no effect on simulated devices
+    }
+}
@@ -0,0 +1,54 @@
+package riot.backends;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The time a simulated operation takes: a fixed cost per operation, plus a cost per byte transferred. Short delays are
+ * busy-waited, since sleeping would overshoot them by far on most operating systems.
+ */
+final class SimulatedLatency {
+    static final SimulatedLatency NONE = new SimulatedLatency(Duration.ZERO, Duration.ZERO);
+
+    private static final long SPIN_THRESHOLD_NANOS = 100_000;
+
+    private final long perOperationNanos;
+    private final long perByteNanos;
+
+    SimulatedLatency(Duration perOperation, Duration perByte) {
+        this.perOperationNanos = perOperation.toNanos();
+        this.perByteNanos = perByte.toNanos();
+    }
+
+    void apply() {
+        apply(0);
+    }
+
+    void apply(int bytes) {
+        final long nanos = perOperationNanos + perByteNanos * bytes;
+        if (nanos <= 0) {
+            return;
+        }
+        waitUntil(System.nanoTime() + nanos);
+    }
+
+    /**
+     * @return the fixed cost of each operation, in nanoseconds.
+     */
+    long getPerOperationNanos() {
+        return perOperationNanos;
+    }
+
+    /**
+     * @param deadline the time to wait for, as per {@link System#nanoTime()}
+     */
+    static void waitUntil(long deadline) {
+        final long nanos = deadline - System.nanoTime();
+        if (nanos > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(nanos - SPIN_THRESHOLD_NANOS);
+        }
+        while (System.nanoTime() < deadline) {
+            // Busy-wait for the remainder
+        }
+    }
+}
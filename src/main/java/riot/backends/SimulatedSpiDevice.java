@@ -0,0 +1,140 @@
+package riot.backends;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import com.pi4j.io.spi.SpiChannel;
+
+/**
+ * An in-memory SPI device. By default, it behaves as if MISO was wired to MOSI, i.e. every transfer returns the bytes
+ * that were sent. A responder function can be set to compute the device's response from the bytes sent instead.
+ */
+public class SimulatedSpiDevice implements InPlaceSpiDevice {
+    private final SpiChannel channel;
+
+    private static final UnaryOperator<byte[]> IDENTITY = UnaryOperator.identity();
+
+    private volatile UnaryOperator<byte[]> responder = IDENTITY;
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+
+    SimulatedSpiDevice(SpiChannel channel) {
+        this.channel = channel;
+    }
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @return the SPI channel of this device.
+     */
+    public SpiChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the function used to compute the device's response. It receives the bytes sent, and should return an array
+     * of the same length.
+     *
+     * @param responder the function computing the response
+     * @return this device (for chaining).
+     */
+    public SimulatedSpiDevice respondWith(UnaryOperator<byte[]> responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    private byte[] transfer(byte[] data, int start, int length) throws IOException {
+        if (length > MAX_SUPPORTED_BYTES) {
+            throw new IOException("Number of bytes in data to write cannot exceed " + MAX_SUPPORTED_BYTES + " bytes.");
+        }
+        latency.apply(length);
+        final byte[] response = responder.apply(Arrays.copyOfRange(data, start, start + length));
+        return Arrays.copyOf(response, length);
+    }
+
+    @Override
+    public void transfer(byte[] data, int length) throws IOException {
+        final UnaryOperator<byte[]> responder = this.responder;
+        if (responder == IDENTITY) {
+            if (length > MAX_SUPPORTED_BYTES) {
+                throw new IOException("Number of bytes in data to write cannot exceed " + MAX_SUPPORTED_BYTES
+                        + " bytes.");
+            }
+            latency.apply(length);
+        } else {
+            System.arraycopy(transfer(data, 0, length), 0, data, 0, length);
+        }
+    }
+
+    @Override
+    public String write(String data, Charset charset) throws IOException {
+        return new String(write(data.getBytes(charset)), charset);
+    }
+
+    @Override
+    public String write(String data, String charset) throws IOException {
+        return write(data, Charset.forName(charset));
+    }
+
+    @Override
+    public ByteBuffer write(ByteBuffer data) throws IOException {
+        final byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return ByteBuffer.wrap(write(bytes));
+    }
+
+    @Override
+    public byte[] write(InputStream input) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[MAX_SUPPORTED_BYTES];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return write(bytes.toByteArray());
+    }
+
+    @Override
+    public int write(InputStream input, OutputStream output) throws IOException {
+        final byte[] response = write(input);
+        output.write(response);
+        return response.length;
+    }
+
+    @Override
+    public byte[] write(byte[] data, int start, int length) throws IOException {
+        return transfer(data, start, length);
+    }
+
+    @Override
+    public byte[] write(byte... data) throws IOException {
+        return transfer(data, 0, data.length);
+    }
+
+    @Override
+    public short[] write(short[] data, int start, int length) throws IOException {
+        // As with Pi4J, each short is transferred as a single byte
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) data[start + i];
+        }
+        final byte[] response = transfer(bytes, 0, length);
+        final short[] result = new short[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (short) (response[i] & 0xFF);
+        }
+        return result;
+    }
+
+    @Override
+    public short[] write(short... data) throws IOException {
+        return write(data, 0, data.length);
+    }
+}
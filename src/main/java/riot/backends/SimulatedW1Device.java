@@ -0,0 +1,98 @@
+package riot.backends;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import com.pi4j.io.w1.W1Device;
+
+/**
+ * An in-memory OneWire device, whose value (the content of its <code>w1_slave</code> file) is produced by a supplier.
+ */
+public class SimulatedW1Device implements W1Device {
+    /**
+     * The family code of DS18B20 temperature sensors
+     */
+    public static final int DS18B20_FAMILY = 0x28;
+
+    private final String id;
+    private final int familyId;
+    private final Supplier<String> value;
+
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+    private volatile long conversionDeadline;
+    private volatile boolean converting;
+
+    public SimulatedW1Device(String id, int familyId, Supplier<String> value) {
+        this.id = id;
+        this.familyId = familyId;
+        this.value = value;
+    }
+
+    /**
+     * Creates a simulated DS18B20 temperature sensor, whose output is formatted as the Linux w1_therm driver does.
+     *
+     * @param id          the device id, e.g. "28-0316a2797dff"
+     * @param temperature the supplier of the temperature, in degrees Celsius
+     * @return a simulated OneWire device
+     */
+    public static SimulatedW1Device thermometer(String id, DoubleSupplier temperature) {
+        return new SimulatedW1Device(id, DS18B20_FAMILY, () -> {
+            final long milliCelsius = Math.round(temperature.getAsDouble() * 1000);
+            final int raw = (int) (milliCelsius * 16 / 1000);
+            final String bytes = String.format(Locale.ROOT, "%02x %02x 4b 46 7f ff 0c 10 1c", raw & 0xFF,
+                    (raw >> 8) & 0xFF);
+            return bytes + " : crc=1c YES\n" + bytes + " t=" + milliCelsius + "\n";
+        });
+    }
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return id;
+    }
+
+    @Override
+    public int getFamilyId() {
+        return familyId;
+    }
+
+    /**
+     * Starts a conversion, which completes after the device's read latency. The next read waits for the rest of the
+     * conversion only, rather than converting again.
+     */
+    void triggerConversion() {
+        conversionDeadline = System.nanoTime() + latency.getPerOperationNanos();
+        converting = true;
+    }
+
+    @Override
+    public String getValue() throws IOException {
+        if (converting) {
+            converting = false;
+            SimulatedLatency.waitUntil(conversionDeadline);
+        } else {
+            latency.apply();
+        }
+        return value.get();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof W1Device && ((W1Device) obj).getId().equals(id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+}
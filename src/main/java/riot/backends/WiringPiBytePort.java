@@ -0,0 +1,57 @@
+package riot.backends;
+
+import java.util.List;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.RaspiPin;
+import com.pi4j.wiringpi.Gpio;
+
+/**
+ * A port of wiringPi pins 0 to 7, i.e. <code>RaspiPin.GPIO_00</code> to <code>GPIO_07</code> in that order, which
+ * wiringPi writes through a single write of the set register and a single write of the clear register.
+ */
+class WiringPiBytePort implements DigitalPort {
+    private static final int WIDTH = 8;
+
+    private int value;
+
+    private WiringPiBytePort(List<GpioPinDigitalOutput> pins) {
+        for (int i = 0; i < WIDTH; i++) {
+            if (pins.get(i).isHigh()) {
+                value |= 1 << i;
+            }
+        }
+    }
+
+    /**
+     * @param pins the pins of the port
+     * @return a port writing the pins passed in a single operation, or null if they are not wiringPi pins 0 to 7.
+     */
+    static DigitalPort of(List<GpioPinDigitalOutput> pins) {
+        if (pins.size() != WIDTH) {
+            return null;
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            if (pins.get(i).getPin() != RaspiPin.getPinByAddress(i)) {
+                return null;
+            }
+        }
+        return new WiringPiBytePort(pins);
+    }
+
+    @Override
+    public int getWidth() {
+        return WIDTH;
+    }
+
+    @Override
+    public void write(int value) {
+        Gpio.digitalWriteByte(value & 0xFF);
+        this.value = value & 0xFF;
+    }
+
+    @Override
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+package riot.dispatchers;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the utilisation of a dispatcher's thread pool.
+ */
+public final class DispatcherMetrics {
+    private final String dispatcherId;
+    private final int poolSize;
+    private final int activeThreads;
+    private final int queuedTasks;
+    private final long completedTasks;
+    private final Duration busyTime;
+    private final Duration uptime;
+
+    DispatcherMetrics(String dispatcherId, int poolSize, int activeThreads, int queuedTasks, long completedTasks,
+                      Duration busyTime, Duration uptime) {
+        this.dispatcherId = dispatcherId;
+        this.poolSize = poolSize;
+        this.activeThreads = activeThreads;
+        this.queuedTasks = queuedTasks;
+        this.completedTasks = completedTasks;
+        this.busyTime = busyTime;
+        this.uptime = uptime;
+    }
+
+    public String getDispatcherId() {
+        return dispatcherId;
+    }
+
+    /**
+     * @return the number of threads in the pool.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of threads currently running a task.
+     */
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    /**
+     * @return the number of tasks (i.e. actors with pending messages) waiting for a thread.
+     */
+    public int getQueuedTasks() {
+        return queuedTasks;
+    }
+
+    /**
+     * @return the number of tasks run since the dispatcher was started.
+     */
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * @return the total time spent running tasks, summed over all threads.
+     */
+    public Duration getBusyTime() {
+        return busyTime;
+    }
+
+    /**
+     * @return the time since the dispatcher was started.
+     */
+    public Duration getUptime() {
+        return uptime;
+    }
+
+    /**
+     * @return the fraction of the pool's capacity used since the dispatcher was started, between 0 and 1.
+     */
+    public double getUtilisation() {
+        final long capacity = uptime.toNanos() * poolSize;
+        return capacity > 0 ? Math.min(1.0, (double) busyTime.toNanos() / capacity) : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d threads active, %d queued, %d completed, %.1f%% utilisation", dispatcherId,
+                activeThreads, poolSize, queuedTasks, completedTasks, getUtilisation() * 100);
+    }
+}
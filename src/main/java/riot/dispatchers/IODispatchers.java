@@ -0,0 +1,67 @@
+package riot.dispatchers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import akka.actor.ActorSystem;
+
+/**
+ * The ids of the dispatchers defined in RIoT's <code>reference.conf</code>, and access to their utilisation metrics.
+ * Their pool sizes can be changed in <code>application.conf</code>, e.g.:
+ *
+ * <pre>
+ * riot.blocking-io-dispatcher.thread-pool-executor.fixed-pool-size = 8
+ * </pre>
+ */
+public final class IODispatchers {
+
+    /**
+     * The bounded pool used by default by the actors accessing I2C, SPI and OneWire devices.
+     */
+    public static final String BLOCKING_IO = "riot.blocking-io-dispatcher";
+
+    /**
+     * A single thread shared by all SPI devices.
+     */
+    public static final String SPI_BUS = "riot.spi-bus-dispatcher";
+
+    /**
+     * A single thread shared by all OneWire devices.
+     */
+    public static final String ONEWIRE_BUS = "riot.onewire-bus-dispatcher";
+
+    private IODispatchers() {
+        // No instantiation necessary.
+    }
+
+    /**
+     * @param busNumber the number of the I2C bus
+     * @return the id of the single-threaded dispatcher shared by all devices on that bus.
+     */
+    public static String i2cBus(int busNumber) {
+        return "riot.i2c-bus-" + busNumber + "-dispatcher";
+    }
+
+    /**
+     * @param system       the actor system running the dispatcher
+     * @param dispatcherId the id of a dispatcher using RIoT's instrumented executor
+     * @return the current metrics of that dispatcher, or null if it has not been started yet.
+     */
+    public static DispatcherMetrics getMetrics(ActorSystem system, String dispatcherId) {
+        final InstrumentedThreadPoolExecutor executor = InstrumentedThreadPoolExecutor.get(system.name(),
+                dispatcherId);
+        return executor != null ? executor.getMetrics() : null;
+    }
+
+    /**
+     * @param system the actor system running the dispatchers
+     * @return the current metrics of all started dispatchers of that actor system using RIoT's instrumented executor.
+     */
+    public static List<DispatcherMetrics> getMetrics(ActorSystem system) {
+        final List<DispatcherMetrics> metrics = new ArrayList<>();
+        for (InstrumentedThreadPoolExecutor executor : InstrumentedThreadPoolExecutor.all(system.name())) {
+            metrics.add(executor.getMetrics());
+        }
+        return metrics;
+    }
+}
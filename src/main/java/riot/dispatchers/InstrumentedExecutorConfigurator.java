@@ -0,0 +1,37 @@
+package riot.dispatchers;
+
+import java.util.concurrent.ThreadFactory;
+
+import com.typesafe.config.Config;
+
+import akka.dispatch.DispatcherPrerequisites;
+import akka.dispatch.ExecutorServiceConfigurator;
+import akka.dispatch.ExecutorServiceFactory;
+import akka.dispatch.MonitorableThreadFactory;
+
+/**
+ * Creates the fixed-size, instrumented thread pools used by RIoT's dispatchers. Use it by setting a dispatcher's
+ * <code>executor</code> to this class' name; the pool size is read from
+ * <code>thread-pool-executor.fixed-pool-size</code>.
+ */
+public class InstrumentedExecutorConfigurator extends ExecutorServiceConfigurator {
+    private final int poolSize;
+
+    public InstrumentedExecutorConfigurator(Config config, DispatcherPrerequisites prerequisites) {
+        super(config, prerequisites);
+        this.poolSize = config.getInt("thread-pool-executor.fixed-pool-size");
+    }
+
+    @Override
+    public ExecutorServiceFactory createExecutorServiceFactory(String id, ThreadFactory threadFactory) {
+        // Akka's thread factory is named after the actor system; name threads after the dispatcher, as its own
+        // executors do
+        final String systemName = threadFactory instanceof MonitorableThreadFactory
+                ? ((MonitorableThreadFactory) threadFactory).name()
+                : "";
+        final ThreadFactory namedThreadFactory = threadFactory instanceof MonitorableThreadFactory
+                ? ((MonitorableThreadFactory) threadFactory).withName(systemName + "-" + id)
+                : threadFactory;
+        return () -> new InstrumentedThreadPoolExecutor(systemName, id, poolSize, namedThreadFactory);
+    }
+}
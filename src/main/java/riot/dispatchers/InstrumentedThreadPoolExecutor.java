@@ -0,0 +1,66 @@
+package riot.dispatchers;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size thread pool that keeps track of the time its threads spend running tasks.
+ */
+class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+    // Executors by actor system name, then dispatcher id, as several actor systems may run in the same JVM
+    private static final Map<String, Map<String, InstrumentedThreadPoolExecutor>> executors =
+            new ConcurrentHashMap<>();
+
+    private final String systemName;
+    private final String id;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder busyNanos = new LongAdder();
+    private final ThreadLocal<long[]> taskStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    InstrumentedThreadPoolExecutor(String systemName, String id, int poolSize, ThreadFactory threadFactory) {
+        super(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.systemName = systemName;
+        this.id = id;
+        executors.computeIfAbsent(systemName, k -> new ConcurrentHashMap<>()).put(id, this);
+    }
+
+    static InstrumentedThreadPoolExecutor get(String systemName, String id) {
+        return executors.getOrDefault(systemName, Collections.emptyMap()).get(id);
+    }
+
+    static Collection<InstrumentedThreadPoolExecutor> all(String systemName) {
+        return executors.getOrDefault(systemName, Collections.emptyMap()).values();
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        taskStart.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        busyNanos.add(System.nanoTime() - taskStart.get()[0]);
+        super.afterExecute(r, t);
+    }
+
+    @Override
+    protected void terminated() {
+        executors.getOrDefault(systemName, Collections.emptyMap()).remove(id, this);
+        super.terminated();
+    }
+
+    DispatcherMetrics getMetrics() {
+        return new DispatcherMetrics(id, getMaximumPoolSize(), getActiveCount(), getQueue().size(),
+                getCompletedTaskCount(), Duration.ofNanos(busyNanos.sum()),
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+}
@@ -0,0 +1,184 @@
+package riot.metrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import akka.japi.pf.PFBuilder;
+import scala.PartialFunction;
+
+/**
+ * The metrics of a device, shared by all the actors and stages accessing it: the latencies of the operations run on
+ * it, the number of failed operations and of timed out requests, and the depth of its actors' mailboxes. Recording an
+ * operation costs two reads of the clock, and a few uncontended atomic increments.
+ *
+ * @see Metrics
+ */
+public final class DeviceMetrics implements DeviceMetricsMXBean {
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final List<InstrumentedMailbox.Queue> mailboxes = new CopyOnWriteArrayList<>();
+    private final PartialFunction<Throwable, Throwable> timeoutCounter;
+    private volatile int maxDetachedMailboxSize;
+    private volatile long resetNanos = System.nanoTime();
+
+    DeviceMetrics(String name) {
+        this.name = name;
+        this.timeoutCounter = new PFBuilder<Throwable, Throwable>()
+                .match(TimeoutException.class, this::countTimeout)
+                .build();
+    }
+
+    /**
+     * Records an operation which succeeded.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the operation started
+     */
+    public void record(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records an operation which failed.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the operation started
+     */
+    public void recordError(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+        errors.increment();
+    }
+
+    /**
+     * Records a request which timed out before it was answered.
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    private Throwable countTimeout(Throwable timeout) {
+        recordTimeout();
+        return timeout;
+    }
+
+    /**
+     * @return a partial function counting the timeouts of asks to the device (including Akka's
+     * <code>AskTimeoutException</code>), and returning them unchanged, e.g. for <code>Flow.mapError()</code>.
+     */
+    public PartialFunction<Throwable, Throwable> timeoutCounter() {
+        return timeoutCounter;
+    }
+
+    /**
+     * @return the histogram of the latencies of the operations run on the device.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    void attach(InstrumentedMailbox.Queue mailbox) {
+        if (mailbox.attach(this)) {
+            mailboxes.add(mailbox);
+        }
+    }
+
+    void detach(InstrumentedMailbox.Queue mailbox) {
+        if (mailboxes.remove(mailbox)) {
+            maxDetachedMailboxSize = Math.max(maxDetachedMailboxSize, mailbox.getMaxSize());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getOperations() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getThroughput() {
+        final long elapsed = System.nanoTime() - resetNanos;
+        return elapsed > 0 ? latencies.getCount() * 1e9 / elapsed : 0.0;
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return toMicros(latencies.getMean());
+    }
+
+    @Override
+    public double getMedianLatencyMicros() {
+        return toMicros(latencies.getPercentile(50));
+    }
+
+    @Override
+    public double get99thPercentileLatencyMicros() {
+        return toMicros(latencies.getPercentile(99));
+    }
+
+    @Override
+    public double get999thPercentileLatencyMicros() {
+        return toMicros(latencies.getPercentile(99.9));
+    }
+
+    @Override
+    public double getMaxLatencyMicros() {
+        return toMicros(latencies.getMax());
+    }
+
+    @Override
+    public int getMailboxSize() {
+        int size = 0;
+        for (InstrumentedMailbox.Queue mailbox : mailboxes) {
+            size += mailbox.numberOfMessages();
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxMailboxSize() {
+        int max = maxDetachedMailboxSize;
+        for (InstrumentedMailbox.Queue mailbox : mailboxes) {
+            max = Math.max(max, mailbox.getMaxSize());
+        }
+        return max;
+    }
+
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.reset();
+        timeouts.reset();
+        maxDetachedMailboxSize = 0;
+        for (InstrumentedMailbox.Queue mailbox : mailboxes) {
+            mailbox.resetMaxSize();
+        }
+        resetNanos = System.nanoTime();
+    }
+
+    private static double toMicros(Duration duration) {
+        return duration.toNanos() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s, %d errors, %d timeouts, %d/%d queued", name, latencies, getErrors(),
+                getTimeouts(), getMailboxSize(), getMaxMailboxSize());
+    }
+}
@@ -0,0 +1,59 @@
+package riot.metrics;
+
+/**
+ * The metrics of a device, as exposed through JMX, under <code>riot:type=Device,system=...,name=...</code>. Latencies
+ * are in microseconds, and are those of the operations run on the device since the metrics were last reset, excluding
+ * the time messages waited in the device actor's mailbox.
+ */
+public interface DeviceMetricsMXBean {
+
+    /**
+     * @return the name of the device, e.g. "i2c-1-40".
+     */
+    String getName();
+
+    /**
+     * @return the number of operations run on the device, including failed ones.
+     */
+    long getOperations();
+
+    /**
+     * @return the number of operations which failed.
+     */
+    long getErrors();
+
+    /**
+     * @return the number of requests to the device which timed out before they were answered.
+     */
+    long getTimeouts();
+
+    /**
+     * @return the number of operations run per second, on average.
+     */
+    double getThroughput();
+
+    double getMeanLatencyMicros();
+
+    double getMedianLatencyMicros();
+
+    double get99thPercentileLatencyMicros();
+
+    double get999thPercentileLatencyMicros();
+
+    double getMaxLatencyMicros();
+
+    /**
+     * @return the number of messages currently waiting in the mailboxes of the device's actors.
+     */
+    int getMailboxSize();
+
+    /**
+     * @return the most messages seen waiting in the mailbox of one of the device's actors.
+     */
+    int getMaxMailboxSize();
+
+    /**
+     * Clears the latencies and counters, e.g. to measure a specific period.
+     */
+    void reset();
+}
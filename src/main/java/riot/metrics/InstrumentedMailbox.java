@@ -0,0 +1,116 @@
+package riot.metrics;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.typesafe.config.Config;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import scala.Option;
+
+/**
+ * An unbounded mailbox keeping count of the messages it holds, so that its depth can be read at no cost (Akka's
+ * default mailbox walks its queue to count them). The device actors are created with it
+ * (<code>riot.instrumented-mailbox</code>); an actor's mailbox is reported with the metrics of its device once the
+ * actor looks them up with {@link Metrics#device(String, ActorRef)}.
+ */
+public class InstrumentedMailbox implements MailboxType, ProducesMessageQueue<InstrumentedMailbox.Queue> {
+
+    /**
+     * The queue of an actor's mailbox.
+     */
+    public static final class Queue implements MessageQueue, UnboundedMessageQueueSemantics {
+        private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Metrics metrics;
+        private volatile int maxSize;
+        private DeviceMetrics device;
+
+        Queue(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            queue.add(handle);
+            final int newSize = size.incrementAndGet();
+            // Racy, but only ever off by the messages enqueued concurrently
+            if (newSize > maxSize) {
+                maxSize = newSize;
+            }
+        }
+
+        @Override
+        public Envelope dequeue() {
+            final Envelope handle = queue.poll();
+            if (handle != null) {
+                size.decrementAndGet();
+            }
+            return handle;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return size.get();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            if (metrics != null) {
+                metrics.closeMailbox(owner, this);
+            }
+            Envelope handle;
+            while ((handle = dequeue()) != null) {
+                deadLetters.enqueue(owner, handle);
+            }
+        }
+
+        synchronized boolean attach(DeviceMetrics device) {
+            if (this.device != null) {
+                return false;
+            }
+            this.device = device;
+            return true;
+        }
+
+        synchronized void detach() {
+            if (device != null) {
+                device.detach(this);
+            }
+        }
+
+        int getMaxSize() {
+            return maxSize;
+        }
+
+        void resetMaxSize() {
+            maxSize = size.get();
+        }
+    }
+
+    public InstrumentedMailbox(ActorSystem.Settings settings, Config config) {
+        // No settings
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        if (owner.isEmpty() || system.isEmpty()) {
+            return new Queue(null);
+        }
+        final Metrics metrics = Metrics.get(system.get());
+        final Queue queue = new Queue(metrics);
+        metrics.openMailbox(owner.get(), queue);
+        return queue;
+    }
+}
@@ -0,0 +1,132 @@
+package riot.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies, recorded in nanoseconds with a relative precision of about 3%. As in an HDR
+ * histogram, each power of two is split into 32 linear buckets, so that recording a value is a couple of bit operations
+ * and an atomic increment, whatever its magnitude, and the histogram takes a fixed amount of memory (under 10KB).
+ * Latencies above 2^40ns (about 18 minutes) are recorded as 2^40ns.
+ * <p>
+ * Values can be recorded concurrently with each other and with reads; the statistics read while values are recorded
+ * may then be off by the values being recorded.
+ */
+public final class LatencyHistogram {
+    // 2^(SUB_BUCKET_BITS - 1) buckets per power of two
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = 1L << MAX_EXPONENT;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos a latency, in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        final long value = nanos < 0 ? 0 : nanos > MAX_VALUE ? MAX_VALUE : nanos;
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        // Only contend on the maximum when it changes
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of the latencies recorded, or zero if none were.
+     */
+    public Duration getMean() {
+        final long n = count.sum();
+        return Duration.ofNanos(n > 0 ? sum.sum() / n : 0);
+    }
+
+    /**
+     * @return the highest latency recorded, or zero if none were.
+     */
+    public Duration getMax() {
+        return Duration.ofNanos(max.get());
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100, e.g. 99.9
+     * @return the latency below which that percentage of the latencies recorded fall, within the precision of the
+     * histogram, or zero if none were recorded.
+     */
+    public Duration getPercentile(double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // The middle of the bucket, but never beyond the highest value recorded
+                return Duration.ofNanos(Math.min(max.get(), lowestValueOf(i) + (widthOf(i) - 1) / 2));
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears the histogram. Values recorded while it is cleared may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d values, mean %dus, p50 %dus, p99 %dus, p99.9 %dus, max %dus", getCount(),
+                getMean().toNanos() / 1000, getPercentile(50).toNanos() / 1000, getPercentile(99).toNanos() / 1000,
+                getPercentile(99.9).toNanos() / 1000, getMax().toNanos() / 1000);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS << 1) {
+            return (int) value;
+        }
+        // Keep the SUB_BUCKET_BITS most significant bits of the value: the power of two, and the bucket within it
+        final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    private static long lowestValueOf(int index) {
+        if (index < SUB_BUCKETS << 1) {
+            return index;
+        }
+        final int shift = (index >>> (SUB_BUCKET_BITS - 1)) - 1;
+        return (long) (index - (shift << (SUB_BUCKET_BITS - 1))) << shift;
+    }
+
+    private static long widthOf(int index) {
+        return index < SUB_BUCKETS << 1 ? 1 : 1L << ((index >>> (SUB_BUCKET_BITS - 1)) - 1);
+    }
+}
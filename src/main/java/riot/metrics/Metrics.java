@@ -0,0 +1,150 @@
+package riot.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+
+/**
+ * An Akka extension keeping the metrics of each device accessed in an actor system (see {@link DeviceMetrics}), by
+ * name: I2C devices are named after their bus and address (e.g. "i2c-1-40"), SPI devices after their channel (e.g.
+ * "spi-0"), OneWire devices after their family (e.g. "onewire-28"), and GPIO pins after their name (e.g.
+ * "gpio-GPIO-1"). The metrics of each device are registered as an MXBean on the platform MBean server, unless
+ * <code>riot.metrics.jmx</code> is off, so that they can be watched with JConsole or any JMX client.
+ */
+public class Metrics implements Extension {
+
+    /**
+     * The id of the mailbox counting its messages, defined in RIoT's <code>reference.conf</code>.
+     */
+    public static final String MAILBOX = "riot.instrumented-mailbox";
+
+    private static final class Id extends AbstractExtensionId<Metrics> implements ExtensionIdProvider {
+        @Override
+        public Metrics createExtension(ExtendedActorSystem system) {
+            return new Metrics(system);
+        }
+
+        @Override
+        public Id lookup() {
+            return ID;
+        }
+    }
+
+    private static final Id ID = new Id();
+
+    private final String systemName;
+    private final LoggingAdapter log;
+    private final MBeanServer server;
+    private final Map<String, DeviceMetrics> devices = new ConcurrentHashMap<>();
+    private final Map<ActorRef, InstrumentedMailbox.Queue> mailboxes = new ConcurrentHashMap<>();
+
+    private Metrics(ActorSystem system) {
+        systemName = system.name();
+        log = Logging.getLogger(system, this);
+        server = system.settings().config().getBoolean("riot.metrics.jmx") ? ManagementFactory.getPlatformMBeanServer()
+                : null;
+        system.registerOnTermination(this::unregisterAll);
+    }
+
+    /**
+     * @param system the actor system
+     * @return the device metrics of that actor system.
+     */
+    public static Metrics get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    /**
+     * @param name the name of the device
+     * @return the metrics of the device, created (and registered with JMX) if it is the first time they are requested.
+     */
+    public DeviceMetrics device(String name) {
+        DeviceMetrics metrics = devices.get(name);
+        if (metrics == null) {
+            final DeviceMetrics created = new DeviceMetrics(name);
+            metrics = devices.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+                register(created);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of a device, and reports the depth of the mailbox of the actor passed with them, if it was
+     * created with the {@link #MAILBOX} mailbox.
+     *
+     * @param name  the name of the device
+     * @param actor one of the device's actors
+     * @return the metrics of the device.
+     */
+    public DeviceMetrics device(String name, ActorRef actor) {
+        final DeviceMetrics metrics = device(name);
+        final InstrumentedMailbox.Queue mailbox = mailboxes.get(actor);
+        if (mailbox != null) {
+            metrics.attach(mailbox);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of all the devices accessed so far, by name.
+     */
+    public Map<String, DeviceMetrics> getDevices() {
+        return Collections.unmodifiableMap(devices);
+    }
+
+    void openMailbox(ActorRef owner, InstrumentedMailbox.Queue mailbox) {
+        mailboxes.put(owner, mailbox);
+    }
+
+    void closeMailbox(ActorRef owner, InstrumentedMailbox.Queue mailbox) {
+        mailboxes.remove(owner, mailbox);
+        mailbox.detach();
+    }
+
+    private ObjectName objectName(DeviceMetrics metrics) throws JMException {
+        return new ObjectName("riot:type=Device,system=" + ObjectName.quote(systemName) + ",name="
+                + ObjectName.quote(metrics.getName()));
+    }
+
+    private void register(DeviceMetrics metrics) {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.registerMBean(metrics, objectName(metrics));
+        } catch (JMException e) {
+            // e.g. another actor system with the same name in this JVM
+            log.warning("Unable to register the metrics of {} with JMX: {}", metrics.getName(), e);
+        }
+    }
+
+    private void unregisterAll() {
+        if (server == null) {
+            return;
+        }
+        for (DeviceMetrics metrics : devices.values()) {
+            try {
+                server.unregisterMBean(objectName(metrics));
+            } catch (JMException e) {
+                // Not registered
+            }
+        }
+    }
+}
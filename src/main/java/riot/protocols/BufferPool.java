@@ -0,0 +1,76 @@
+package riot.protocols;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte buffers of a fixed size, which the pooled protocols fill with the data read from devices
+ * instead of allocating a new array for every message. Buffers are returned to the pool when released by the consumer
+ * of the message.
+ * <p>
+ * The pool never blocks: if all its buffers are in use, or if more bytes are needed than a pooled buffer can hold, a
+ * new buffer is allocated. Released buffers are only kept if the pool is not already full.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final BlockingQueue<PooledBuffer> free;
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * @param buffers    the maximum number of buffers kept in the pool
+     * @param bufferSize the size of each buffer, in bytes
+     */
+    public BufferPool(int buffers, int bufferSize) {
+        if (buffers < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("The pool must hold at least one buffer of at least one byte");
+        }
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new PooledBuffer(this, bufferSize));
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool.
+     *
+     * @param length the number of bytes which will be stored in the buffer
+     * @return a buffer holding at least that many bytes, whose data is limited to that length.
+     */
+    public PooledBuffer acquire(int length) {
+        PooledBuffer buffer = length <= bufferSize ? free.poll() : null;
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            buffer = new PooledBuffer(length <= bufferSize ? this : null, Math.max(length, bufferSize));
+        }
+        buffer.acquire(length);
+        return buffer;
+    }
+
+    void recycle(PooledBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    /**
+     * @return the size of the pooled buffers, in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of buffers currently available in the pool.
+     */
+    public int getAvailable() {
+        return free.size();
+    }
+
+    /**
+     * @return the number of buffers allocated since the pool was created, because none was available or a larger
+     * buffer was needed. A pool of the right size should not need to allocate any.
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+}
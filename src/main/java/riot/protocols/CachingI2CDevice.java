@@ -0,0 +1,152 @@
+package riot.protocols;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import riot.backends.LockingI2CDevice;
+
+/**
+ * An I2C device reading and writing registers through a {@link RegisterCache}.
+ */
+class CachingI2CDevice implements LockingI2CDevice {
+    private final I2CDevice dev;
+    private final RegisterCache cache;
+
+    CachingI2CDevice(I2CDevice dev, RegisterCache cache) {
+        this.dev = dev;
+        this.cache = cache;
+    }
+
+    @Override
+    public <T> T runLocked(Operations<T> operations) throws IOException {
+        // The cache is always locked before the bus
+        synchronized (cache) {
+            if (dev instanceof LockingI2CDevice) {
+                return ((LockingI2CDevice) dev).runLocked(d -> operations.run(this));
+            }
+            synchronized (dev) {
+                return operations.run(this);
+            }
+        }
+    }
+
+    @Override
+    public int getAddress() {
+        return dev.getAddress();
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        synchronized (cache) {
+            dev.write(b);
+            // A single byte is a register pointer or a command (e.g. a soft reset), whose effect is unknown
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        synchronized (cache) {
+            dev.write(buffer, offset, size);
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        synchronized (cache) {
+            dev.write(address, b);
+            cache.written(address, new byte[]{b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        synchronized (cache) {
+            dev.write(address, buffer, offset, size);
+            cache.written(address, buffer, offset, size);
+        }
+    }
+
+    @Override
+    public void write(int address, byte[] buffer) throws IOException {
+        write(address, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (cache) {
+            return dev.read();
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        synchronized (cache) {
+            return dev.read(buffer, offset, size);
+        }
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        final byte[] value = new byte[1];
+        read(address, value, 0, 1);
+        return value[0] & 0xFF;
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        synchronized (cache) {
+            if (cache.lookup(address, buffer, offset, size)) {
+                return size;
+            }
+            final int read = dev.read(address, buffer, offset, size);
+            cache.read(address, buffer, offset, read);
+            return read;
+        }
+    }
+
+    @Override
+    public int read(byte[] writeBuffer, int writeOffset, int writeSize, byte[] readBuffer, int readOffset,
+                    int readSize) throws IOException {
+        synchronized (cache) {
+            if (writeSize != 1) {
+                // Not a register read: the bytes written may change registers
+                final int read = dev.read(writeBuffer, writeOffset, writeSize, readBuffer, readOffset, readSize);
+                cache.clear();
+                return read;
+            }
+            final int register = writeBuffer[writeOffset] & 0xFF;
+            if (cache.lookup(register, readBuffer, readOffset, readSize)) {
+                return readSize;
+            }
+            final int read = dev.read(writeBuffer, writeOffset, writeSize, readBuffer, readOffset, readSize);
+            cache.read(register, readBuffer, readOffset, read);
+            return read;
+        }
+    }
+
+    @Override
+    public void ioctl(long command, int value) throws IOException {
+        synchronized (cache) {
+            dev.ioctl(command, value);
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void ioctl(long command, ByteBuffer values, IntBuffer offsets) throws IOException {
+        synchronized (cache) {
+            dev.ioctl(command, values, offsets);
+            cache.clear();
+        }
+    }
+}
@@ -12,4 +12,15 @@ public interface I2CProtocol<I, O> extends Protocol<I, O> {
 
     void shutdown(I2CDevice dev) throws IOException;
 
+    /**
+     * Declares how the device's registers may be cached, when a register cache is enabled for the device. By default,
+     * no register is cached.
+     *
+     * @param cache the register cache, whose policies are to be set
+     * @see riot.I2C#withRegisterCache()
+     */
+    default void declareRegisters(RegisterCache cache) {
+        // No cacheable registers
+    }
+
 }
@@ -6,10 +6,24 @@ import com.pi4j.io.w1.W1Device;
 import java.io.IOException;
 import java.util.List;
 
+import riot.backends.Backend;
+
 public interface OneWireProtocol<I, O> extends Protocol<I, O> {
 
     void init(List<W1Device> dev) throws IOException;
 
+    /**
+     * Initialises the protocol, for protocols which need to access the backend the devices come from, e.g. to trigger
+     * conversions on all of them at once. By default, this calls {@link #init(List)}.
+     *
+     * @param dev     the devices
+     * @param backend the backend the devices come from
+     * @throws IOException if the devices cannot be initialised
+     */
+    default void init(List<W1Device> dev, Backend backend) throws IOException {
+        init(dev);
+    }
+
     O exec(List<W1Device> dev, I message) throws IOException;
 
     void shutdown(List<W1Device> dev) throws IOException;
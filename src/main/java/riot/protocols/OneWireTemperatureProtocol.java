@@ -0,0 +1,273 @@
+package riot.protocols;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.pi4j.io.w1.W1Device;
+
+import akka.util.Timeout;
+import riot.backends.Backend;
+
+/**
+ * Reads OneWire temperature sensors, such as DS18B20s, into typed readings: the output of the w1_therm driver is read
+ * into a reused buffer and parsed in place, without creating any String, and the device ids are interned, so that the
+ * same String instances are reused from one sweep to the next. If the backend supports it, a conversion is first
+ * triggered on all the sensors at once (see {@link Backend#triggerW1Conversion()}), so that each read only waits for
+ * the rest of that conversion.
+ */
+public class OneWireTemperatureProtocol
+        implements OneWireProtocol<OneWireTemperatureProtocol.Command, OneWireTemperatureProtocol.Readings> {
+
+    public enum Command {READ}
+
+    /**
+     * The outcome of the read of a sensor.
+     */
+    public enum Status {
+        /**
+         * The temperature was read, and the driver validated its CRC.
+         */
+        OK,
+        /**
+         * The driver reported a CRC error, e.g. because of noise on the bus.
+         */
+        CRC_ERROR,
+        /**
+         * The output of the driver did not contain a temperature.
+         */
+        NO_VALUE,
+        /**
+         * The sensor could not be read, e.g. because it was disconnected.
+         */
+        READ_ERROR
+    }
+
+    /**
+     * The readings of all the sensors in one sweep, as parallel arrays of primitives indexed by the position of the
+     * sensor in the sweep.
+     */
+    public static final class Readings {
+        private final String[] ids;
+        private final int[] milliCelsius;
+        private final Status[] statuses;
+        private final long[] timestamps;
+
+        Readings(String[] ids, int[] milliCelsius, Status[] statuses, long[] timestamps) {
+            this.ids = ids;
+            this.milliCelsius = milliCelsius;
+            this.statuses = statuses;
+            this.timestamps = timestamps;
+        }
+
+        /**
+         * @return the number of sensors read.
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return the id of the sensor, e.g. "28-0316a2797dff"; the same instance is returned for a sensor in every
+         * sweep.
+         */
+        public String getId(int i) {
+            return ids[i];
+        }
+
+        /**
+         * @param id the id of a sensor
+         * @return the index of the sensor in this sweep, or -1 if it was not read.
+         */
+        public int indexOf(String id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return the temperature, in thousandths of a degree Celsius; only meaningful if the status is OK.
+         */
+        public int getMilliCelsius(int i) {
+            return milliCelsius[i];
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return the temperature, in degrees Celsius; only meaningful if the status is OK.
+         */
+        public double getTemperature(int i) {
+            return milliCelsius[i] / 1000.0;
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return the outcome of the read.
+         */
+        public Status getStatus(int i) {
+            return statuses[i];
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return true if the temperature was read and its CRC is valid.
+         */
+        public boolean isValid(int i) {
+            return statuses[i] == Status.OK;
+        }
+
+        /**
+         * @param i the index of a sensor in this sweep
+         * @return the time at which the sensor was read, in milliseconds since the epoch.
+         */
+        public long getTimestamp(int i) {
+            return timestamps[i];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Readings(");
+            for (int i = 0; i < ids.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(ids[i]).append('=');
+                sb.append(statuses[i] == Status.OK ? Double.toString(getTemperature(i)) : statuses[i].toString());
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    // The w1_slave file of a DS18B20 is 75 bytes long
+    private static final int BUFFER_SIZE = 128;
+    private static final W1Device[] NO_DEVICES = new W1Device[0];
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final Map<String, String> internedIds = new ConcurrentHashMap<>();
+    private String[] ids = new String[0];
+    private volatile Backend backend;
+
+    @Override
+    public ProtocolDescriptor<Command, Readings> getDescriptor() {
+        // A sweep takes a conversion (750ms for a DS18B20 at full resolution), plus about 15ms per sensor read
+        return new ProtocolDescriptor<Command, Readings>(Command.class, Readings.class,
+                Timeout.apply(10, TimeUnit.SECONDS)).coalescing(command -> command);
+    }
+
+    @Override
+    public void init(List<W1Device> dev) throws IOException {
+        // No initialisation
+    }
+
+    @Override
+    public void init(List<W1Device> dev, Backend backend) throws IOException {
+        this.backend = backend;
+    }
+
+    @Override
+    public synchronized Readings exec(List<W1Device> dev, Command cmd) throws IOException {
+        if (backend == null) {
+            throw new IllegalStateException("The protocol has not been initialised with a backend");
+        }
+        // The list may be updated by the device registry during the sweep
+        final W1Device[] devices = dev.toArray(NO_DEVICES);
+        backend.triggerW1Conversion();
+
+        final String[] sweepIds = idsOf(devices);
+        final int[] milliCelsius = new int[devices.length];
+        final Status[] statuses = new Status[devices.length];
+        final long[] timestamps = new long[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            try {
+                final int length = backend.readW1Device(devices[i], buffer);
+                timestamps[i] = System.currentTimeMillis();
+                statuses[i] = parse(buffer, length, milliCelsius, i);
+            } catch (IOException e) {
+                timestamps[i] = System.currentTimeMillis();
+                statuses[i] = Status.READ_ERROR;
+            }
+        }
+        return new Readings(sweepIds, milliCelsius, statuses, timestamps);
+    }
+
+    /**
+     * @return the interned ids of the devices, reusing the array of the previous sweep if they are the same.
+     */
+    private String[] idsOf(W1Device[] devices) {
+        boolean same = ids.length == devices.length;
+        for (int i = 0; same && i < devices.length; i++) {
+            same = ids[i].equals(devices[i].getId());
+        }
+        if (!same) {
+            final String[] newIds = new String[devices.length];
+            for (int i = 0; i < devices.length; i++) {
+                newIds[i] = internedIds.computeIfAbsent(devices[i].getId(), id -> id);
+            }
+            ids = newIds;
+        }
+        return ids;
+    }
+
+    /**
+     * Parses the output of the w1_therm driver, e.g.:
+     *
+     * <pre>
+     * 72 01 4b 46 7f ff 0e 10 57 : crc=57 YES
+     * 72 01 4b 46 7f ff 0e 10 57 t=23125
+     * </pre>
+     *
+     * @param buffer       the output of the driver
+     * @param length       the length of the output
+     * @param milliCelsius where to store the temperature, in thousandths of a degree Celsius
+     * @param index        the index at which to store it
+     * @return whether a temperature was found, and its CRC was valid.
+     */
+    static Status parse(byte[] buffer, int length, int[] milliCelsius, int index) {
+        int eol = 0;
+        while (eol < length && buffer[eol] != '\n') {
+            eol++;
+        }
+        int end = eol;
+        while (end > 0 && (buffer[end - 1] == '\r' || buffer[end - 1] == ' ')) {
+            end--;
+        }
+        if (end < 3 || buffer[end - 3] != 'Y' || buffer[end - 2] != 'E' || buffer[end - 1] != 'S') {
+            return eol < length ? Status.CRC_ERROR : Status.NO_VALUE;
+        }
+        for (int i = eol + 1; i + 1 < length; i++) {
+            if (buffer[i] == 't' && buffer[i + 1] == '=') {
+                int j = i + 2;
+                final boolean negative = j < length && buffer[j] == '-';
+                if (negative) {
+                    j++;
+                }
+                int value = 0;
+                final int digits = j;
+                while (j < length && buffer[j] >= '0' && buffer[j] <= '9') {
+                    value = value * 10 + (buffer[j++] - '0');
+                }
+                if (j == digits) {
+                    return Status.NO_VALUE;
+                }
+                milliCelsius[index] = negative ? -value : value;
+                return Status.OK;
+            }
+        }
+        return Status.NO_VALUE;
+    }
+
+    @Override
+    public void shutdown(List<W1Device> dev) throws IOException {
+        // No shutdown
+    }
+
+}
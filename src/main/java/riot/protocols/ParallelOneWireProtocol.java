@@ -0,0 +1,255 @@
+package riot.protocols;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pi4j.io.w1.W1Device;
+
+import akka.util.Timeout;
+import riot.backends.Backend;
+
+/**
+ * Reads all the OneWire temperature sensors of a family in one sweep, bounded by the time of a single conversion
+ * rather than by the sum of them: a conversion is first triggered on all the sensors at once (see
+ * {@link Backend#triggerW1Conversion()}), then the sensors are read concurrently, on a small pool of threads. If the
+ * backend cannot trigger a simultaneous conversion, each sensor converts when read, and the sweep takes as many
+ * conversions as there are sensors per thread.
+ * <p>
+ * Each sweep reports how long each sensor took to be read, and the protocol keeps running statistics per sensor.
+ */
+public class ParallelOneWireProtocol
+        implements OneWireProtocol<ParallelOneWireProtocol.Command, ParallelOneWireProtocol.Sweep> {
+
+    public enum Command {READ}
+
+    /**
+     * The values read in one sweep, and their timings.
+     */
+    public static final class Sweep {
+        private final Map<String, String> values;
+        private final Map<String, Duration> readTimes;
+        private final Map<String, IOException> failures;
+        private final boolean simultaneous;
+        private final Duration duration;
+
+        Sweep(Map<String, String> values, Map<String, Duration> readTimes, Map<String, IOException> failures,
+              boolean simultaneous, Duration duration) {
+            this.values = Collections.unmodifiableMap(values);
+            this.readTimes = Collections.unmodifiableMap(readTimes);
+            this.failures = Collections.unmodifiableMap(failures);
+            this.simultaneous = simultaneous;
+            this.duration = duration;
+        }
+
+        /**
+         * @return the value of each sensor read successfully (the content of its <code>w1_slave</code> file), by id.
+         */
+        public Map<String, String> getValues() {
+            return values;
+        }
+
+        /**
+         * @return the time from the start of the sweep until each sensor's value was read (or its read failed), by id.
+         */
+        public Map<String, Duration> getReadTimes() {
+            return readTimes;
+        }
+
+        /**
+         * @return the reason why each sensor which could not be read failed, by id.
+         */
+        public Map<String, IOException> getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return true if a conversion was triggered on all the sensors at once.
+         */
+        public boolean isSimultaneous() {
+            return simultaneous;
+        }
+
+        /**
+         * @return the time taken by the whole sweep.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return "Sweep(" + values.size() + " read, " + failures.size() + " failed, in " + duration.toMillis()
+                    + "ms)";
+        }
+    }
+
+    /**
+     * Running statistics of the reads of a sensor.
+     */
+    public static final class SensorStats {
+        private long reads;
+        private long failures;
+        private long totalNanos;
+        private long maxNanos;
+
+        private synchronized void add(long nanos, boolean failed) {
+            reads++;
+            if (failed) {
+                failures++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        /**
+         * @return the number of reads of the sensor, including failed ones.
+         */
+        public synchronized long getReads() {
+            return reads;
+        }
+
+        /**
+         * @return the number of failed reads of the sensor.
+         */
+        public synchronized long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the average time from the start of a sweep until the sensor was read.
+         */
+        public synchronized Duration getMeanReadTime() {
+            return Duration.ofNanos(reads > 0 ? totalNanos / reads : 0);
+        }
+
+        /**
+         * @return the longest time from the start of a sweep until the sensor was read.
+         */
+        public synchronized Duration getMaxReadTime() {
+            return Duration.ofNanos(maxNanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "SensorStats(" + reads + " reads, " + failures + " failed, mean " + getMeanReadTime().toMillis()
+                    + "ms, max " + getMaxReadTime().toMillis() + "ms)";
+        }
+    }
+
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final ThreadPoolExecutor readers;
+    private final Map<String, SensorStats> stats = new ConcurrentHashMap<>();
+    private volatile Backend backend;
+
+    /**
+     * Reads the sensors on 4 threads.
+     */
+    public ParallelOneWireProtocol() {
+        this(4);
+    }
+
+    /**
+     * @param threads the number of sensors read concurrently
+     */
+    public ParallelOneWireProtocol(int threads) {
+        final String prefix = "riot-onewire-reader-" + POOLS.incrementAndGet() + "-";
+        final AtomicInteger count = new AtomicInteger();
+        readers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The threads are only kept while sweeps are made
+        readers.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public ProtocolDescriptor<Command, Sweep> getDescriptor() {
+        // A sweep takes a conversion (750ms for a DS18B20 at full resolution), plus the reads
+        return new ProtocolDescriptor<Command, Sweep>(Command.class, Sweep.class, Timeout.apply(5, TimeUnit.SECONDS))
+                .coalescing(command -> command);
+    }
+
+    @Override
+    public void init(List<W1Device> dev) throws IOException {
+        // No initialisation
+    }
+
+    @Override
+    public void init(List<W1Device> dev, Backend backend) throws IOException {
+        this.backend = backend;
+    }
+
+    @Override
+    public Sweep exec(List<W1Device> dev, Command cmd) throws IOException {
+        final long start = System.nanoTime();
+        // The list may be updated by the device registry during the sweep
+        final List<W1Device> devices = new ArrayList<>(dev);
+        final boolean simultaneous = backend != null && backend.triggerW1Conversion();
+
+        final List<Future<String>> reads = new ArrayList<>(devices.size());
+        final long[] readNanos = new long[devices.size()];
+        for (int i = 0; i < devices.size(); i++) {
+            final W1Device device = devices.get(i);
+            final int index = i;
+            reads.add(readers.submit(() -> {
+                try {
+                    return device.getValue();
+                } finally {
+                    readNanos[index] = System.nanoTime() - start;
+                }
+            }));
+        }
+
+        final Map<String, String> values = new HashMap<>(devices.size());
+        final Map<String, Duration> readTimes = new HashMap<>(devices.size());
+        final Map<String, IOException> failures = new HashMap<>();
+        for (int i = 0; i < devices.size(); i++) {
+            final String id = devices.get(i).getId();
+            boolean failed = false;
+            try {
+                values.put(id, reads.get(i).get());
+            } catch (ExecutionException e) {
+                failed = true;
+                failures.put(id, e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("Unable to read " + id, e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<String> read : reads) {
+                    read.cancel(true);
+                }
+                throw new IOException("Interrupted while reading the OneWire sensors", e);
+            }
+            // Future.get() makes the reader thread's write of the read time visible
+            readTimes.put(id, Duration.ofNanos(readNanos[i]));
+            stats.computeIfAbsent(id, k -> new SensorStats()).add(readNanos[i], failed);
+        }
+        return new Sweep(values, readTimes, failures, simultaneous, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * @return the running statistics of each sensor read so far, by id.
+     */
+    public Map<String, SensorStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Override
+    public void shutdown(List<W1Device> dev) throws IOException {
+        // The reader threads time out once idle, as the protocol may be shared by several actors or stages
+    }
+
+}
@@ -0,0 +1,64 @@
+package riot.protocols;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A buffer taken from a {@link BufferPool}, holding the data produced by a pooled protocol. The data is exposed
+ * through a read-only view, and the buffer must be released once it has been consumed, so that it can be reused. The
+ * data must not be accessed after the buffer has been released.
+ */
+public final class PooledBuffer implements AutoCloseable {
+    private final BufferPool pool;
+    private final byte[] array;
+    private final ByteBuffer view;
+    private final AtomicBoolean released = new AtomicBoolean(true);
+
+    PooledBuffer(BufferPool pool, int capacity) {
+        this.pool = pool;
+        this.array = new byte[capacity];
+        this.view = ByteBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    void acquire(int length) {
+        view.clear().limit(length);
+        released.set(false);
+    }
+
+    byte[] array() {
+        return array;
+    }
+
+    /**
+     * @return a read-only view of the data, positioned at its first byte.
+     * @throws IllegalStateException if the buffer has been released.
+     */
+    public ByteBuffer getData() {
+        if (released.get()) {
+            throw new IllegalStateException("Buffer already released");
+        }
+        view.rewind();
+        return view;
+    }
+
+    /**
+     * @return the number of bytes of data in this buffer.
+     */
+    public int getLength() {
+        return view.limit();
+    }
+
+    /**
+     * Returns this buffer to its pool. Further calls have no effect.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true) && pool != null) {
+            pool.recycle(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
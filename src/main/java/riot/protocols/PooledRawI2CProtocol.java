@@ -0,0 +1,52 @@
+package riot.protocols;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import riot.protocols.RawI2CProtocol.Command;
+
+/**
+ * A variant of the {@link RawI2CProtocol} which reads data into buffers taken from a {@link BufferPool}, rather than
+ * allocating a new array for each result. It accepts the same commands. For a transaction, the bytes read by each of
+ * its commands are stored one after the other in the same buffer. Write commands produce an empty buffer.
+ */
+public class PooledRawI2CProtocol implements I2CProtocol<Command, PooledBuffer> {
+    private final BufferPool pool;
+
+    public PooledRawI2CProtocol(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public ProtocolDescriptor<Command, PooledBuffer> getDescriptor() {
+        return new ProtocolDescriptor<Command, PooledBuffer>(Command.class, PooledBuffer.class);
+    }
+
+    @Override
+    public void init(I2CDevice dev) throws IOException {
+        // No initialisation
+    }
+
+    @Override
+    public PooledBuffer exec(I2CDevice dev, Command message) throws IOException {
+        final PooledBuffer buffer = pool.acquire(RawI2CProtocol.readLength(message));
+        try {
+            RawI2CProtocol.execInto(dev, message, buffer.array(), 0);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown(I2CDevice dev) throws IOException {
+        // No shutdown
+    }
+
+}
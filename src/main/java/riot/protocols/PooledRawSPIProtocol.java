@@ -0,0 +1,67 @@
+package riot.protocols;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.pi4j.io.spi.SpiDevice;
+
+import riot.backends.InPlaceSpiDevice;
+
+/**
+ * A variant of the {@link RawSPIProtocol} which accepts the bytes to send as a {@link ByteBuffer}, and returns the
+ * bytes received in a buffer taken from a {@link BufferPool}. The remaining bytes of the message are sent, and its
+ * position is left unchanged. With devices which support it, the transfer happens in place in the pooled buffer, so
+ * that no array is allocated.
+ */
+public class PooledRawSPIProtocol implements SPIProtocol<ByteBuffer, PooledBuffer> {
+    private final BufferPool pool;
+
+    public PooledRawSPIProtocol(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public ProtocolDescriptor<ByteBuffer, PooledBuffer> getDescriptor() {
+        return new ProtocolDescriptor<ByteBuffer, PooledBuffer>(ByteBuffer.class, PooledBuffer.class);
+    }
+
+    @Override
+    public void init(SpiDevice dev) throws IOException {
+        // No initialisation
+    }
+
+    @Override
+    public PooledBuffer exec(SpiDevice dev, ByteBuffer message) throws IOException {
+        final int length = message.remaining();
+        final PooledBuffer buffer = pool.acquire(length);
+        final byte[] data = buffer.array();
+        try {
+            if (message.hasArray()) {
+                System.arraycopy(message.array(), message.arrayOffset() + message.position(), data, 0, length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    data[i] = message.get(message.position() + i);
+                }
+            }
+            if (dev instanceof InPlaceSpiDevice) {
+                ((InPlaceSpiDevice) dev).transfer(data, length);
+            } else {
+                System.arraycopy(dev.write(data, 0, length), 0, data, 0, length);
+            }
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown(SpiDevice dev) throws IOException {
+        // No shutdown
+    }
+
+}
@@ -1,6 +1,7 @@
 package riot.protocols;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import akka.util.Timeout;
 
@@ -8,17 +9,35 @@ public class ProtocolDescriptor<I, O> {
     private final Class<I> inputMessageType;
     private final Class<O> outputMessageType;
     private final Timeout timeout;
+    private final Function<? super I, ?> coalescingKey;
 
     public ProtocolDescriptor(Class<I> inputMessageType, Class<O> outputMessageType) {
-        this.inputMessageType = inputMessageType;
-        this.outputMessageType = outputMessageType;
-        this.timeout = Timeout.apply(1, TimeUnit.SECONDS);
+        this(inputMessageType, outputMessageType, Timeout.apply(1, TimeUnit.SECONDS));
     }
 
     public ProtocolDescriptor(Class<I> inputMessageType, Class<O> outputMessageType, Timeout timeout) {
+        this(inputMessageType, outputMessageType, timeout, null);
+    }
+
+    private ProtocolDescriptor(Class<I> inputMessageType, Class<O> outputMessageType, Timeout timeout,
+                               Function<? super I, ?> coalescingKey) {
         this.inputMessageType = inputMessageType;
         this.outputMessageType = outputMessageType;
         this.timeout = timeout;
+        this.coalescingKey = coalescingKey;
+    }
+
+    /**
+     * Declares which messages only read from the device, and can therefore be answered by a single execution of the
+     * protocol when they are received at the same time. The key function returns an object identifying the read, with
+     * which identical reads are equal, or null for messages which must always be executed (e.g. writes). The output
+     * messages of coalesced reads are sent to several recipients, and should therefore be immutable.
+     *
+     * @param key the function computing the key of a message
+     * @return a copy of this descriptor, with the key function.
+     */
+    public ProtocolDescriptor<I, O> coalescing(Function<? super I, ?> key) {
+        return new ProtocolDescriptor<>(inputMessageType, outputMessageType, timeout, key);
     }
 
     public Class<I> getInputMessageType() {
@@ -32,4 +51,19 @@ public class ProtocolDescriptor<I, O> {
     public Timeout getTimeout() {
         return timeout;
     }
+
+    /**
+     * @return true if the descriptor declares which messages are reads that can be coalesced.
+     */
+    public boolean isCoalescing() {
+        return coalescingKey != null;
+    }
+
+    /**
+     * @param message an input message
+     * @return the key identifying the read made by the message, or null if it cannot be coalesced with others.
+     */
+    public Object getCoalescingKey(I message) {
+        return coalescingKey != null ? coalescingKey.apply(message) : null;
+    }
 }
@@ -3,9 +3,16 @@ package riot.protocols;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 import com.pi4j.io.i2c.I2CDevice;
 
+import riot.backends.LockingI2CDevice;
 import riot.protocols.RawI2CProtocol.Command;
 import riot.protocols.RawI2CProtocol.Result;
 
@@ -13,19 +20,43 @@ public class RawI2CProtocol implements I2CProtocol<Command, Result> {
 
     public static class Command {
         private enum CommandType {
-            READ, WRITE
+            READ, WRITE, WRITE_READ, TRANSACTION
         }
 
         private final CommandType type;
         private final int address;
         private final int length;
         private final byte[] payload;
+        private final List<Command> steps;
 
         private Command(CommandType type, int address, int length, byte[] payload) {
+            this(type, address, length, payload, Collections.emptyList());
+        }
+
+        private Command(CommandType type, int address, int length, byte[] payload, List<Command> steps) {
             this.type = type;
             this.address = address;
             this.length = length;
             this.payload = payload;
+            this.steps = steps;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Command)) {
+                return false;
+            }
+            final Command other = (Command) o;
+            return type == other.type && address == other.address && length == other.length
+                    && Arrays.equals(payload, other.payload) && steps.equals(other.steps);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, address, length, Arrays.hashCode(payload), steps);
         }
 
         public static Command read(int address, int length) {
@@ -35,27 +66,169 @@ public class RawI2CProtocol implements I2CProtocol<Command, Result> {
         public static Command write(int address, byte... data) {
             return new Command(CommandType.WRITE, address, data.length, data);
         }
+
+        /**
+         * Writes the bytes passed (typically a register address) then, after a repeated start condition, reads the
+         * specified number of bytes. The bus is not released in between, so devices which reset their register
+         * pointer on a stop condition can be read this way.
+         *
+         * @param data   the bytes to write
+         * @param length the number of bytes to read
+         * @return the command.
+         */
+        public static Command writeRead(byte[] data, int length) {
+            return new Command(CommandType.WRITE_READ, -1, length, data.clone());
+        }
+
+        /**
+         * Runs the commands passed one after the other, while holding the bus lock. No other command can be sent on
+         * the bus in between, even to another device. The result holds one step per command. This requires the device
+         * to be a {@link LockingI2CDevice}, as those of RIoT's backends are: other devices can only be locked
+         * individually, so that only the commands sent to the same device object are held back.
+         *
+         * @param steps the commands to run
+         * @return the command.
+         */
+        public static Command transaction(Command... steps) {
+            return transaction(Arrays.asList(steps));
+        }
+
+        /**
+         * @param steps the commands to run
+         * @return the command.
+         * @see #transaction(Command...)
+         */
+        public static Command transaction(List<Command> steps) {
+            return new Command(CommandType.TRANSACTION, -1, steps.size(), null,
+                    Collections.unmodifiableList(new ArrayList<>(steps)));
+        }
+    }
+
+    /**
+     * Builds a transaction step by step, e.g. to read several non-contiguous registers in one go:
+     *
+     * <pre>
+     * Command cmd = new Transaction().read(0x0F, 1).read(0x28, 6).write(0x20, (byte) 0x57).build();
+     * </pre>
+     */
+    public static class Transaction {
+        private final List<Command> steps = new ArrayList<>();
+
+        public Transaction read(int address, int length) {
+            return step(Command.read(address, length));
+        }
+
+        public Transaction write(int address, byte... data) {
+            return step(Command.write(address, data));
+        }
+
+        public Transaction writeRead(byte[] data, int length) {
+            return step(Command.writeRead(data, length));
+        }
+
+        public Transaction step(Command command) {
+            steps.add(command);
+            return this;
+        }
+
+        public Command build() {
+            return Command.transaction(steps);
+        }
     }
 
     public static class Result {
         private final byte[] payload;
+        private final List<Result> steps;
 
         private Result() {
-            this.payload = new byte[0];
+            this(0);
         }
 
         private Result(int length) {
             this.payload = new byte[length];
+            this.steps = Collections.emptyList();
+        }
+
+        private Result(byte[] payload) {
+            this.payload = payload;
+            this.steps = Collections.emptyList();
+        }
+
+        private Result(List<Result> steps) {
+            this.payload = new byte[0];
+            this.steps = Collections.unmodifiableList(steps);
+        }
+
+        /**
+         * @param data the bytes read, which are copied
+         * @return the result of a read, e.g. to replay a recording.
+         */
+        public static Result of(byte[] data) {
+            return new Result(data.clone());
+        }
+
+        /**
+         * @param steps the results of each command of a transaction
+         * @return the result of a transaction, e.g. to replay a recording.
+         */
+        public static Result of(List<Result> steps) {
+            return new Result(new ArrayList<>(steps));
         }
 
         public InputStream getData() {
             return new ByteArrayInputStream(payload);
         }
+
+        /**
+         * @return the number of bytes read; 0 for transactions, whose data is in their steps.
+         */
+        public int getLength() {
+            return payload.length;
+        }
+
+        /**
+         * Copies the bytes read to a buffer, without going through a stream.
+         *
+         * @param out the buffer, written from its position on
+         */
+        public void copyTo(ByteBuffer out) {
+            out.put(payload);
+        }
+
+        /**
+         * @return the results of each command of a transaction, in order; an empty list for other commands.
+         */
+        public List<Result> getSteps() {
+            return steps;
+        }
     }
 
     @Override
     public ProtocolDescriptor<Command, Result> getDescriptor() {
-        return new ProtocolDescriptor<Command, Result>(Command.class, Result.class);
+        return new ProtocolDescriptor<Command, Result>(Command.class, Result.class)
+                .coalescing(RawI2CProtocol::readKey);
+    }
+
+    /**
+     * Reads, write-reads which only write a register address, and transactions made only of those, can be coalesced.
+     * Longer writes may have side effects (e.g. starting a conversion), as in {@link CachingI2CDevice}.
+     */
+    private static Command readKey(Command message) {
+        switch (message.type) {
+            case READ:
+                return message;
+            case WRITE_READ:
+                return message.payload.length == 1 ? message : null;
+            case TRANSACTION:
+                for (Command step : message.steps) {
+                    if (readKey(step) == null) {
+                        return null;
+                    }
+                }
+                return message;
+            default:
+                return null;
+        }
     }
 
     @Override
@@ -65,19 +238,95 @@ public class RawI2CProtocol implements I2CProtocol<Command, Result> {
 
     @Override
     public Result exec(I2CDevice dev, Command message) throws IOException {
+        Result res;
         switch (message.type) {
             case READ:
-                Result res = new Result(message.length);
+                res = new Result(message.length);
                 dev.read(message.address, res.payload, 0, message.length);
                 return res;
             case WRITE:
                 dev.write(message.address, message.payload);
                 return new Result();
+            case WRITE_READ:
+                res = new Result(message.length);
+                dev.read(message.payload, 0, message.payload.length, res.payload, 0, message.length);
+                return res;
+            case TRANSACTION:
+                if (dev instanceof LockingI2CDevice) {
+                    return ((LockingI2CDevice) dev).runLocked(d -> execSteps(d, message.steps));
+                }
+                // Without access to the bus, this only excludes other users of the same device object
+                synchronized (dev) {
+                    return execSteps(dev, message.steps);
+                }
+            default:
+                throw new AssertionError(); // Unreachable!
+        }
+    }
+
+    private Result execSteps(I2CDevice dev, List<Command> steps) throws IOException {
+        final List<Result> results = new ArrayList<>(steps.size());
+        for (Command step : steps) {
+            results.add(exec(dev, step));
+        }
+        return new Result(results);
+    }
+
+    /**
+     * @return the number of bytes the command reads, including those read by the steps of a transaction.
+     */
+    static int readLength(Command message) {
+        switch (message.type) {
+            case WRITE:
+                return 0;
+            case TRANSACTION:
+                int length = 0;
+                for (Command step : message.steps) {
+                    length += readLength(step);
+                }
+                return length;
+            default:
+                return message.length;
+        }
+    }
+
+    /**
+     * Runs the command, storing the bytes it reads in the array passed, from the offset on.
+     *
+     * @return the number of bytes read.
+     */
+    static int execInto(I2CDevice dev, Command message, byte[] data, int offset) throws IOException {
+        switch (message.type) {
+            case READ:
+                dev.read(message.address, data, offset, message.length);
+                return message.length;
+            case WRITE:
+                dev.write(message.address, message.payload);
+                return 0;
+            case WRITE_READ:
+                dev.read(message.payload, 0, message.payload.length, data, offset, message.length);
+                return message.length;
+            case TRANSACTION:
+                if (dev instanceof LockingI2CDevice) {
+                    return ((LockingI2CDevice) dev).runLocked(d -> execStepsInto(d, message.steps, data, offset));
+                }
+                // Without access to the bus, this only excludes other users of the same device object
+                synchronized (dev) {
+                    return execStepsInto(dev, message.steps, data, offset);
+                }
             default:
                 throw new AssertionError(); // Unreachable!
         }
     }
 
+    private static int execStepsInto(I2CDevice dev, List<Command> steps, byte[] data, int offset) throws IOException {
+        int read = 0;
+        for (Command step : steps) {
+            read += execInto(dev, step, data, offset + read);
+        }
+        return read;
+    }
+
     @Override
     public void shutdown(I2CDevice dev) throws IOException {
         // No shutdown
@@ -7,6 +7,7 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,8 @@ public class RawOneWireProtocol implements OneWireProtocol<RawOneWireProtocol.Co
 
     @Override
     public ProtocolDescriptor<RawOneWireProtocol.Command, Map> getDescriptor() {
-        return new ProtocolDescriptor<RawOneWireProtocol.Command, Map>(RawOneWireProtocol.Command.class, Map.class);
+        return new ProtocolDescriptor<RawOneWireProtocol.Command, Map>(RawOneWireProtocol.Command.class, Map.class)
+                .coalescing(command -> command);
     }
 
     @Override
@@ -31,7 +33,8 @@ public class RawOneWireProtocol implements OneWireProtocol<RawOneWireProtocol.Co
         for (W1Device device : devices) {
             results.put(device.getId(), device.getValue());
         }
-        return results;
+        // The same result can be sent to several recipients when reads are coalesced
+        return Collections.unmodifiableMap(results);
     }
 
     @Override
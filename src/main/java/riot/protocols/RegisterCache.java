@@ -0,0 +1,238 @@
+package riot.protocols;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+/**
+ * A write-through cache of the 8-bit registers of an I2C device, which serves reads of registers that rarely change
+ * without a bus transaction. Registers are volatile (never cached) unless declared otherwise:
+ * <ul>
+ * <li>cacheable registers are cached when read or written, until they are written again, or for a limited time;</li>
+ * <li>write-only registers are served from the value last written, as they cannot be read back from the device;</li>
+ * <li>writing to a register can invalidate the cached values of others, e.g. when writing to a reset or mode register
+ * changes the content of configuration registers.</li>
+ * </ul>
+ * Writes which do not address a register (e.g. raw writes of a register pointer) invalidate the whole cache, as their
+ * effect cannot be known. The cache is shared by all the streams components and actors created from the same
+ * configuration.
+ *
+ * @see I2CProtocol#declareRegisters(RegisterCache)
+ */
+public class RegisterCache {
+    static final int REGISTERS = 256;
+    private static final long FOREVER = Long.MAX_VALUE;
+
+    private enum Policy {
+        VOLATILE, CACHEABLE, WRITE_ONLY
+    }
+
+    private final Policy[] policies = new Policy[REGISTERS];
+    private final long[] ttls = new long[REGISTERS];
+    private final int[][] invalidations = new int[REGISTERS][];
+
+    private final byte[] values = new byte[REGISTERS];
+    private final long[] expiries = new long[REGISTERS];
+    private final boolean[] valid = new boolean[REGISTERS];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    public RegisterCache() {
+        Arrays.fill(policies, Policy.VOLATILE);
+    }
+
+    /**
+     * Declares registers which are cached until they are written again, e.g. configuration registers.
+     *
+     * @param registers the registers
+     * @return this cache (for chaining).
+     */
+    public RegisterCache cacheable(int... registers) {
+        return declare(Policy.CACHEABLE, FOREVER, registers);
+    }
+
+    /**
+     * Declares registers which are cached for a limited time, e.g. status registers which change slowly.
+     *
+     * @param ttl       the time after which a cached value is read from the device again
+     * @param registers the registers
+     * @return this cache (for chaining).
+     */
+    public RegisterCache cacheable(Duration ttl, int... registers) {
+        return declare(Policy.CACHEABLE, ttl.toNanos(), registers);
+    }
+
+    /**
+     * Declares registers which are never cached, e.g. measurement or interrupt registers. This is the default.
+     *
+     * @param registers the registers
+     * @return this cache (for chaining).
+     */
+    public RegisterCache volatileRegisters(int... registers) {
+        return declare(Policy.VOLATILE, 0, registers);
+    }
+
+    /**
+     * Declares registers which cannot be read back from the device. Once written, reads return the value written.
+     *
+     * @param registers the registers
+     * @return this cache (for chaining).
+     */
+    public RegisterCache writeOnly(int... registers) {
+        return declare(Policy.WRITE_ONLY, FOREVER, registers);
+    }
+
+    /**
+     * Declares that writing to a register changes the content of others, whose cached values are then discarded.
+     *
+     * @param register    the register written
+     * @param invalidated the registers whose cached values become invalid
+     * @return this cache (for chaining).
+     */
+    public synchronized RegisterCache invalidatesOnWrite(int register, int... invalidated) {
+        invalidations[checked(register)] = Arrays.stream(invalidated).map(RegisterCache::checked).toArray();
+        return this;
+    }
+
+    private synchronized RegisterCache declare(Policy policy, long ttl, int... registers) {
+        for (int register : registers) {
+            policies[checked(register)] = policy;
+            ttls[register] = ttl;
+            valid[register] = false;
+        }
+        return this;
+    }
+
+    private static int checked(int register) {
+        if (register < 0 || register >= REGISTERS) {
+            throw new IllegalArgumentException("Not an 8-bit register: " + register);
+        }
+        return register;
+    }
+
+    /**
+     * @return the number of reads served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads of cacheable or write-only registers which needed a bus transaction.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of cached values discarded before expiring, because of a write.
+     */
+    public long getInvalidations() {
+        return invalidated.get();
+    }
+
+    /**
+     * Discards all cached values.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (valid[i]) {
+                valid[i] = false;
+                invalidated.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param dev an I2C device
+     * @return a device that reads and writes through this cache.
+     */
+    public I2CDevice wrap(I2CDevice dev) {
+        return new CachingI2CDevice(dev, this);
+    }
+
+    /*
+     * Used by the caching device, while synchronized on this cache
+     */
+
+    /**
+     * @return true if all the registers of the range are cached, in which case their values are copied to the buffer.
+     */
+    boolean lookup(int register, byte[] buffer, int offset, int size) {
+        if (register < 0 || register + size > REGISTERS || size == 0) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        for (int i = register; i < register + size; i++) {
+            if (policies[i] == Policy.VOLATILE) {
+                return false;
+            }
+            if (!valid[i] || (expiries[i] != FOREVER && now - expiries[i] > 0)) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            buffer[offset + i] = values[register + i];
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores the values of a range of registers read from the device. Write-only registers are not updated: instead,
+     * their cached values replace what was read, if any.
+     */
+    void read(int register, byte[] buffer, int offset, int size) {
+        if (register < 0 || register + size > REGISTERS) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            final int r = register + i;
+            if (policies[r] == Policy.CACHEABLE) {
+                store(r, buffer[offset + i], now);
+            } else if (policies[r] == Policy.WRITE_ONLY && valid[r]) {
+                buffer[offset + i] = values[r];
+            }
+        }
+    }
+
+    /**
+     * Stores the values of a range of registers written to the device, and discards those they invalidate.
+     */
+    void written(int register, byte[] buffer, int offset, int size) {
+        if (register < 0 || register + size > REGISTERS) {
+            clear();
+            return;
+        }
+        final long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            final int r = register + i;
+            if (invalidations[r] != null) {
+                for (int other : invalidations[r]) {
+                    if (valid[other]) {
+                        valid[other] = false;
+                        invalidated.incrementAndGet();
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            final int r = register + i;
+            if (policies[r] != Policy.VOLATILE) {
+                store(r, buffer[offset + i], now);
+            }
+        }
+    }
+
+    private void store(int register, byte value, long now) {
+        values[register] = value;
+        valid[register] = true;
+        expiries[register] = ttls[register] == FOREVER ? FOREVER : now + ttls[register];
+    }
+}
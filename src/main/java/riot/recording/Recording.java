@@ -0,0 +1,223 @@
+package riot.recording;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.CompletionStage;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import riot.stages.RecorderStage;
+import riot.stages.ReplayStage;
+
+/**
+ * An append-only binary log of the elements of a stream, e.g. the readings of a sensor or the states of an input pin,
+ * each with the time it was recorded. A recording is stored in a directory, as a series of segment files of a fixed
+ * size, which are mapped in memory; each has an index of the time of its records, so that the records of a time range
+ * can be read back without scanning the whole recording. Elements are converted to and from bytes by a
+ * {@link SampleCodec}.
+ * <p>
+ * A recording is written by a {@link RecordingWriter}, or by the sink returned by {@link #asSink()}:
+ *
+ * <pre>
+ * Recording&lt;GPIO.State&gt; recording = Recording.in(Paths.get("logs/button"), SampleCodecs.states());
+ * GPIO.in(2).asSource().runWith(recording.asSink(), mat);
+ * </pre>
+ * <p>
+ * and replayed, in real time or faster, by the source returned by {@link #asSource(Replay)}:
+ *
+ * <pre>
+ * recording.asSource(Replay.atSpeed(100)).runWith(analytics, mat);
+ * </pre>
+ *
+ * @param <T> the type of the elements recorded
+ */
+public final class Recording<T> {
+    /**
+     * The default size of a segment: 16MiB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default number of bytes of records between two entries of a segment's index: 4KiB.
+     */
+    public static final int DEFAULT_INDEX_INTERVAL = 4 * 1024;
+
+    private static final int MIN_SEGMENT_SIZE = 4 * 1024;
+
+    private final Path directory;
+    private final SampleCodec<T> codec;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int indexInterval = DEFAULT_INDEX_INTERVAL;
+
+    private Recording(Path directory, SampleCodec<T> codec) {
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    /**
+     * @param directory the directory holding the recording, created if needed
+     * @param codec     the codec converting the elements to and from bytes
+     * @param <T>       the type of the elements recorded
+     * @return a recording in that directory.
+     */
+    public static <T> Recording<T> in(Path directory, SampleCodec<T> codec) {
+        if (codec.getId().getBytes(StandardCharsets.UTF_8).length > Segment.MAX_CODEC_ID_LENGTH) {
+            throw new IllegalArgumentException("Codec id longer than " + Segment.MAX_CODEC_ID_LENGTH + " bytes: "
+                    + codec.getId());
+        }
+        return new Recording<>(directory, codec);
+    }
+
+    /**
+     * Sets the size of the segments written from now on. Larger segments are allocated less often, but each takes
+     * longer to allocate.
+     *
+     * @param bytes the size of a segment, at least 4KiB
+     * @return this Recording instance (for chaining).
+     */
+    public Recording<T> withSegmentSize(int bytes) {
+        if (bytes < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segments must be at least " + MIN_SEGMENT_SIZE + " bytes: " + bytes);
+        }
+        this.segmentSize = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes of records between two entries of the index of the segments written from now on. A
+     * smaller interval makes the start of a time range quicker to find, at the cost of a larger index.
+     *
+     * @param bytes the number of bytes between index entries
+     * @return this Recording instance (for chaining).
+     */
+    public Recording<T> withIndexInterval(int bytes) {
+        if (bytes < 1) {
+            throw new IllegalArgumentException("Invalid index interval: " + bytes);
+        }
+        this.indexInterval = bytes;
+        return this;
+    }
+
+    /**
+     * @return the directory holding the recording.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the codec converting the elements to and from bytes.
+     */
+    public SampleCodec<T> getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return the size of the segments written.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the number of bytes of records between two entries of a segment's index.
+     */
+    public int getIndexInterval() {
+        return indexInterval;
+    }
+
+    /**
+     * Opens a writer appending to this recording. Only one writer should append to a recording at a time.
+     *
+     * @return the writer, which must be closed once done.
+     * @throws IOException if the first segment cannot be allocated
+     */
+    public RecordingWriter<T> openWriter() throws IOException {
+        return new RecordingWriter<>(this);
+    }
+
+    /**
+     * @return an iterator over all the elements recorded, in the order they were recorded.
+     * @throws IOException if the recording cannot be read
+     */
+    public Iterator<Sample<T>> read() throws IOException {
+        return new RecordingReader<>(this, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the elements recorded in a time range. Segments are read as the iterator advances; an
+     * {@link java.io.UncheckedIOException} is thrown if one cannot be read.
+     *
+     * @param from the start of the range, inclusive
+     * @param to   the end of the range, exclusive
+     * @return an iterator over the elements recorded in that range, in the order they were recorded.
+     * @throws IOException if the recording cannot be read
+     */
+    public Iterator<Sample<T>> read(Instant from, Instant to) throws IOException {
+        return new RecordingReader<>(this, toEpochNanos(from), toEpochNanos(to));
+    }
+
+    /**
+     * Creates a sink appending the elements it receives to this recording, each timestamped with the time it was
+     * received. The sink materializes to the number of elements recorded, once they are written to the storage
+     * device after the stream completes.
+     *
+     * @return the sink.
+     */
+    public Sink<T, CompletionStage<Long>> asSink() {
+        return Sink.fromGraph(new RecorderStage<>(this));
+    }
+
+    /**
+     * Creates a source replaying all the elements recorded, e.g. to test or benchmark a stream without the hardware
+     * it reads, in place of a GPIO input's or a device's source. The recording is read when the stream starts.
+     *
+     * @param replay how the elements are paced
+     * @return the source.
+     */
+    public Source<T, NotUsed> asSource(Replay replay) {
+        return asSource(replay, Instant.MIN, Instant.MAX);
+    }
+
+    /**
+     * Creates a source replaying the elements recorded in a time range.
+     *
+     * @param replay how the elements are paced
+     * @param from   the start of the range, inclusive
+     * @param to     the end of the range, exclusive
+     * @return the source.
+     */
+    public Source<T, NotUsed> asSource(Replay replay, Instant from, Instant to) {
+        return Source.fromGraph(new ReplayStage<>(this, replay, from, to));
+    }
+
+    /**
+     * Creates a flow replying to each element it receives with the next element recorded, in place of a device's
+     * flow: a stream sending commands to a device, and recorded with {@link #asSink()} after the device's flow, can
+     * be run again without the device. The flow completes when all the elements recorded were emitted.
+     *
+     * @param <I> the type of the elements received, which are ignored
+     * @return the flow.
+     */
+    public <I> Flow<I, T, NotUsed> asFlow() {
+        return Flow.<I>create().zipWith(asSource(Replay.asFastAsPossible()), (command, recorded) -> recorded);
+    }
+
+    static long toEpochNanos(Instant instant) {
+        try {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Recording(" + directory + ", " + codec.getId() + ")";
+    }
+}
@@ -0,0 +1,113 @@
+package riot.recording;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the elements of a recording recorded in a time range. The segment holding the start of the range is
+ * found by bisection on the first timestamp of each segment, and the first record in the range by bisection on the
+ * segment's index, then by scanning at most an index interval of records.
+ *
+ * @param <T> the type of the elements recorded
+ */
+final class RecordingReader<T> implements Iterator<Sample<T>> {
+    private final Path directory;
+    private final SampleCodec<T> codec;
+    private final List<Path> files;
+    private final long from;
+    private final long to;
+    private int nextFile;
+    private ByteBuffer records;
+    private int position;
+    private Sample<T> next;
+    private boolean done;
+
+    RecordingReader(Recording<T> recording, long from, long to) throws IOException {
+        this.directory = recording.getDirectory();
+        this.codec = recording.getCodec();
+        this.files = Segment.list(directory);
+        this.from = from;
+        this.to = to;
+        int low = 0;
+        int high = files.size() - 1;
+        Segment start = null;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final Segment segment = Segment.open(files.get(mid), codec.getId());
+            if (segment.getFirstTimestamp() <= from) {
+                start = segment;
+                nextFile = mid + 1;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (start != null) {
+            records = start.getRecords().duplicate();
+            position = start.seek(from);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            next = advance();
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Sample<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Sample<T> sample = next;
+        next = null;
+        return sample;
+    }
+
+    private Sample<T> advance() {
+        while (true) {
+            if (records == null) {
+                if (nextFile == files.size()) {
+                    return null;
+                }
+                try {
+                    records = Segment.open(files.get(nextFile++), codec.getId()).getRecords().duplicate();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                position = Segment.HEADER_SIZE;
+            }
+            final int start = position;
+            final int size = start + Segment.RECORD_HEADER_SIZE > records.capacity() ? 0 : records.getInt(start);
+            if (size == 0) {
+                records = null;
+                continue;
+            }
+            final long timestamp = records.getLong(start + 4);
+            position = start + size;
+            if (timestamp >= to) {
+                return null;
+            }
+            if (timestamp >= from) {
+                records.limit(start + size);
+                records.position(start + Segment.RECORD_HEADER_SIZE);
+                final T value = codec.decode(records);
+                records.limit(records.capacity());
+                return new Sample<>(timestamp, value);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingReader(" + directory + ")";
+    }
+}
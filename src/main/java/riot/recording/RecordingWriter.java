@@ -0,0 +1,257 @@
+package riot.recording;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends elements to a {@link Recording}, each with the time it was appended, in a new segment after the existing
+ * ones. Appending an element only copies it to the mapped segment: the next segment is allocated by a background thread
+ * once the current one is half full, and a full segment is written to the storage device by that thread too, so that
+ * the cost of an append stays the same on slow storage, such as an SD card, unless the next segment could not be
+ * allocated in time (see {@link #getStalls()}).
+ * <p>
+ * A writer must only be used by one thread at a time. Its counters can be read from any thread.
+ *
+ * @param <T> the type of the elements recorded
+ */
+public final class RecordingWriter<T> implements AutoCloseable {
+    private final Path directory;
+    private final SampleCodec<T> codec;
+    private final int segmentSize;
+    private final int indexInterval;
+    private final ExecutorService allocator;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+
+    private Segment segment;
+    private ByteBuffer records;
+    private int position;
+    private int indexSize;
+    private int lastIndexed;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long nextSequence;
+    private Future<Segment> next;
+    private boolean closed;
+
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+
+    RecordingWriter(Recording<T> recording) throws IOException {
+        this.directory = recording.getDirectory();
+        this.codec = recording.getCodec();
+        this.segmentSize = recording.getSegmentSize();
+        this.indexInterval = recording.getIndexInterval();
+        Files.createDirectories(directory);
+        final List<Path> existing = Segment.list(directory);
+        this.nextSequence = existing.isEmpty() ? 0 : Segment.sequenceOf(existing.get(existing.size() - 1)) + 1;
+        this.allocator = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "riot-recorder-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.startEpochNanos = Recording.toEpochNanos(Instant.now());
+        this.startNanoTime = System.nanoTime();
+        try {
+            use(Segment.create(directory, nextSequence++, codec.getId(), segmentSize, indexInterval));
+        } catch (IOException e) {
+            allocator.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an element, timestamped with the current time.
+     *
+     * @param value the element
+     * @throws IOException if a new segment cannot be allocated
+     */
+    public void append(T value) throws IOException {
+        append(startEpochNanos + (System.nanoTime() - startNanoTime), value);
+    }
+
+    /**
+     * Appends an element with the timestamp passed, e.g. to record the time a reading was taken rather than the time
+     * it was received.
+     *
+     * @param epochNanos the time of the element, in nanoseconds since the epoch, no earlier than the time of the
+     *                   previous one
+     * @param value      the element
+     * @throws IOException if a new segment cannot be allocated
+     */
+    public void append(long epochNanos, T value) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The recording in " + directory + " is closed");
+        }
+        if (epochNanos < lastTimestamp) {
+            throw new IllegalArgumentException("Timestamps must not decrease: " + epochNanos + " < " + lastTimestamp);
+        }
+        int size = write(epochNanos, value);
+        if (size < 0) {
+            roll();
+            size = write(epochNanos, value);
+            if (size < 0) {
+                throw new IllegalArgumentException("The element does not fit in a segment of " + segmentSize
+                        + " bytes: " + value);
+            }
+        }
+        lastTimestamp = epochNanos;
+        samples.lazySet(samples.get() + 1);
+        bytes.lazySet(bytes.get() + size);
+    }
+
+    /**
+     * @return the size of the record written, or -1 if it did not fit in the current segment.
+     */
+    private int write(long epochNanos, T value) {
+        final int start = position;
+        if (start + Segment.RECORD_HEADER_SIZE > records.capacity()) {
+            return -1;
+        }
+        records.limit(records.capacity());
+        records.position(start + Segment.RECORD_HEADER_SIZE);
+        try {
+            codec.encode(value, records);
+        } catch (BufferOverflowException e) {
+            // The size of the record is still 0, so the bytes written are ignored by readers
+            return -1;
+        }
+        final int size = records.position() - start;
+        records.putLong(start + 4, epochNanos);
+        if ((indexSize == 0 || start - lastIndexed >= indexInterval) && indexSize < segment.getIndexCapacity()) {
+            segment.setIndexEntry(indexSize++, epochNanos, start);
+            lastIndexed = start;
+        }
+        // Written last, so that readers never see a partial record
+        records.putInt(start, size);
+        position = start + size;
+        if (next == null && position > records.capacity() / 2) {
+            allocateNext();
+        }
+        return size;
+    }
+
+    private void allocateNext() {
+        final long sequence = nextSequence++;
+        next = allocator.submit(() -> Segment.create(directory, sequence, codec.getId(), segmentSize, indexInterval));
+    }
+
+    private void roll() throws IOException {
+        if (next == null) {
+            allocateNext();
+        }
+        if (!next.isDone()) {
+            stalls.lazySet(stalls.get() + 1);
+        }
+        final Segment full = segment;
+        final Segment allocated = await(next);
+        next = null;
+        use(allocated);
+        allocator.execute(full::force);
+    }
+
+    private void use(Segment allocated) {
+        segment = allocated;
+        records = allocated.getRecords();
+        position = Segment.HEADER_SIZE;
+        indexSize = 0;
+        lastIndexed = 0;
+        segments.lazySet(segments.get() + 1);
+    }
+
+    private static Segment await(Future<Segment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while allocating a segment");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to allocate a segment", e.getCause());
+        }
+    }
+
+    /**
+     * Writes the elements appended so far to the storage device. This blocks until they are written.
+     */
+    public void flush() {
+        segment.force();
+    }
+
+    /**
+     * Writes the elements appended to the storage device, and deletes the next segment if it was allocated already.
+     *
+     * @throws IOException if the next segment cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            segment.force();
+            if (next != null) {
+                await(next).delete();
+            }
+        } finally {
+            allocator.shutdown();
+            try {
+                // Let the previous segment be written out
+                allocator.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of elements appended.
+     */
+    public long getSamples() {
+        return samples.get();
+    }
+
+    /**
+     * @return the number of bytes appended, record headers included.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return the number of segments written to by this writer.
+     */
+    public long getSegments() {
+        return segments.get();
+    }
+
+    /**
+     * @return the number of times an append waited for the next segment to be allocated. If this grows, the segments
+     * are too small for the rate of the stream and the speed of the storage device.
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecordingWriter(%s: %d samples, %d bytes, %d segments, %d stalls)", directory,
+                getSamples(), getBytes(), getSegments(), getStalls());
+    }
+}
@@ -0,0 +1,60 @@
+package riot.recording;
+
+/**
+ * How the elements of a {@link Recording} are paced when replayed: at the rate they were recorded, at a multiple of
+ * that rate, or as fast as the stream takes them.
+ *
+ * @see Recording#asSource(Replay)
+ */
+public final class Replay {
+    private final double speed;
+
+    private Replay(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return elements emitted with the intervals they were recorded with.
+     */
+    public static Replay realTime() {
+        return new Replay(1);
+    }
+
+    /**
+     * @param factor how many times faster than they were recorded the elements are emitted, e.g. 100 to replay an
+     *               hour's recording in 36 seconds
+     * @return elements emitted with their recorded intervals divided by the factor.
+     */
+    public static Replay atSpeed(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("Invalid speed: " + factor);
+        }
+        return new Replay(factor);
+    }
+
+    /**
+     * @return elements emitted as soon as they are demanded.
+     */
+    public static Replay asFastAsPossible() {
+        return new Replay(0);
+    }
+
+    /**
+     * @return how many times faster than they were recorded the elements are emitted; 0 if they are not paced.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return true if the elements are emitted with (scaled) recorded intervals.
+     */
+    public boolean isPaced() {
+        return speed > 0;
+    }
+
+    @Override
+    public String toString() {
+        return isPaced() ? "Replay(" + speed + "x)" : "Replay(as fast as possible)";
+    }
+}
@@ -0,0 +1,44 @@
+package riot.recording;
+
+import java.time.Instant;
+
+/**
+ * An element read back from a {@link Recording}, with the time it was recorded.
+ *
+ * @param <T> the type of the element
+ */
+public final class Sample<T> {
+    private final long epochNanos;
+    private final T value;
+
+    public Sample(long epochNanos, T value) {
+        this.epochNanos = epochNanos;
+        this.value = value;
+    }
+
+    /**
+     * @return the time the element was recorded, in nanoseconds since the epoch.
+     */
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    /**
+     * @return the time the element was recorded.
+     */
+    public Instant getTimestamp() {
+        return Instant.ofEpochSecond(0, epochNanos);
+    }
+
+    /**
+     * @return the element.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "Sample(" + getTimestamp() + ": " + value + ")";
+    }
+}
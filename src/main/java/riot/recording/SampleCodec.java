@@ -0,0 +1,37 @@
+package riot.recording;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the elements of a stream to and from the compact binary form stored in a {@link Recording}. Codecs for the
+ * messages of RIoT's components are provided by {@link SampleCodecs}.
+ *
+ * @param <T> the type of the elements recorded
+ */
+public interface SampleCodec<T> {
+
+    /**
+     * @return an identifier of the codec, stored in each segment of a recording so that it is not read back with
+     * another codec. At most 48 characters.
+     */
+    String getId();
+
+    /**
+     * Writes an element to the buffer, from its position on.
+     *
+     * @param value the element
+     * @param out   the buffer, whose limit is the end of the segment being written
+     * @throws BufferOverflowException if the element does not fit in the buffer (it is then written to the next
+     *                                 segment)
+     */
+    void encode(T value, ByteBuffer out);
+
+    /**
+     * Reads an element written by {@link #encode(Object, ByteBuffer)}.
+     *
+     * @param in the buffer, positioned at the start of the element and limited to its end
+     * @return the element
+     */
+    T decode(ByteBuffer in);
+}
@@ -0,0 +1,176 @@
+package riot.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import riot.GPIO;
+import riot.protocols.RawI2CProtocol;
+
+/**
+ * Codecs for the messages emitted by RIoT's components.
+ */
+public final class SampleCodecs {
+    private static final GPIO.State[] STATES = GPIO.State.values();
+
+    private SampleCodecs() {
+        // No instantiation necessary.
+    }
+
+    /**
+     * @return a codec for the states of a digital input pin, in one byte each.
+     */
+    public static SampleCodec<GPIO.State> states() {
+        return new SampleCodec<GPIO.State>() {
+            @Override
+            public String getId() {
+                return "gpio-state";
+            }
+
+            @Override
+            public void encode(GPIO.State value, ByteBuffer out) {
+                out.put((byte) value.ordinal());
+            }
+
+            @Override
+            public GPIO.State decode(ByteBuffer in) {
+                return STATES[in.get()];
+            }
+        };
+    }
+
+    /**
+     * @return a codec for the values of an analog input pin, in eight bytes each.
+     */
+    public static SampleCodec<Double> values() {
+        return new SampleCodec<Double>() {
+            @Override
+            public String getId() {
+                return "double";
+            }
+
+            @Override
+            public void encode(Double value, ByteBuffer out) {
+                out.putDouble(value);
+            }
+
+            @Override
+            public Double decode(ByteBuffer in) {
+                return in.getDouble();
+            }
+        };
+    }
+
+    /**
+     * @return a codec for byte arrays, such as the replies of SPI devices, stored as is.
+     */
+    public static SampleCodec<byte[]> bytes() {
+        return new SampleCodec<byte[]>() {
+            @Override
+            public String getId() {
+                return "bytes";
+            }
+
+            @Override
+            public void encode(byte[] value, ByteBuffer out) {
+                out.put(value);
+            }
+
+            @Override
+            public byte[] decode(ByteBuffer in) {
+                final byte[] value = new byte[in.remaining()];
+                in.get(value);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @return a codec for the results of {@link RawI2CProtocol}, including those of transactions.
+     */
+    public static SampleCodec<RawI2CProtocol.Result> i2cResults() {
+        return new SampleCodec<RawI2CProtocol.Result>() {
+            @Override
+            public String getId() {
+                return "i2c-result";
+            }
+
+            @Override
+            public void encode(RawI2CProtocol.Result value, ByteBuffer out) {
+                final List<RawI2CProtocol.Result> steps = value.getSteps();
+                if (steps.isEmpty()) {
+                    out.putShort((short) -1);
+                    out.putShort((short) value.getLength());
+                    value.copyTo(out);
+                } else {
+                    out.putShort((short) steps.size());
+                    for (RawI2CProtocol.Result step : steps) {
+                        encode(step, out);
+                    }
+                }
+            }
+
+            @Override
+            public RawI2CProtocol.Result decode(ByteBuffer in) {
+                final int steps = in.getShort();
+                if (steps < 0) {
+                    final byte[] data = new byte[in.getShort() & 0xFFFF];
+                    in.get(data);
+                    return RawI2CProtocol.Result.of(data);
+                }
+                final List<RawI2CProtocol.Result> results = new ArrayList<>(steps);
+                for (int i = 0; i < steps; i++) {
+                    results.add(decode(in));
+                }
+                return RawI2CProtocol.Result.of(results);
+            }
+        };
+    }
+
+    /**
+     * @return a codec for the values read by {@link riot.protocols.RawOneWireProtocol}, by device id.
+     */
+    @SuppressWarnings("rawtypes")
+    public static SampleCodec<Map> oneWireValues() {
+        return new SampleCodec<Map>() {
+            @Override
+            public String getId() {
+                return "onewire-values";
+            }
+
+            @Override
+            public void encode(Map value, ByteBuffer out) {
+                out.putShort((short) value.size());
+                for (Object entry : value.entrySet()) {
+                    putString(out, String.valueOf(((Map.Entry) entry).getKey()));
+                    putString(out, String.valueOf(((Map.Entry) entry).getValue()));
+                }
+            }
+
+            @Override
+            public Map decode(ByteBuffer in) {
+                final int size = in.getShort() & 0xFFFF;
+                final Map<String, String> values = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    values.put(getString(in), getString(in));
+                }
+                return values;
+            }
+        };
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        final byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
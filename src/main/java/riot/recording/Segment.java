@@ -0,0 +1,228 @@
+package riot.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A segment of a recording: a data file holding records, and an index file holding the timestamp and offset of a
+ * record every few kilobytes. Both files are allocated at their full size when the segment is created, and mapped in
+ * memory.
+ * <p>
+ * The data file starts with a header (magic number, format version and codec id), followed by the records, each made of
+ * its size (header included, as an int), its timestamp (in nanoseconds since the epoch, as a long) and the element
+ * encoded by the codec. The size of a record is written last, so that a record with a size of 0 marks the end of the
+ * data. Each entry of the index file is a timestamp (long) and an offset (int); an offset of 0 marks the end of the
+ * index.
+ */
+final class Segment {
+    static final int MAGIC = 0x52494F54; // "RIOT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int MAX_CODEC_ID_LENGTH = 48;
+
+    private static final int CODEC_ID_OFFSET = 8;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final String PREFIX = "segment-";
+    private static final String DATA_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int ZEROS_SIZE = 64 * 1024;
+
+    private final long sequence;
+    private final Path data;
+    private final Path index;
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer entries;
+
+    private Segment(long sequence, Path data, Path index, MappedByteBuffer records, MappedByteBuffer entries) {
+        this.sequence = sequence;
+        this.data = data;
+        this.index = index;
+        this.records = records;
+        this.entries = entries;
+    }
+
+    /**
+     * Creates a segment, writing zeros to its files so that their blocks are allocated (and their pages cached) now,
+     * rather than when records are written.
+     */
+    static Segment create(Path directory, long sequence, String codecId, int size, int indexInterval)
+            throws IOException {
+        final Path data = directory.resolve(name(sequence, DATA_SUFFIX));
+        final Path index = directory.resolve(name(sequence, INDEX_SUFFIX));
+        final MappedByteBuffer records = allocate(data, size);
+        final MappedByteBuffer entries = allocate(index, (size / indexInterval + 2) * INDEX_ENTRY_SIZE);
+        final byte[] id = codecId.getBytes(StandardCharsets.UTF_8);
+        records.putInt(0, MAGIC);
+        records.putInt(4, VERSION);
+        records.putShort(CODEC_ID_OFFSET, (short) id.length);
+        for (int i = 0; i < id.length; i++) {
+            records.put(CODEC_ID_OFFSET + 2 + i, id[i]);
+        }
+        return new Segment(sequence, data, index, records, entries);
+    }
+
+    /**
+     * Opens a segment for reading.
+     *
+     * @throws IOException if the segment cannot be read, or was not written with the codec passed
+     */
+    static Segment open(Path data, String codecId) throws IOException {
+        final Path index = data.resolveSibling(data.getFileName().toString().replace(DATA_SUFFIX, INDEX_SUFFIX));
+        final MappedByteBuffer records = map(data);
+        final MappedByteBuffer entries = map(index);
+        if (records.capacity() < HEADER_SIZE || records.getInt(0) != MAGIC) {
+            throw new IOException(data + " is not a segment of a recording");
+        }
+        if (records.getInt(4) != VERSION) {
+            throw new IOException(data + " has an unsupported format version: " + records.getInt(4));
+        }
+        final byte[] id = new byte[Math.min(records.getShort(CODEC_ID_OFFSET), MAX_CODEC_ID_LENGTH)];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = records.get(CODEC_ID_OFFSET + 2 + i);
+        }
+        final String recordedId = new String(id, StandardCharsets.UTF_8);
+        if (!recordedId.equals(codecId)) {
+            throw new IOException(data + " was recorded with codec " + recordedId + ", not " + codecId);
+        }
+        return new Segment(sequenceOf(data), data, index, records, entries);
+    }
+
+    private static MappedByteBuffer allocate(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer zeros = ByteBuffer.allocate(ZEROS_SIZE);
+            long position = 0;
+            while (position < size) {
+                zeros.clear();
+                if (size - position < ZEROS_SIZE) {
+                    zeros.limit((int) (size - position));
+                }
+                position += channel.write(zeros, position);
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.load();
+            return buffer;
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return the data files of the segments in a directory, in the order they were written.
+     */
+    static List<Path> list(Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + DATA_SUFFIX)) {
+                for (Path file : files) {
+                    segments.add(file);
+                }
+            }
+        }
+        // The sequence numbers are zero-padded
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static long sequenceOf(Path data) {
+        final String name = data.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - DATA_SUFFIX.length()));
+    }
+
+    private static String name(long sequence, String suffix) {
+        return String.format("%s%020d%s", PREFIX, sequence, suffix);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the mapped data file. Writers use absolute accesses, and readers a duplicate of it.
+     */
+    ByteBuffer getRecords() {
+        return records;
+    }
+
+    int getIndexCapacity() {
+        return entries.capacity() / INDEX_ENTRY_SIZE;
+    }
+
+    void setIndexEntry(int i, long timestamp, int offset) {
+        entries.putLong(i * INDEX_ENTRY_SIZE, timestamp);
+        entries.putInt(i * INDEX_ENTRY_SIZE + 8, offset);
+    }
+
+    /**
+     * @return the number of entries in the index, found by bisection as the unused entries are all at the end.
+     */
+    private int getIndexSize() {
+        int low = 0;
+        int high = getIndexCapacity();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (entries.getInt(mid * INDEX_ENTRY_SIZE + 8) != 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the timestamp of the first record, or {@link Long#MAX_VALUE} if the segment is empty.
+     */
+    long getFirstTimestamp() {
+        return entries.getInt(8) == 0 ? Long.MAX_VALUE : entries.getLong(0);
+    }
+
+    /**
+     * @param epochNanos a timestamp
+     * @return the offset of the last indexed record recorded at or before that time, from which the records recorded
+     * from that time on can be found by scanning forward.
+     */
+    int seek(long epochNanos) {
+        int low = 0;
+        int high = getIndexSize() - 1;
+        int offset = HEADER_SIZE;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (entries.getLong(mid * INDEX_ENTRY_SIZE) <= epochNanos) {
+                offset = entries.getInt(mid * INDEX_ENTRY_SIZE + 8);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Writes the pages modified to the storage device.
+     */
+    void force() {
+        records.force();
+        entries.force();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(data);
+        Files.deleteIfExists(index);
+    }
+}
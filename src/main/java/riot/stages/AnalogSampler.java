@@ -0,0 +1,158 @@
+package riot.stages;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+import riot.GPIO;
+
+/**
+ * Samples an analog input at a fixed rate on a dedicated thread, averaging several readings into each sample, and
+ * hands the samples over in chunks to a single consumer (the stream stage). If the consumer does not keep up, the
+ * oldest chunks are dropped, and their samples counted as missed.
+ */
+public final class AnalogSampler {
+    static final int BUFFERED_CHUNKS = 16;
+
+    private final long intervalNanos;
+    private final int oversampling;
+    private final int chunkSize;
+    private final BlockingQueue<GPIO.Samples> chunks = new ArrayBlockingQueue<>(BUFFERED_CHUNKS);
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private Thread thread;
+
+    AnalogSampler(Duration interval, int oversampling, int chunkSize) {
+        if (oversampling < 1 || chunkSize < 1 || interval.toNanos() < oversampling) {
+            throw new IllegalArgumentException("Invalid sampling: every " + interval + ", " + oversampling
+                    + " readings per sample, " + chunkSize + " samples per chunk");
+        }
+        this.intervalNanos = interval.toNanos();
+        this.oversampling = oversampling;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Starts sampling.
+     *
+     * @param name    the name of the sampling thread
+     * @param reading reads the input
+     * @param onChunk called on the sampling thread after each chunk is added
+     * @param onError called on the sampling thread if reading the input fails, which stops the sampling
+     * @param onStop  called on the sampling thread once it has stopped reading the input
+     */
+    void start(String name, DoubleSupplier reading, Runnable onChunk, Consumer<Throwable> onError, Runnable onStop) {
+        thread = new Thread(() -> {
+            try {
+                run(reading, onChunk);
+            } catch (Throwable e) {
+                onError.accept(e);
+            } finally {
+                onStop.run();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the oldest chunk of samples, or null if there is none. Called by the consumer only.
+     */
+    GPIO.Samples poll() {
+        return chunks.poll();
+    }
+
+    /**
+     * @return the number of samples taken since the sampler started, including those dropped later on.
+     */
+    public long getSampled() {
+        return sampled.get();
+    }
+
+    /**
+     * @return the number of samples missed since the sampler started, because the thread fell behind or the chunks
+     * were not consumed in time.
+     */
+    public long getMissed() {
+        return missed.get();
+    }
+
+    /**
+     * @return the number of chunks waiting to be consumed.
+     */
+    public int getBuffered() {
+        return chunks.size();
+    }
+
+    private void run(DoubleSupplier reading, Runnable onChunk) {
+        double[] values = new double[chunkSize];
+        int filled = 0;
+        long first = 0;
+        long next = System.nanoTime();
+        while (true) {
+            final long start = next;
+            double sum = 0;
+            for (int i = 0; i < oversampling; i++) {
+                if (!waitUntil(start + i * intervalNanos / oversampling)) {
+                    return;
+                }
+                sum += reading.getAsDouble();
+            }
+            if (filled == 0) {
+                first = start;
+            }
+            values[filled++] = sum / oversampling;
+            sampled.lazySet(sampled.get() + 1);
+            next = start + intervalNanos;
+
+            final long behind = System.nanoTime() - next;
+            if (filled == chunkSize || behind >= intervalNanos) {
+                publish(filled == chunkSize ? values : Arrays.copyOf(values, filled), first, onChunk);
+                values = new double[chunkSize];
+                filled = 0;
+            }
+            if (behind >= intervalNanos) {
+                // Fell behind by whole samples, e.g. after a pause: skip them, so that the next chunk stays on the grid
+                final long skipped = behind / intervalNanos;
+                missed.addAndGet(skipped);
+                next += skipped * intervalNanos;
+            }
+        }
+    }
+
+    private void publish(double[] values, long first, Runnable onChunk) {
+        while (!chunks.offer(new GPIO.Samples(values, first, intervalNanos, missed.get()))) {
+            final GPIO.Samples oldest = chunks.poll();
+            if (oldest != null) {
+                missed.addAndGet(oldest.size());
+            }
+        }
+        onChunk.run();
+    }
+
+    /**
+     * @return false if the thread was interrupted while waiting.
+     */
+    private static boolean waitUntil(long deadline) {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+}
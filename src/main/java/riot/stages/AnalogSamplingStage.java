@@ -0,0 +1,109 @@
+package riot.stages;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinAnalogInput;
+
+import akka.japi.Pair;
+import akka.stream.Attributes;
+import akka.stream.Outlet;
+import akka.stream.SourceShape;
+import akka.stream.stage.AbstractGraphStageWithMaterializedValue;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.AsyncCallback;
+import akka.stream.stage.GraphStageLogic;
+import riot.GPIO;
+
+/**
+ * A source stage sampling an analog input pin at a fixed rate. The pin is read by an {@link AnalogSampler}, on its
+ * own thread, which averages the readings of each interval into one sample and hands them over in chunks of primitive
+ * doubles; the stage emits the chunks as demanded downstream, and is only woken up by the sampler when it is waiting
+ * for one. The sampler is the stage's materialized value, so that the number of missed samples can be monitored.
+ *
+ * @see GPIO.In#asSampledSource(Duration, int, int)
+ */
+public class AnalogSamplingStage
+        extends AbstractGraphStageWithMaterializedValue<SourceShape<GPIO.Samples>, AnalogSampler> {
+    private final GPIO.In<?> conf;
+    private final Duration interval;
+    private final int oversampling;
+    private final int chunkSize;
+    private final Outlet<GPIO.Samples> out = Outlet.create("gpio-samples.out");
+    private final SourceShape<GPIO.Samples> shape = SourceShape.of(out);
+
+    public AnalogSamplingStage(GPIO.In<?> conf, Duration interval, int oversampling, int chunkSize) {
+        this.conf = conf;
+        this.interval = interval;
+        this.oversampling = oversampling;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public SourceShape<GPIO.Samples> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("gpio-samples");
+    }
+
+    @Override
+    public Pair<GraphStageLogic, AnalogSampler> createLogicAndMaterializedValuePair(Attributes inheritedAttributes) {
+        final AnalogSampler sampler = new AnalogSampler(interval, oversampling, chunkSize);
+        final GraphStageLogic logic = new GraphStageLogic(shape) {
+            private final AtomicBoolean waiting = new AtomicBoolean(false);
+
+            {
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        emit();
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() {
+                final AsyncCallback<Void> wakeUp = createAsyncCallback(v -> {
+                    if (isAvailable(out)) {
+                        emit();
+                    }
+                });
+                final AsyncCallback<Throwable> fail = createAsyncCallback(this::failStage);
+                final GpioController gpio = conf.getBackend().getGpioController();
+                final GpioPinAnalogInput input = gpio.provisionAnalogInputPin(conf.getPin(), conf.getName());
+                if (conf.getPullResistance() != null) {
+                    input.setPullResistance(conf.getPullResistance());
+                }
+                sampler.start("riot-sampler-" + conf.getName(), input::getValue, () -> {
+                    if (waiting.get() && waiting.compareAndSet(true, false)) {
+                        wakeUp.invoke(null);
+                    }
+                }, fail::invoke, () -> gpio.unprovisionPin(input));
+            }
+
+            @Override
+            public void postStop() {
+                sampler.stop();
+            }
+
+            private void emit() {
+                GPIO.Samples samples = sampler.poll();
+                if (samples == null) {
+                    waiting.set(true);
+                    // A chunk may have been added before the flag was set
+                    samples = sampler.poll();
+                    if (samples == null) {
+                        return;
+                    }
+                    waiting.set(false);
+                }
+                push(out, samples);
+            }
+        };
+        return Pair.create(logic, sampler);
+    }
+}
@@ -0,0 +1,85 @@
+package riot.stages;
+
+import akka.stream.Attributes;
+import akka.stream.FlowShape;
+import akka.stream.Inlet;
+import akka.stream.Outlet;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import akka.util.ByteString;
+
+/**
+ * An Akka Streams stage that splits and joins byte strings into chunks of a fixed size. Only the last chunk, emitted
+ * when the upstream completes, may be shorter.
+ */
+public class ChunkingStage extends GraphStage<FlowShape<ByteString, ByteString>> {
+    private final int chunkSize;
+    private final Inlet<ByteString> in = Inlet.create("chunking.in");
+    private final Outlet<ByteString> out = Outlet.create("chunking.out");
+    private final FlowShape<ByteString, ByteString> shape = FlowShape.of(in, out);
+
+    public ChunkingStage(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1 byte");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public FlowShape<ByteString, ByteString> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("chunking");
+    }
+
+    @Override
+    public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+        return new GraphStageLogic(shape) {
+            private ByteString pending = ByteString.empty();
+
+            {
+                setHandler(in, new AbstractInHandler() {
+                    @Override
+                    public void onPush() {
+                        pending = pending.concat(grab(in));
+                        emitChunk();
+                    }
+
+                    @Override
+                    public void onUpstreamFinish() {
+                        if (pending.isEmpty()) {
+                            completeStage();
+                        } else if (isAvailable(out)) {
+                            emitChunk();
+                        }
+                    }
+                });
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        emitChunk();
+                    }
+                });
+            }
+
+            private void emitChunk() {
+                if (pending.size() >= chunkSize) {
+                    push(out, pending.take(chunkSize).compact());
+                    pending = pending.drop(chunkSize);
+                } else if (isClosed(in)) {
+                    if (!pending.isEmpty()) {
+                        push(out, pending.compact());
+                    }
+                    completeStage();
+                } else if (!hasBeenPulled(in)) {
+                    pull(in);
+                }
+            }
+        };
+    }
+}
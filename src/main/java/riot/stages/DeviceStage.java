@@ -0,0 +1,143 @@
+package riot.stages;
+
+import java.io.IOException;
+
+import akka.stream.ActorMaterializer;
+import akka.stream.Attributes;
+import akka.stream.FlowShape;
+import akka.stream.Inlet;
+import akka.stream.Materializer;
+import akka.stream.Outlet;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import riot.metrics.DeviceMetrics;
+import riot.metrics.Metrics;
+
+/**
+ * An Akka Streams stage that owns a device handle, and executes a protocol on it directly for each element, without
+ * going through an actor. The device is opened (and the protocol initialised) when the stage starts, and closed when it
+ * stops. Elements are processed one at a time, as they are demanded downstream. As executing the protocol blocks, this
+ * stage should run on a dispatcher intended for blocking I/O, behind an asynchronous boundary.
+ * <p>
+ * When run by an actor materializer, the latency of each execution is recorded with the metrics of the device, under
+ * the name of the stage (see {@link Metrics}).
+ *
+ * @param <D> the type of the device handle
+ * @param <I> the type of the protocol's input messages
+ * @param <O> the type of the protocol's output messages
+ */
+public abstract class DeviceStage<D, I, O> extends GraphStage<FlowShape<I, O>> {
+    private final String name;
+    private final Inlet<I> in;
+    private final Outlet<O> out;
+    private final FlowShape<I, O> shape;
+
+    protected DeviceStage(String name) {
+        this.name = name;
+        this.in = Inlet.create(name + ".in");
+        this.out = Outlet.create(name + ".out");
+        this.shape = FlowShape.of(in, out);
+    }
+
+    /**
+     * Opens the device, and initialises the protocol.
+     *
+     * @return the device handle
+     * @throws Exception if the device cannot be opened or initialised
+     */
+    protected abstract D open() throws Exception;
+
+    /**
+     * Opens the device, and initialises the protocol, for stages which need the materializer running them. By
+     * default, this calls {@link #open()}.
+     *
+     * @param materializer the materializer running the stage
+     * @return the device handle
+     * @throws Exception if the device cannot be opened or initialised
+     */
+    protected D open(Materializer materializer) throws Exception {
+        return open();
+    }
+
+    /**
+     * Executes the protocol for a single message.
+     *
+     * @param device  the device handle
+     * @param message the input message
+     * @return the output message
+     * @throws IOException if communication with the device fails
+     */
+    protected abstract O exec(D device, I message) throws IOException;
+
+    /**
+     * Shuts the protocol down, and closes the device.
+     *
+     * @param device the device handle
+     * @throws IOException if communication with the device fails
+     */
+    protected abstract void close(D device) throws IOException;
+
+    @Override
+    public FlowShape<I, O> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name(name);
+    }
+
+    @Override
+    public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+        return new GraphStageLogic(shape) {
+            private D device;
+            private DeviceMetrics metrics;
+
+            {
+                setHandler(in, new AbstractInHandler() {
+                    @Override
+                    public void onPush() throws Exception {
+                        final I message = grab(in);
+                        if (metrics == null) {
+                            push(out, exec(device, message));
+                            return;
+                        }
+                        final long start = System.nanoTime();
+                        final O result;
+                        try {
+                            result = exec(device, message);
+                        } catch (Exception e) {
+                            metrics.recordError(start);
+                            throw e;
+                        }
+                        metrics.record(start);
+                        push(out, result);
+                    }
+                });
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        pull(in);
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() throws Exception {
+                device = open(materializer());
+                if (materializer() instanceof ActorMaterializer) {
+                    metrics = Metrics.get(((ActorMaterializer) materializer()).system()).device(name);
+                }
+            }
+
+            @Override
+            public void postStop() throws Exception {
+                if (device != null) {
+                    close(device);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package riot.stages;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated, lock-free ring buffer of timestamped edges of a digital pin, written to by a single producer (the
+ * thread delivering the pin's events) and read by a single consumer (the stream stage). When the buffer is full, new
+ * edges are dropped and counted.
+ */
+public final class EdgeRingBuffer {
+    private final long[] timestamps;
+    private final boolean[] states;
+    private final int mask;
+
+    // The next edge to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // The next edge to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity the number of edges the buffer can hold, rounded up to a power of two
+     */
+    EdgeRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.timestamps = new long[size];
+        this.states = new boolean[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an edge. Called by the producer only.
+     *
+     * @return false if the buffer was full, and the edge was dropped.
+     */
+    boolean offer(long timestamp, boolean high) {
+        final long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped.lazySet(dropped.get() + 1);
+            return false;
+        }
+        final int i = (int) t & mask;
+        timestamps[i] = timestamp;
+        states[i] = high;
+        // A full fence, so that a consumer about to wait either sees the edge, or is seen waiting
+        tail.set(t + 1);
+        return true;
+    }
+
+    /**
+     * Moves edges to the arrays passed. Called by the consumer only.
+     *
+     * @return the number of edges moved, at most the length of the arrays.
+     */
+    int drain(long[] timestampsOut, boolean[] statesOut) {
+        final long h = head.get();
+        final int n = (int) Math.min(tail.get() - h, timestampsOut.length);
+        for (int k = 0; k < n; k++) {
+            final int i = (int) (h + k) & mask;
+            timestampsOut[k] = timestamps[i];
+            statesOut[k] = states[i];
+        }
+        head.lazySet(h + n);
+        return n;
+    }
+
+    /**
+     * @return the number of edges waiting to be read.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return the number of edges the buffer can hold.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of edges captured since the buffer was created, excluding dropped ones.
+     */
+    public long getCaptured() {
+        return tail.get();
+    }
+
+    /**
+     * @return the number of edges dropped since the buffer was created, because it was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,118 @@
+package riot.stages;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.event.PinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.PinListener;
+
+import akka.japi.Pair;
+import akka.stream.Attributes;
+import akka.stream.Outlet;
+import akka.stream.SourceShape;
+import akka.stream.stage.AbstractGraphStageWithMaterializedValue;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.AsyncCallback;
+import akka.stream.stage.GraphStageLogic;
+import riot.GPIO;
+
+/**
+ * A source stage capturing the edges of a digital input pin. The pin's provider notifies each edge directly, on its
+ * own thread; the edge is timestamped with {@link System#nanoTime()} and written to a ring buffer, without any
+ * allocation. The stage drains the buffer in batches, as demanded downstream, and is only woken up by the provider's
+ * thread when it is waiting for edges. The ring buffer is the stage's materialized value, so that the number of
+ * dropped edges can be monitored.
+ *
+ * @see GPIO.In#asEdgeSource(int, int)
+ */
+public class GPIOEdgeStage extends AbstractGraphStageWithMaterializedValue<SourceShape<GPIO.Edges>, EdgeRingBuffer> {
+    private final GPIO.In<?> conf;
+    private final int capacity;
+    private final int maxBatch;
+    private final Outlet<GPIO.Edges> out = Outlet.create("gpio-edges.out");
+    private final SourceShape<GPIO.Edges> shape = SourceShape.of(out);
+
+    public GPIOEdgeStage(GPIO.In<?> conf, int capacity, int maxBatch) {
+        this.conf = conf;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+    }
+
+    @Override
+    public SourceShape<GPIO.Edges> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("gpio-edges");
+    }
+
+    @Override
+    public Pair<GraphStageLogic, EdgeRingBuffer> createLogicAndMaterializedValuePair(Attributes inheritedAttributes) {
+        final EdgeRingBuffer ring = new EdgeRingBuffer(capacity);
+        final GraphStageLogic logic = new GraphStageLogic(shape) {
+            private final AtomicBoolean waiting = new AtomicBoolean(false);
+            private GpioController gpio;
+            private GpioPinDigitalInput input;
+            private PinListener listener;
+
+            {
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        emit();
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() {
+                final AsyncCallback<Void> wakeUp = createAsyncCallback(v -> {
+                    if (isAvailable(out)) {
+                        emit();
+                    }
+                });
+                listener = event -> {
+                    if (event instanceof PinDigitalStateChangeEvent) {
+                        ring.offer(System.nanoTime(), ((PinDigitalStateChangeEvent) event).getState().isHigh());
+                        if (waiting.get() && waiting.compareAndSet(true, false)) {
+                            wakeUp.invoke(null);
+                        }
+                    }
+                };
+                gpio = conf.getBackend().getGpioController();
+                input = gpio.provisionDigitalInputPin(conf.getPin(), conf.getName());
+                if (conf.getPullResistance() != null) {
+                    input.setPullResistance(conf.getPullResistance());
+                }
+                input.getProvider().addListener(input.getPin(), listener);
+            }
+
+            @Override
+            public void postStop() {
+                if (input != null) {
+                    input.getProvider().removeListener(input.getPin(), listener);
+                    gpio.unprovisionPin(input);
+                }
+            }
+
+            private void emit() {
+                if (ring.size() == 0) {
+                    waiting.set(true);
+                    // An edge may have been added before the flag was set
+                    if (ring.size() == 0 || !waiting.compareAndSet(true, false)) {
+                        return;
+                    }
+                }
+                final int n = Math.min(ring.size(), maxBatch);
+                final long[] timestamps = new long[n];
+                final boolean[] states = new boolean[n];
+                ring.drain(timestamps, states);
+                push(out, new GPIO.Edges(timestamps, states, ring.getDropped()));
+            }
+        };
+        return Pair.create(logic, ring);
+    }
+}
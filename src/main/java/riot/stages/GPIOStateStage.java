@@ -0,0 +1,102 @@
+package riot.stages;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Attributes;
+import akka.stream.Outlet;
+import akka.stream.SourceShape;
+import akka.stream.stage.AbstractGraphStageWithMaterializedValue;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.AsyncCallback;
+import akka.stream.stage.GraphStageLogic;
+import riot.GPIO;
+
+/**
+ * A source stage emitting the changes of an input pin. The pin is read by an input actor, created when the stage
+ * starts and stopped when it stops, which applies the pin's filters and hands the changes over to a
+ * {@link StateBuffer} directly from the thread notifying them, rather than sending them as messages. The stage emits
+ * them from the buffer as demanded downstream, and is only woken up by the notifying thread when it is waiting for one.
+ * The buffer is the stage's materialized value, so that the changes coalesced or dropped can be monitored.
+ *
+ * @param <T> the type of the elements emitted
+ * @see GPIO.In#asSource(ActorSystem, GPIO.Buffering)
+ */
+public class GPIOStateStage<T> extends AbstractGraphStageWithMaterializedValue<SourceShape<T>, StateBuffer<T>> {
+    private final GPIO.In<?> conf;
+    private final GPIO.Buffering buffering;
+    private final Outlet<T> out = Outlet.create("gpio-states.out");
+    private final SourceShape<T> shape = SourceShape.of(out);
+
+    public GPIOStateStage(GPIO.In<?> conf, GPIO.Buffering buffering) {
+        this.conf = conf;
+        this.buffering = buffering;
+    }
+
+    @Override
+    public SourceShape<T> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("gpio-states");
+    }
+
+    @Override
+    public Pair<GraphStageLogic, StateBuffer<T>> createLogicAndMaterializedValuePair(Attributes inheritedAttributes) {
+        final StateBuffer<T> buffer = new StateBuffer<>(buffering);
+        final GraphStageLogic logic = new GraphStageLogic(shape) {
+            private ActorSystem system;
+            private ActorRef input;
+
+            {
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        emit();
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() {
+                if (!(materializer() instanceof ActorMaterializer)) {
+                    throw new IllegalStateException("The changes of a pin can only be read by an actor materializer");
+                }
+                final AsyncCallback<Void> wakeUp = createAsyncCallback(v -> {
+                    if (isAvailable(out)) {
+                        emit();
+                    }
+                });
+                buffer.setWakeUp(() -> wakeUp.invoke(null));
+                system = ((ActorMaterializer) materializer()).system();
+                input = system.actorOf(conf.asProps(buffer));
+            }
+
+            @Override
+            public void postStop() {
+                buffer.close();
+                if (input != null) {
+                    system.stop(input);
+                }
+            }
+
+            private void emit() {
+                T element = buffer.poll();
+                if (element == null) {
+                    buffer.await();
+                    // A change may have been added before the flag was set
+                    element = buffer.poll();
+                    if (element == null) {
+                        return;
+                    }
+                    buffer.cancelAwait();
+                }
+                push(out, element);
+            }
+        };
+        return Pair.create(logic, buffer);
+    }
+}
@@ -0,0 +1,43 @@
+package riot.stages;
+
+import java.io.IOException;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import riot.I2C;
+import riot.protocols.I2CProtocol;
+
+/**
+ * A stage executing an I2C protocol directly on the device, without going through an actor.
+ *
+ * @param <I> the type of the protocol's input messages
+ * @param <O> the type of the protocol's output messages
+ * @see I2C#asDirectFlow()
+ */
+public class I2CStage<I, O> extends DeviceStage<I2CDevice, I, O> {
+    private final I2C<?, I, O> conf;
+    private final I2CProtocol<I, O> proto;
+
+    public I2CStage(I2C<?, I, O> conf) {
+        super(conf.getMetricsName());
+        this.conf = conf;
+        this.proto = conf.getProtocol();
+    }
+
+    @Override
+    protected I2CDevice open() throws Exception {
+        final I2CDevice dev = conf.openDevice(conf.getBackend().getI2CBus(conf.getBusNumber()));
+        proto.init(dev);
+        return dev;
+    }
+
+    @Override
+    protected O exec(I2CDevice dev, I message) throws IOException {
+        return proto.exec(dev, message);
+    }
+
+    @Override
+    protected void close(I2CDevice dev) throws IOException {
+        proto.shutdown(dev);
+    }
+}
@@ -0,0 +1,64 @@
+package riot.stages;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.pi4j.io.w1.W1Device;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import riot.OneWire;
+import riot.actors.OneWireRegistry;
+import riot.protocols.OneWireProtocol;
+
+/**
+ * A stage executing a OneWire protocol directly on the devices, without going through an actor.
+ *
+ * @param <I> the type of the protocol's input messages
+ * @param <O> the type of the protocol's output messages
+ * @see OneWire#asDirectFlow()
+ */
+public class OneWireStage<I, O> extends DeviceStage<List<W1Device>, I, O> {
+    private final OneWire<?, I, O> conf;
+    private final OneWireProtocol<I, O> proto;
+
+    public OneWireStage(OneWire<?, I, O> conf) {
+        super(conf.getMetricsName());
+        this.conf = conf;
+        this.proto = conf.getProtocol();
+    }
+
+    @Override
+    protected List<W1Device> open() throws Exception {
+        final List<W1Device> dev = conf.getBackend().getW1Devices(conf.getDeviceFamily());
+        proto.init(dev, conf.getBackend());
+        return dev;
+    }
+
+    /**
+     * Takes the devices from the actor system's {@link OneWireRegistry}, so that devices connected or disconnected
+     * while the stage runs are seen by the protocol.
+     */
+    @Override
+    protected List<W1Device> open(Materializer materializer) throws Exception {
+        if (!(materializer instanceof ActorMaterializer)) {
+            return open();
+        }
+        final ActorSystem system = ((ActorMaterializer) materializer).system();
+        final List<W1Device> dev = OneWireRegistry.get(system).devices(conf.getBackend(), conf.getDeviceFamily())
+                .getDevices();
+        proto.init(dev, conf.getBackend());
+        return dev;
+    }
+
+    @Override
+    protected O exec(List<W1Device> dev, I message) throws IOException {
+        return proto.exec(dev, message);
+    }
+
+    @Override
+    protected void close(List<W1Device> dev) throws IOException {
+        proto.shutdown(dev);
+    }
+}
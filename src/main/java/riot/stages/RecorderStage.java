@@ -0,0 +1,109 @@
+package riot.stages;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import akka.japi.Pair;
+import akka.stream.AbruptStageTerminationException;
+import akka.stream.Attributes;
+import akka.stream.Inlet;
+import akka.stream.SinkShape;
+import akka.stream.stage.AbstractGraphStageWithMaterializedValue;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.GraphStageLogic;
+import riot.recording.Recording;
+import riot.recording.RecordingWriter;
+
+/**
+ * A sink stage appending each element it receives to a {@link Recording}. The writer is opened when the stage starts,
+ * and closed when it stops. Appending an element only copies it to a mapped segment, so the stage does not need a
+ * dispatcher of its own; elements are requested one at a time.
+ *
+ * @param <T> the type of the elements recorded
+ * @see Recording#asSink()
+ */
+public class RecorderStage<T> extends AbstractGraphStageWithMaterializedValue<SinkShape<T>, CompletionStage<Long>> {
+    private final Recording<T> recording;
+    private final Inlet<T> in = Inlet.create("recorder.in");
+    private final SinkShape<T> shape = SinkShape.of(in);
+
+    public RecorderStage(Recording<T> recording) {
+        this.recording = recording;
+    }
+
+    @Override
+    public SinkShape<T> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("recorder");
+    }
+
+    @Override
+    public Pair<GraphStageLogic, CompletionStage<Long>> createLogicAndMaterializedValuePair(
+            Attributes inheritedAttributes) {
+        final CompletableFuture<Long> recorded = new CompletableFuture<>();
+        final GraphStageLogic logic = new GraphStageLogic(shape) {
+            private RecordingWriter<T> writer;
+
+            {
+                setHandler(in, new AbstractInHandler() {
+                    @Override
+                    public void onPush() {
+                        try {
+                            writer.append(grab(in));
+                            pull(in);
+                        } catch (IOException | RuntimeException e) {
+                            fail(e);
+                        }
+                    }
+
+                    @Override
+                    public void onUpstreamFinish() {
+                        try {
+                            writer.close();
+                            recorded.complete(writer.getSamples());
+                            completeStage();
+                        } catch (IOException e) {
+                            fail(e);
+                        }
+                    }
+
+                    @Override
+                    public void onUpstreamFailure(Throwable ex) {
+                        fail(ex);
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() {
+                try {
+                    writer = recording.openWriter();
+                    pull(in);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+
+            private void fail(Throwable ex) {
+                recorded.completeExceptionally(ex);
+                failStage(ex);
+            }
+
+            @Override
+            public void postStop() throws IOException {
+                if (!recorded.isDone()) {
+                    recorded.completeExceptionally(new AbruptStageTerminationException(this));
+                }
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        };
+        return Pair.create(logic, recorded);
+    }
+}
@@ -0,0 +1,120 @@
+package riot.stages;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+
+import akka.stream.Attributes;
+import akka.stream.Outlet;
+import akka.stream.SourceShape;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import akka.stream.stage.TimerGraphStageLogic;
+import riot.recording.Recording;
+import riot.recording.Replay;
+import riot.recording.Sample;
+
+/**
+ * A source stage emitting the elements of a {@link Recording} recorded in a time range. The recording is opened when
+ * the stage starts. When the replay is paced, each element is due at the time it was recorded, relative to the first
+ * one, divided by the speed; an element due later is emitted by a timer, whose resolution is the scheduler's tick (see
+ * <code>akka.scheduler.tick-duration</code>), and the elements which fell due in the meantime are emitted at once, so
+ * that the rate of the recording is kept on average even when it is faster than the scheduler.
+ *
+ * @param <T> the type of the elements recorded
+ * @see Recording#asSource(Replay)
+ */
+public class ReplayStage<T> extends GraphStage<SourceShape<T>> {
+    private static final String DUE = "due";
+
+    private final Recording<T> recording;
+    private final Replay replay;
+    private final Instant from;
+    private final Instant to;
+    private final Outlet<T> out = Outlet.create("replay.out");
+    private final SourceShape<T> shape = SourceShape.of(out);
+
+    public ReplayStage(Recording<T> recording, Replay replay, Instant from, Instant to) {
+        this.recording = recording;
+        this.replay = replay;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public SourceShape<T> shape() {
+        return shape;
+    }
+
+    @Override
+    public Attributes initialAttributes() {
+        return Attributes.name("replay");
+    }
+
+    @Override
+    public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+        return new TimerGraphStageLogic(shape) {
+            private Iterator<Sample<T>> samples;
+            private Sample<T> next;
+            private long firstEpochNanos;
+            private long startNanoTime;
+            private boolean started;
+
+            {
+                setHandler(out, new AbstractOutHandler() {
+                    @Override
+                    public void onPull() {
+                        emitNext();
+                    }
+                });
+            }
+
+            @Override
+            public void preStart() {
+                try {
+                    samples = recording.read(from, to);
+                } catch (IOException e) {
+                    failStage(e);
+                }
+            }
+
+            @Override
+            public void onTimer(Object timerKey) {
+                pushNext();
+            }
+
+            private void emitNext() {
+                if (next == null) {
+                    if (!samples.hasNext()) {
+                        completeStage();
+                        return;
+                    }
+                    next = samples.next();
+                }
+                if (replay.isPaced()) {
+                    if (!started) {
+                        started = true;
+                        firstEpochNanos = next.getEpochNanos();
+                        startNanoTime = System.nanoTime();
+                    }
+                    final long due = startNanoTime
+                            + (long) ((next.getEpochNanos() - firstEpochNanos) / replay.getSpeed());
+                    final long delay = due - System.nanoTime();
+                    if (delay > 0) {
+                        scheduleOnce(DUE, Duration.ofNanos(delay));
+                        return;
+                    }
+                }
+                pushNext();
+            }
+
+            private void pushNext() {
+                final T value = next.getValue();
+                next = null;
+                push(out, value);
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package riot.stages;
+
+import java.io.IOException;
+
+import akka.util.ByteString;
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+
+import riot.SPI;
+import riot.backends.InPlaceSpiDevice;
+
+/**
+ * A stage writing chunks of bytes to an SPI device, one transfer per chunk, and emitting the progress of the transfers
+ * after each chunk. The bytes received are discarded.
+ *
+ * @see SPI#asChunkedFlow()
+ */
+public class SPIChunkStage extends DeviceStage<SPIChunkStage.Transfer, ByteString, SPI.Progress> {
+    private final SPI<?, ?, ?> conf;
+    private final int chunkSize;
+
+    public SPIChunkStage(SPI<?, ?, ?> conf, int chunkSize) {
+        super("spi-chunks-" + conf.getChannel());
+        this.conf = conf;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected Transfer open() throws Exception {
+        final SpiChannel chan = SpiChannel.getByNumber(conf.getChannel());
+        return new Transfer(conf.getBackend().getSpiDevice(chan, conf.getSpeed(), conf.getMode()), chunkSize);
+    }
+
+    @Override
+    protected SPI.Progress exec(Transfer transfer, ByteString chunk) throws IOException {
+        return transfer.write(chunk);
+    }
+
+    @Override
+    protected void close(Transfer transfer) {
+        // The device is shared, and stays open
+    }
+
+    /**
+     * The state of the transfers of a materialized stage.
+     */
+    static class Transfer {
+        private final SpiDevice dev;
+        private final byte[] buffer;
+        private long chunks = 0;
+        private long bytes = 0;
+        private long start = 0;
+
+        Transfer(SpiDevice dev, int chunkSize) {
+            this.dev = dev;
+            this.buffer = new byte[chunkSize];
+        }
+
+        SPI.Progress write(ByteString chunk) throws IOException {
+            final int length = chunk.size();
+            if (length > buffer.length) {
+                throw new IOException("Chunk of " + length + " bytes exceeds the transfer size of " + buffer.length);
+            }
+            if (start == 0) {
+                start = System.nanoTime();
+            }
+            chunk.copyToArray(buffer, 0, length);
+            if (dev instanceof InPlaceSpiDevice) {
+                ((InPlaceSpiDevice) dev).transfer(buffer, length);
+            } else {
+                dev.write(buffer, 0, length);
+            }
+            chunks++;
+            bytes += length;
+            return new SPI.Progress(chunks, bytes, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package riot.stages;
+
+import java.io.IOException;
+
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+
+import riot.SPI;
+import riot.protocols.SPIProtocol;
+
+/**
+ * A stage executing an SPI protocol directly on the device, without going through an actor.
+ *
+ * @param <I> the type of the protocol's input messages
+ * @param <O> the type of the protocol's output messages
+ * @see SPI#asDirectFlow()
+ */
+public class SPIStage<I, O> extends DeviceStage<SpiDevice, I, O> {
+    private final SPI<?, I, O> conf;
+    private final SPIProtocol<I, O> proto;
+
+    public SPIStage(SPI<?, I, O> conf) {
+        super(conf.getMetricsName());
+        this.conf = conf;
+        this.proto = conf.getProtocol();
+    }
+
+    @Override
+    protected SpiDevice open() throws Exception {
+        final SpiChannel chan = SpiChannel.getByNumber(conf.getChannel());
+        final SpiDevice dev = conf.getBackend().getSpiDevice(chan, conf.getSpeed(), conf.getMode());
+        proto.init(dev);
+        return dev;
+    }
+
+    @Override
+    protected O exec(SpiDevice dev, I message) throws IOException {
+        return proto.exec(dev, message);
+    }
+
+    @Override
+    protected void close(SpiDevice dev) throws IOException {
+        proto.shutdown(dev);
+    }
+}
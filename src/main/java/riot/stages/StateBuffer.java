@@ -0,0 +1,236 @@
+package riot.stages;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import riot.GPIO;
+
+/**
+ * Hands the changes of an input pin over from the thread notifying them to a single consumer (the stream stage),
+ * according to a {@link GPIO.Buffering} strategy, and counts what becomes of them: how many were received, emitted,
+ * coalesced into a later one, or dropped because the stream had stopped, and how many times the notifying thread had
+ * to wait for the stream.
+ *
+ * @param <T> the type of the elements emitted: the pin's state or value, or {@link GPIO.Changes} of it
+ */
+public final class StateBuffer<T> {
+    private final GPIO.Buffering.Mode mode;
+    private final Object[] queue;
+    private final AtomicBoolean waiting = new AtomicBoolean(false);
+    private int head;
+    private int size;
+    private Object latest;
+    private long pendingChanges;
+    private boolean closed;
+    private volatile Runnable wakeUp;
+
+    private long received;
+    private long emitted;
+    private long coalesced;
+    private long dropped;
+    private long blocked;
+
+    StateBuffer(GPIO.Buffering buffering) {
+        this.mode = buffering.getMode();
+        this.queue = mode == GPIO.Buffering.Mode.LOSSLESS ? new Object[buffering.getCapacity()] : null;
+    }
+
+    /**
+     * Sets the state of the pin before any change is notified, so that a buffer emitting on demand has something to
+     * emit at once. Ignored by the other strategies.
+     *
+     * @param value the current state or value of the pin
+     */
+    public synchronized void seed(Object value) {
+        if (mode == GPIO.Buffering.Mode.ON_DEMAND && latest == null) {
+            latest = value;
+        }
+    }
+
+    /**
+     * Adds a change. With the lossless strategy, this waits for the stream to take a change if the queue is full.
+     *
+     * @param value the new state or value of the pin
+     */
+    public void offer(Object value) {
+        synchronized (this) {
+            if (closed) {
+                dropped++;
+                return;
+            }
+            received++;
+            switch (mode) {
+                case LOSSLESS:
+                    if (size == queue.length) {
+                        blocked++;
+                        try {
+                            while (size == queue.length && !closed) {
+                                wait();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            dropped++;
+                            return;
+                        }
+                        if (closed) {
+                            dropped++;
+                            return;
+                        }
+                    }
+                    queue[(head + size++) % queue.length] = value;
+                    break;
+                case ON_DEMAND:
+                case LATEST:
+                case COUNTING:
+                    if (pendingChanges > 0) {
+                        coalesced++;
+                    }
+                    latest = value;
+                    pendingChanges++;
+                    break;
+            }
+        }
+        final Runnable callback = wakeUp;
+        if (callback != null && waiting.get() && waiting.compareAndSet(true, false)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * @return the next element to emit, or null if there is none. Called by the consumer only.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized T poll() {
+        final Object element;
+        switch (mode) {
+            case LOSSLESS:
+                if (size == 0) {
+                    return null;
+                }
+                element = queue[head];
+                queue[head] = null;
+                head = (head + 1) % queue.length;
+                if (size-- == queue.length) {
+                    notifyAll();
+                }
+                break;
+            case ON_DEMAND:
+                // The latest state is emitted again until it changes
+                if (latest == null) {
+                    return null;
+                }
+                element = latest;
+                pendingChanges = 0;
+                break;
+            case COUNTING:
+                if (pendingChanges == 0) {
+                    return null;
+                }
+                element = new GPIO.Changes<>(latest, pendingChanges);
+                pendingChanges = 0;
+                break;
+            default:
+                if (pendingChanges == 0) {
+                    return null;
+                }
+                element = latest;
+                latest = null;
+                pendingChanges = 0;
+                break;
+        }
+        emitted++;
+        return (T) element;
+    }
+
+    /**
+     * @param callback called on the notifying thread when an element is added while the consumer waits for one
+     */
+    void setWakeUp(Runnable callback) {
+        this.wakeUp = callback;
+    }
+
+    /**
+     * Called by the consumer when it found no element, before polling again, so that it is woken up by the next one.
+     */
+    void await() {
+        waiting.set(true);
+    }
+
+    /**
+     * Called by the consumer when it found an element after all.
+     */
+    void cancelAwait() {
+        waiting.set(false);
+    }
+
+    /**
+     * Stops taking changes: the changes still buffered, and those notified later on, are counted as dropped, and a
+     * thread waiting to add one is released.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            // The changes replaced by the pending one were already counted as coalesced
+            if (mode == GPIO.Buffering.Mode.LOSSLESS) {
+                dropped += size;
+            } else if (mode != GPIO.Buffering.Mode.ON_DEMAND && pendingChanges > 0) {
+                dropped++;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the buffering strategy.
+     */
+    public GPIO.Buffering.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of changes notified while the stream was running.
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * @return the number of elements emitted.
+     */
+    public synchronized long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * @return the number of changes replaced by a later one before they could be emitted.
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return the number of changes lost because the stream stopped before emitting them, or after it stopped.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of times the notifying thread waited for the stream, with the lossless strategy.
+     */
+    public synchronized long getBlocked() {
+        return blocked;
+    }
+
+    /**
+     * @return the number of changes waiting to be emitted.
+     */
+    public synchronized int getBuffered() {
+        return mode == GPIO.Buffering.Mode.LOSSLESS ? size : pendingChanges > 0 ? 1 : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("StateBuffer(%s: %d received, %d emitted, %d coalesced, %d dropped, %d blocked)", mode,
+                received, emitted, coalesced, dropped, blocked);
+    }
+}